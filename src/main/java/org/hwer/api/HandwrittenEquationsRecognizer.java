@@ -5,20 +5,37 @@ import org.hwer.api.concurrency.Consumer;
 import org.hwer.api.concurrency.tasks.EvaluateTask;
 import org.hwer.api.concurrency.tasks.RemoveTask;
 import org.hwer.api.concurrency.tasks.ResetParserTask;
+import org.hwer.engine.classifiers.CachingClassifier;
 import org.hwer.engine.classifiers.NNClassifier;
 import org.hwer.engine.classifiers.NNClassifier.NeuralNetwork;
 import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl;
+import org.hwer.engine.classifiers.neural_network.DeferredNeuralNetwork;
+import org.hwer.engine.classifiers.neural_network.MappedBackend;
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Backend;
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Core;
+import org.hwer.engine.classifiers.neural_network.QuantizedBackend;
+import org.hwer.engine.classifiers.neural_network.VectorBackend;
+import org.hwer.engine.parsers.ExpressionNode;
 import org.hwer.engine.parsers.GrammarParser;
 import org.hwer.engine.parsers.grammars.GeometricalGrammar;
 import org.hwer.engine.partitioners.MSTPartitioner;
 import org.hwer.engine.symbols.SymbolFactory.Labels;
 import org.hwer.engine.utilities.traces.TraceGroup;
-import org.hwer.image_processing.CoreImpl;
+import org.hwer.image_processing.RasterCoreImpl;
 import org.hwer.image_processing.DistorterImpl;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
@@ -30,45 +47,114 @@ import java.util.logging.Level;
 public class HandwrittenEquationsRecognizer {
     /**
      * @brief Default constructor
+     *        The bundled neural networks are loaded before this constructor returns and are
+     *        evaluated in double precision.
      *
      * @throws IOException If any of the resources is not found
      */
     public HandwrittenEquationsRecognizer () throws IOException {
-        CoreImpl core = new CoreImpl();
+        this(false, null, LoadingMode.SEQUENTIAL);
+    }
+
+    /**
+     * @brief Constructor
+     *        In quantized mode, the neural networks are evaluated with 8-bit integer weights that
+     *        are derived from the bundled double precision ones when they are loaded.
+     *
+     *        Given a directory of ModelFiles, the neural networks are loaded from files which are
+     *        mapped in memory, so that their parameters are read in place instead of being
+     *        copied. The directory should contain the files cascade_neural_network.model,
+     *        numbers_neural_network.model, variables_neural_network.model,
+     *        operators_neural_network.model and letters_neural_network.model, as written by
+     *        ModelFile.convert. In quantized mode, the parameters of the ModelFiles are quantized
+     *        when they are loaded, so that only the quantized copy stays resident.
+     *
+     *        Unless the LoadingMode is SEQUENTIAL, this constructor returns before the neural
+     *        networks are loaded and strokes can be appended right away; recognition waits for
+     *        the neural networks it needs. Use getReadiness to find out when the neural networks
+     *        are resident and whether they were loaded successfully.
+     *
+     * @param quantized
+     *     Whether the neural networks should be evaluated in quantized mode
+     * @param modelsDirectory
+     *     The directory of the ModelFiles, or null to load the bundled neural networks
+     * @param loadingMode
+     *     The way the neural networks are loaded
+     *
+     * @throws IOException If the LoadingMode is SEQUENTIAL and any of the neural networks can not
+     *                     be loaded
+     */
+    public HandwrittenEquationsRecognizer (boolean quantized, File modelsDirectory,
+                                           LoadingMode loadingMode) throws IOException {
+        RasterCoreImpl core = new RasterCoreImpl();
         DistorterImpl distorter = new DistorterImpl();
 
-        NeuralNetworkImpl cascadeNeuralNetwork = new NeuralNetworkImpl(core, distorter);
-        cascadeNeuralNetwork.loadFromInputStream(
-            getResource("/neural_networks/cascade_neural_network.bin")
-        );
+        String[] names = new String[] {
+            "cascade_neural_network",
+            "numbers_neural_network",
+            "variables_neural_network",
+            "operators_neural_network",
+            "letters_neural_network"
+        };
+
+        NeuralNetwork[] neuralNetworks = new NeuralNetwork[names.length];
+        deferredNeuralNetworks_ = new ArrayList<>();
+        if (loadingMode == LoadingMode.SEQUENTIAL) {
+            for (int i = 0; i < names.length; i++) {
+                neuralNetworks[i] = createNeuralNetwork(core, distorter, names[i], quantized,
+                    modelsDirectory);
+            }
 
-        NeuralNetworkImpl numbersNeuralNetwork = new NeuralNetworkImpl(core, distorter);
-        numbersNeuralNetwork.loadFromInputStream(
-            getResource("/neural_networks/numbers_neural_network.bin")
-        );
+            readiness_ = CompletableFuture.completedFuture(null);
+        }
+        else {
+            // In LAZY mode only the first-level neural network is loaded ahead of time.
+            int numberOfEagerLoads = (loadingMode == LoadingMode.LAZY) ? 1 : names.length;
 
-        NeuralNetworkImpl variablesNeuralNetwork = new NeuralNetworkImpl(core, distorter);
-        variablesNeuralNetwork.loadFromInputStream(
-            getResource("/neural_networks/variables_neural_network.bin")
-        );
+            final List<FutureTask<NeuralNetworkImpl>> eagerLoads = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                FutureTask<NeuralNetworkImpl> loadingTask = new FutureTask<>(
+                    new LoadingTask(core, distorter, names[i], quantized, modelsDirectory));
 
-        NeuralNetworkImpl operatorsNeuralNetwork = new NeuralNetworkImpl(core, distorter);
-        operatorsNeuralNetwork.loadFromInputStream(
-            getResource("/neural_networks/operators_neural_network.bin")
-        );
+                if (i < numberOfEagerLoads) {
+                    eagerLoads.add(loadingTask);
+                }
 
-        NeuralNetworkImpl lettersNeuralNetwork = new NeuralNetworkImpl(core, distorter);
-        lettersNeuralNetwork.loadFromInputStream(
-            getResource("/neural_networks/letters_neural_network.bin")
-        );
+                neuralNetworks[i] = new DeferredNeuralNetwork(loadingTask);
+                deferredNeuralNetworks_.add((DeferredNeuralNetwork) neuralNetworks[i]);
+            }
+
+            FutureTask<Void> readiness = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call () throws Exception {
+                    for (FutureTask<NeuralNetworkImpl> loadingTask : eagerLoads) {
+                        loadingTask.get();
+                    }
+
+                    return null;
+                }
+            });
+
+            ExecutorService loadingExecutor = Executors.newFixedThreadPool(Math.min(
+                numberOfEagerLoads, Runtime.getRuntime().availableProcessors()));
+            for (FutureTask<NeuralNetworkImpl> loadingTask : eagerLoads) {
+                loadingExecutor.execute(loadingTask);
+            }
+            // Runs after all the loading tasks have been started, so it can never hold the
+            // only thread that they would need.
+            loadingExecutor.execute(readiness);
+            loadingExecutor.shutdown();
+
+            readiness_ = readiness;
+        }
 
         NNClassifier neuralNetworkClassifier = new NNClassifier(
-            cascadeNeuralNetwork,
+            neuralNetworks[0],
             new NeuralNetwork[] {
-                numbersNeuralNetwork,
-                variablesNeuralNetwork,
-                operatorsNeuralNetwork,
-                lettersNeuralNetwork
+                neuralNetworks[1],
+                neuralNetworks[2],
+                neuralNetworks[3],
+                neuralNetworks[4]
             },
             new Labels[][] {
                 {
@@ -109,7 +195,10 @@ public class HandwrittenEquationsRecognizer {
             }
         );
 
-        partitioner_ = new MSTPartitioner(neuralNetworkClassifier);
+        classificationCache_ = new CachingClassifier(neuralNetworkClassifier,
+            CLASSIFICATION_CACHE_CAPACITY);
+
+        partitioner_ = new MSTPartitioner(classificationCache_);
         parser_ = new GrammarParser(new GeometricalGrammar());
 
         partitioner_.logger_.setLevel(Level.OFF);
@@ -119,6 +208,148 @@ public class HandwrittenEquationsRecognizer {
         new Thread(consumer_).start();
     }
 
+    /**
+     * @brief Creates and loads one of the neural networks of the engine
+     *
+     * @param core
+     *     The Core implementation
+     * @param distorter
+     *     The Distorter implementation
+     * @param name
+     *     The name of the neural network
+     * @param quantized
+     *     Whether the neural network should be evaluated in quantized mode
+     * @param modelsDirectory
+     *     The directory of the ModelFiles, or null to load the bundled neural network
+     *
+     * @return The neural network created
+     *
+     * @throws IOException If the neural network can not be loaded
+     */
+    private NeuralNetworkImpl createNeuralNetwork (Core core, DistorterImpl distorter,
+                                                   String name, boolean quantized,
+                                                   File modelsDirectory) throws IOException {
+        Backend backend;
+        if (quantized) {
+            backend = new QuantizedBackend();
+        }
+        else if (modelsDirectory != null) {
+            backend = new MappedBackend();
+        }
+        else {
+            backend = new VectorBackend();
+        }
+
+        NeuralNetworkImpl neuralNetwork = new NeuralNetworkImpl(core, distorter, backend);
+        if (modelsDirectory != null) {
+            // A QuantizedBackend gets a copy of the parameters of the ModelFile to quantize.
+            neuralNetwork.loadFromModelFile(new File(modelsDirectory, name + ".model"));
+        }
+        else {
+            neuralNetwork.loadFromInputStream(getResource("/neural_networks/" + name + ".bin"));
+        }
+
+        return neuralNetwork;
+    }
+
+    /**
+     * @class LoadingTask
+     * @brief Loads one of the neural networks of the engine
+     */
+    private class LoadingTask implements Callable<NeuralNetworkImpl> {
+        /**
+         * @brief Constructor
+         *
+         * @param core
+         *     The Core implementation
+         * @param distorter
+         *     The Distorter implementation
+         * @param name
+         *     The name of the neural network
+         * @param quantized
+         *     Whether the neural network should be evaluated in quantized mode
+         * @param modelsDirectory
+         *     The directory of the ModelFiles, or null to load the bundled neural network
+         */
+        LoadingTask (Core core, DistorterImpl distorter, String name, boolean quantized,
+                     File modelsDirectory) {
+            core_ = core;
+            distorter_ = distorter;
+            name_ = name;
+            quantized_ = quantized;
+            modelsDirectory_ = modelsDirectory;
+        }
+
+        /**
+         * @brief Loads the neural network
+         *
+         * @return The neural network loaded
+         *
+         * @throws IOException If the neural network can not be loaded
+         */
+        @Override
+        public NeuralNetworkImpl call () throws IOException {
+            return createNeuralNetwork(core_, distorter_, name_, quantized_, modelsDirectory_);
+        }
+
+        private final Core core_; //!< The Core implementation
+        private final DistorterImpl distorter_; //!< The Distorter implementation
+
+        private final String name_; //!< The name of the neural network
+        private final boolean quantized_; //!< Whether the neural network is quantized
+        private final File modelsDirectory_; //!< The directory of the ModelFiles
+
+    }
+
+    /**
+     * @enum LoadingMode
+     * @brief Enumerates the ways the neural networks can be loaded when a
+     *        HandwrittenEquationsRecognizer is constructed
+     */
+    public enum LoadingMode {
+        SEQUENTIAL, //!< All neural networks are loaded, one after another, by the constructor
+        PARALLEL, //!< All neural networks are loaded concurrently, in the background
+        LAZY //!< The first-level neural network is loaded in the background and each
+             //!< second-level neural network is loaded the first time it is used
+    }
+
+    /**
+     * @brief Returns a Future that completes when the neural networks that are loaded ahead of
+     *        time are resident
+     *        In SEQUENTIAL mode the Future is already completed. In PARALLEL mode it completes
+     *        when all neural networks are loaded, and in LAZY mode when the first-level neural
+     *        network is loaded. If a neural network can not be loaded, the Future completes with
+     *        the cause of the failure. That includes the neural networks that LAZY mode loads
+     *        while recognizing, once their loading has failed.
+     *
+     * @return The readiness Future
+     */
+    public Future<Void> getReadiness () {
+        for (DeferredNeuralNetwork deferredNeuralNetwork : deferredNeuralNetworks_) {
+            Throwable loadingFailure = deferredNeuralNetwork.getLoadingFailure();
+
+            if (loadingFailure != null) {
+                CompletableFuture<Void> readiness = new CompletableFuture<Void>();
+                readiness.completeExceptionally(loadingFailure);
+
+                return readiness;
+            }
+        }
+
+        return readiness_;
+    }
+
+    /**
+     * @brief Getter method for the cache of the classifications of this
+     *        HandwrittenEquationsRecognizer
+     *        The cache can be used to read the hit and miss statistics of the current session.
+     *
+     * @return The cache of the classifications
+     */
+    public CachingClassifier getClassificationCache () {
+        return classificationCache_;
+    }
+
     /**
      * @brief Returns an InputStream on a resource given its name
      *
@@ -142,6 +373,23 @@ public class HandwrittenEquationsRecognizer {
         parser_.logger_.setLevel(level);
     }
 
+    /**
+     * @brief Sets the time the partitioner may spend on the best partition of each change
+     *        When the time runs out, the best partition found so far is used, so that a large or
+     *        unusual drawing does not keep the equation in "recognizing..." for long. A change
+     *        whose classification starts after the time has run out keeps the first partition
+     *        that its Traces allow, which may be far from the best one. There is no budget
+     *        unless one is set, so that the equation recognized does not depend on the load of
+     *        the machine.
+     *
+     * @param milliseconds
+     *     The time budget in milliseconds. Non positive values let the partitioner always find
+     *     the best partition.
+     */
+    public void setPartitionTimeBudget (long milliseconds) {
+        partitioner_.setTimeBudget(milliseconds);
+    }
+
     /**
      * @brief Terminates this HandwrittenEquationsRecognizer
      */
@@ -151,6 +399,8 @@ public class HandwrittenEquationsRecognizer {
 
     /**
      * @brief Returns the String representation of the equation recognized
+     *        If the last change could not be recognized, for example because a neural network
+     *        could not be loaded, the cause of the failure is returned instead.
      *
      * @return The String representation of the equation recognized
      */
@@ -159,6 +409,11 @@ public class HandwrittenEquationsRecognizer {
             return "recognizing...";
         }
 
+        RuntimeException failure = consumer_.getFailure();
+        if (failure != null) {
+            return "recognition failed: " + failure.getMessage();
+        }
+
         String equation = parser_.getEquation();
         if (equation.contains("AMBIGUOUS")) {
             equation = "AMBIGUOUS";
@@ -167,6 +422,17 @@ public class HandwrittenEquationsRecognizer {
         return equation;
     }
 
+    /**
+     * @brief Returns the expression tree of the equation recognized
+     *        The tree is that of the last change that was processed, so it may lag behind the
+     *        changes that are still being recognized.
+     *
+     * @return The root nodes of the equation from left to right
+     */
+    public List<ExpressionNode> getExpressionTree () {
+        return parser_.getExpressionTree();
+    }
+
     /**
      * @brief Resets this HandwrittenEquationsRecognizer
      *        To reset a HandwrittenEquationsRecognizer is to bring it to the state it was when
@@ -175,6 +441,8 @@ public class HandwrittenEquationsRecognizer {
     public void reset () {
         tasksQueue_.clear();
 
+        classificationCache_.clear();
+
         resetParser();
     }
 
@@ -232,6 +500,15 @@ public class HandwrittenEquationsRecognizer {
         }
     }
 
+    private Future<Void> readiness_; //!< Completes when the neural networks loaded ahead of time
+                                     //!< are resident
+
+    private List<DeferredNeuralNetwork> deferredNeuralNetworks_; //!< The neural networks that are
+                                                                 //!< loaded in the background
+
+    private CachingClassifier classificationCache_; //!< The cache of the classifications of this
+                                                    //!< HandwrittenEquationsRecognizer
+
     private MSTPartitioner partitioner_; //!< The partitioner of this HandwrittenEquationsRecognizer
     private GrammarParser parser_; //!< The parser of this HandwrittenEquationsRecognizer
 
@@ -239,6 +516,9 @@ public class HandwrittenEquationsRecognizer {
 
     private ArrayBlockingQueue<Runnable> tasksQueue_; //!< The queue where the tasks are sent
 
+    private static final int CLASSIFICATION_CACHE_CAPACITY = 4096; //!< The maximum number of
+                                                                  //!< cached classifications
+
     private static final long TASKS_QUEUE_OFFER_TIMEOUT = 100; //!< The time to wait on the
                                                                //!< tasksQueue to accept a task in
                                                                //!< milliseconds
@@ -35,13 +35,29 @@ public class Consumer implements Runnable {
 
                 if (task != null) {
                     task.run();
+
+                    failure_ = null;
                 }
             } catch (InterruptedException e) {
                 e.printStackTrace();
+            } catch (RuntimeException e) {
+                // A failed task must not stop the tasks that follow it.
+                e.printStackTrace();
+
+                failure_ = e;
             }
         }
     }
 
+    /**
+     * @brief Getter method for the failure of the last task that this Consumer executed
+     *
+     * @return The exception thrown by the last task, null if it completed normally
+     */
+    public RuntimeException getFailure () {
+        return failure_;
+    }
+
     /**
      * @brief Getter method for whether this Consumer is running
      *
@@ -65,4 +81,7 @@ public class Consumer implements Runnable {
 
     private boolean running_; //!< Flag that indicates whether this Consumer should be running
 
+    private volatile RuntimeException failure_; //!< The exception thrown by the last task, null if
+                                                //!< it completed normally
+
 }
@@ -0,0 +1,360 @@
+package org.hwer.engine.classifiers;
+
+
+import org.hwer.engine.symbols.Symbol;
+import org.hwer.engine.symbols.SymbolFactory;
+import org.hwer.engine.symbols.SymbolFactory.Labels;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * @class CachingClassifier
+ * @brief Implements a Classifier that remembers the decisions of another Classifier
+ *        The decisions are kept in a bounded, least recently used, cache whose keys are the sets
+ *        of Trace objects that were classified, along with the version of each Trace, so that a
+ *        decision is not reused after one of its Traces has been modified. Only the label and
+ *        the confidence of each decision are kept; a new Symbol is created on every call, since
+ *        Symbols are modified by the partitioner and the parser.
+ *
+ *        Classifications that are given a context are not cached.
+ */
+public class CachingClassifier extends Classifier {
+    /**
+     * @brief Constructor
+     *
+     * @param classifier
+     *     The Classifier whose decisions are cached
+     * @param capacity
+     *     The maximum number of decisions to keep
+     */
+    public CachingClassifier (Classifier classifier, final int capacity) {
+        classifier_ = classifier;
+
+        cache_ = new LinkedHashMap<Key, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Key, Decision> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @brief Classifies a given TraceGroup
+     *
+     * @param traceGroup
+     *     The TraceGroup to classify
+     * @param context
+     *     The context of the given TraceGroup
+     * @param subSymbolCheck
+     *     Check sub-groups of the given TraceGroup
+     * @param subContextCheck
+     *     Check sub-groups of the given context
+     *
+     * @return The Symbol that the given TraceGroup was classified
+     */
+    @Override
+    public Symbol classify (TraceGroup traceGroup, TraceGroup context, boolean subSymbolCheck,
+                            boolean subContextCheck) {
+        if (context != null) {
+            return classifier_.classify(traceGroup, context, subSymbolCheck, subContextCheck);
+        }
+
+        Key key = new Key(traceGroup, subSymbolCheck, subContextCheck);
+
+        Decision decision = this.get(key);
+        if (decision != null) {
+            return this.createSymbol(decision, traceGroup);
+        }
+
+        Symbol symbol = classifier_.classify(traceGroup, null, subSymbolCheck, subContextCheck);
+
+        this.put(key, symbol);
+
+        return symbol;
+    }
+
+    /**
+     * @brief Classifies many TraceGroups at once
+     *        Only the TraceGroups whose decisions are not cached are passed to the underlying
+     *        Classifier, in a single batch.
+     *
+     * @param traceGroups
+     *     The TraceGroups to classify
+     *
+     * @return The Symbols that the given TraceGroups were classified, in the same order
+     */
+    @Override
+    public Symbol[] classifyBatch (TraceGroup[] traceGroups) {
+        int numberOfTraceGroups = traceGroups.length;
+
+        Symbol[] symbols = new Symbol[numberOfTraceGroups];
+
+        Key[] keys = new Key[numberOfTraceGroups];
+        int[] missIndices = new int[numberOfTraceGroups];
+        int numberOfMisses = 0;
+        for (int i = 0; i < numberOfTraceGroups; i++) {
+            keys[i] = new Key(traceGroups[i], false, false);
+
+            Decision decision = this.get(keys[i]);
+            if (decision != null) {
+                symbols[i] = this.createSymbol(decision, traceGroups[i]);
+            }
+            else {
+                missIndices[numberOfMisses++] = i;
+            }
+        }
+
+        if (numberOfMisses == 0) {
+            return symbols;
+        }
+
+        TraceGroup[] misses = new TraceGroup[numberOfMisses];
+        for (int i = 0; i < numberOfMisses; i++) {
+            misses[i] = traceGroups[missIndices[i]];
+        }
+
+        Symbol[] missSymbols = classifier_.classifyBatch(misses);
+        for (int i = 0; i < numberOfMisses; i++) {
+            symbols[missIndices[i]] = missSymbols[i];
+
+            this.put(keys[missIndices[i]], missSymbols[i]);
+        }
+
+        return symbols;
+    }
+
+    /**
+     * @brief Looks a decision up and updates the statistics of the cache
+     *
+     * @param key
+     *     The key of the decision
+     *
+     * @return The decision, or null if it is not cached
+     */
+    private synchronized Decision get (Key key) {
+        Decision decision = cache_.get(key);
+
+        if (decision != null) {
+            hits_++;
+        }
+        else {
+            misses_++;
+        }
+
+        return decision;
+    }
+
+    /**
+     * @brief Stores the decision that was made for a key
+     *
+     * @param key
+     *     The key of the decision
+     * @param symbol
+     *     The Symbol that was created by the underlying Classifier
+     */
+    private synchronized void put (Key key, Symbol symbol) {
+        if (symbol == null) {
+            return;
+        }
+
+        cache_.put(key, new Decision(symbol.getLabel(), symbol.getConfidence()));
+    }
+
+    /**
+     * @brief Creates the Symbol of a cached decision
+     *
+     * @param decision
+     *     The cached decision
+     * @param traceGroup
+     *     The TraceGroup of the Symbol
+     *
+     * @return The Symbol created
+     */
+    private Symbol createSymbol (Decision decision, TraceGroup traceGroup) {
+        Symbol symbol = null;
+        try {
+            symbol = symbolFactory_.create(decision.label_, traceGroup);
+
+            symbol.setConfidence(decision.confidence_);
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        }
+
+        return symbol;
+    }
+
+    /**
+     * @brief Removes all the decisions from the cache
+     *        The statistics of the cache are not reset.
+     */
+    public synchronized void clear () {
+        cache_.clear();
+    }
+
+    /**
+     * @brief Getter method for the number of classifications that were answered from the cache
+     *
+     * @return The number of cache hits
+     */
+    public synchronized long getHits () {
+        return hits_;
+    }
+
+    /**
+     * @brief Getter method for the number of classifications that were passed to the underlying
+     *        Classifier
+     *
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses () {
+        return misses_;
+    }
+
+    /**
+     * @brief Resets the hit and miss counters of the cache
+     */
+    public synchronized void resetStatistics () {
+        hits_ = 0;
+        misses_ = 0;
+    }
+
+    /**
+     * @class Key
+     * @brief The key of a cached decision
+     *        Two Keys are equal when they refer to the same Trace objects, regardless of their
+     *        order, with the same versions and the same classification flags.
+     */
+    private static class Key {
+        /**
+         * @brief Constructor
+         *
+         * @param traceGroup
+         *     The TraceGroup that is classified
+         * @param subSymbolCheck
+         *     Check sub-groups of the TraceGroup
+         * @param subContextCheck
+         *     Check sub-groups of the context
+         */
+        Key (TraceGroup traceGroup, boolean subSymbolCheck, boolean subContextCheck) {
+            int numberOfTraces = traceGroup.size();
+
+            traces_ = new Trace[numberOfTraces];
+            for (int i = 0; i < numberOfTraces; i++) {
+                traces_[i] = traceGroup.get(i);
+            }
+
+            // Sorting by identity hash code gives the same order for the same set of Traces,
+            // unless two of them share a hash code, in which case the only cost is a cache miss.
+            Arrays.sort(traces_, new Comparator<Trace>() {
+                @Override
+                public int compare (Trace trace1, Trace trace2) {
+                    return Integer.compare(System.identityHashCode(trace1),
+                        System.identityHashCode(trace2));
+                }
+            });
+
+            versions_ = new int[numberOfTraces];
+            int hashCode = (subSymbolCheck ? 1 : 0) + (subContextCheck ? 2 : 0);
+            for (int i = 0; i < numberOfTraces; i++) {
+                versions_[i] = traces_[i].getVersion();
+
+                hashCode = 31 * hashCode + System.identityHashCode(traces_[i]);
+                hashCode = 31 * hashCode + versions_[i];
+            }
+
+            subSymbolCheck_ = subSymbolCheck;
+            subContextCheck_ = subContextCheck;
+            hashCode_ = hashCode;
+        }
+
+        /**
+         * @brief Returns the hash code of this Key
+         *
+         * @return The hash code of this Key
+         */
+        @Override
+        public int hashCode () {
+            return hashCode_;
+        }
+
+        /**
+         * @brief Checks whether this Key is equal to another object
+         *
+         * @param object
+         *     The other object
+         *
+         * @return True if the other object is a Key for the same Traces, versions and flags
+         */
+        @Override
+        public boolean equals (Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (! (object instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) object;
+            if (hashCode_ != key.hashCode_ || subSymbolCheck_ != key.subSymbolCheck_ ||
+                subContextCheck_ != key.subContextCheck_ || traces_.length != key.traces_.length) {
+                return false;
+            }
+
+            for (int i = 0; i < traces_.length; i++) {
+                if (traces_[i] != key.traces_[i] || versions_[i] != key.versions_[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private final Trace[] traces_; //!< The Traces, sorted by identity hash code
+        private final int[] versions_; //!< The version of each Trace
+        private final boolean subSymbolCheck_; //!< The subSymbolCheck flag
+        private final boolean subContextCheck_; //!< The subContextCheck flag
+        private final int hashCode_; //!< The hash code of this Key
+
+    }
+
+    /**
+     * @class Decision
+     * @brief A cached decision of the underlying Classifier
+     */
+    private static class Decision {
+        /**
+         * @brief Constructor
+         *
+         * @param label
+         *     The label of the Symbol
+         * @param confidence
+         *     The confidence of the classification
+         */
+        Decision (Labels label, double confidence) {
+            label_ = label;
+            confidence_ = confidence;
+        }
+
+        private final Labels label_; //!< The label of the Symbol
+        private final double confidence_; //!< The confidence of the classification
+
+    }
+
+    private final Classifier classifier_; //!< The Classifier whose decisions are cached
+
+    private final LinkedHashMap<Key, Decision> cache_; //!< The cached decisions, in access order
+
+    private SymbolFactory symbolFactory_ = SymbolFactory.getInstance(); //!< The factory used to
+                                                                        //!< create Symbols
+
+    private long hits_; //!< The number of cache hits
+    private long misses_; //!< The number of cache misses
+
+}
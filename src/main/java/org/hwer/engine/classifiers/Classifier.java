@@ -29,4 +29,24 @@ public abstract class Classifier {
     public abstract Symbol classify (TraceGroup traceGroup, TraceGroup context,
                                      boolean subSymbolCheck, boolean subContextCheck);
 
+    /**
+     * @brief Classifies many TraceGroups at once
+     *        The default implementation classifies each TraceGroup separately, without context.
+     *        Classifiers that can share work between candidates should override this method.
+     *
+     * @param traceGroups
+     *     The TraceGroups to classify
+     *
+     * @return The Symbols that the given TraceGroups were classified, in the same order
+     */
+    public Symbol[] classifyBatch (TraceGroup[] traceGroups) {
+        Symbol[] symbols = new Symbol[traceGroups.length];
+
+        for (int i = 0; i < traceGroups.length; i++) {
+            symbols[i] = this.classify(traceGroups[i], null, false, false);
+        }
+
+        return symbols;
+    }
+
 }
@@ -67,21 +67,110 @@ public class NNClassifier extends Classifier {
     @Override
     public Symbol classify (TraceGroup traceGroup, TraceGroup context, boolean subSymbolCheck,
                             boolean subContextCheck) {
-        double[] cascadeNeuralNetworkOutput = cascadeNeuralNetwork_.evaluate(traceGroup, 0);
+        double[] input = cascadeNeuralNetwork_.createInput(traceGroup);
+
+        double[] cascadeNeuralNetworkOutput = cascadeNeuralNetwork_.evaluate(input);
 
         int classLabel = Utilities.indexOfMax(cascadeNeuralNetworkOutput);
 
-        double[] neuralNetworkOutput = neuralNetworks_[classLabel].evaluate(traceGroup, 0);
+        double[] neuralNetworkOutput = neuralNetworks_[classLabel].evaluate(input);
 
         int classificationLabel = Utilities.indexOfMax(neuralNetworkOutput);
 
+        return this.createSymbol(traceGroup, classLabel, classificationLabel,
+            cascadeNeuralNetworkOutput[classLabel] * neuralNetworkOutput[classificationLabel]);
+    }
+
+    /**
+     * @brief Classifies many TraceGroups at once
+     *        The input of each TraceGroup is created once and used by both levels. All the
+     *        TraceGroups are evaluated by the first-level neural network in a single
+     *        batch. Then, the TraceGroups are grouped by the category they were classified into and
+     *        each group is evaluated by the corresponding second-level neural network in a single
+     *        batch. The Symbols returned are the same with the ones returned by calling classify on
+     *        each TraceGroup.
+     *
+     * @param traceGroups
+     *     The TraceGroups to classify
+     *
+     * @return The Symbols that the given TraceGroups were classified, in the same order
+     */
+    @Override
+    public Symbol[] classifyBatch (TraceGroup[] traceGroups) {
+        int numberOfTraceGroups = traceGroups.length;
+
+        Symbol[] symbols = new Symbol[numberOfTraceGroups];
+        if (numberOfTraceGroups == 0) {
+            return symbols;
+        }
+
+        double[][] inputs = new double[numberOfTraceGroups][];
+        for (int i = 0; i < numberOfTraceGroups; i++) {
+            inputs[i] = cascadeNeuralNetwork_.createInput(traceGroups[i]);
+        }
+
+        double[][] cascadeNeuralNetworkOutputs = cascadeNeuralNetwork_.evaluateBatch(inputs);
+
+        int[] classLabels = new int[numberOfTraceGroups];
+        int[] classSizes = new int[neuralNetworks_.length];
+        for (int i = 0; i < numberOfTraceGroups; i++) {
+            classLabels[i] = Utilities.indexOfMax(cascadeNeuralNetworkOutputs[i]);
+
+            classSizes[classLabels[i]]++;
+        }
+
+        for (int classLabel = 0; classLabel < neuralNetworks_.length; classLabel++) {
+            if (classSizes[classLabel] == 0) {
+                continue;
+            }
+
+            int[] indices = new int[classSizes[classLabel]];
+            double[][] classInputs = new double[classSizes[classLabel]][];
+            for (int i = 0, j = 0; i < numberOfTraceGroups; i++) {
+                if (classLabels[i] == classLabel) {
+                    indices[j] = i;
+                    classInputs[j] = inputs[i];
+                    j++;
+                }
+            }
+
+            double[][] neuralNetworkOutputs = neuralNetworks_[classLabel].evaluateBatch(
+                classInputs);
+
+            for (int j = 0; j < indices.length; j++) {
+                int classificationLabel = Utilities.indexOfMax(neuralNetworkOutputs[j]);
+
+                symbols[indices[j]] = this.createSymbol(traceGroups[indices[j]], classLabel,
+                    classificationLabel, cascadeNeuralNetworkOutputs[indices[j]][classLabel] *
+                        neuralNetworkOutputs[j][classificationLabel]);
+            }
+        }
+
+        return symbols;
+    }
+
+    /**
+     * @brief Creates the Symbol that a TraceGroup was classified as
+     *
+     * @param traceGroup
+     *     The TraceGroup of the Symbol
+     * @param classLabel
+     *     The label given by the first-level neural network
+     * @param classificationLabel
+     *     The label given by the second-level neural network
+     * @param confidence
+     *     The confidence of the classification
+     *
+     * @return The Symbol created
+     */
+    private Symbol createSymbol (TraceGroup traceGroup, int classLabel, int classificationLabel,
+                                 double confidence) {
         Symbol symbol = null;
         try {
             symbol = symbolFactory_.create(symbolLabels_[classLabel][classificationLabel],
                 traceGroup);
 
-            symbol.setConfidence(cascadeNeuralNetworkOutput[classLabel] *
-                neuralNetworkOutput[classificationLabel]);
+            symbol.setConfidence(confidence);
         } catch (Exception exception) {
             exception.printStackTrace();
         }
@@ -108,6 +197,44 @@ public class NNClassifier extends Classifier {
          * @return The values of the output layer of the neural network
          */
         double[] evaluate (TraceGroup traceGroup, int times);
+
+        /**
+         * @brief Creates the input of the neural network for the given traceGroup
+         *        All the neural networks of a NNClassifier should accept the same inputs, so
+         *        that the input of a TraceGroup is created only once and is evaluated by both
+         *        levels.
+         *
+         * @param traceGroup
+         *     The TraceGroup
+         *
+         * @return The input of the neural network
+         */
+        double[] createInput (TraceGroup traceGroup);
+
+        /**
+         * @brief Returns the values of the output layer of the neural network when evaluated on the
+         *        given input
+         *        The result should be the same with the result of evaluate(traceGroup, 0), where
+         *        input was created from traceGroup.
+         *
+         * @param input
+         *     The input, as created by createInput
+         *
+         * @return The values of the output layer of the neural network
+         */
+        double[] evaluate (double[] input);
+
+        /**
+         * @brief Returns the values of the output layer of the neural network when evaluated on
+         *        each one of the given inputs
+         *        The result for each input should be the same with the result of evaluate(input).
+         *
+         * @param inputs
+         *     The inputs, as created by createInput
+         *
+         * @return The values of the output layer of the neural network for each input
+         */
+        double[][] evaluateBatch (double[][] inputs);
     }
 
     /**
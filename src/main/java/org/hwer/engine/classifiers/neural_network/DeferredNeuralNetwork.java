@@ -0,0 +1,146 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.classifiers.NNClassifier.NeuralNetwork;
+import org.hwer.engine.utilities.traces.TraceGroup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * @class DeferredNeuralNetwork
+ * @brief Implements a NeuralNetwork that stands in for a neural network which is still loading
+ *        The loading task can be run on any thread, ahead of time. If it has not started when the
+ *        neural network is first used, it is run on the calling thread; if it is running on
+ *        another thread, the calling thread waits for it to finish.
+ */
+public class DeferredNeuralNetwork implements NeuralNetwork {
+    /**
+     * @brief Constructor
+     *
+     * @param loadingTask
+     *     The task that loads the neural network
+     */
+    public DeferredNeuralNetwork (FutureTask<? extends NeuralNetwork> loadingTask) {
+        loadingTask_ = loadingTask;
+    }
+
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on the
+     *        given traceGroup
+     *
+     * @param traceGroup
+     *     The TraceGroup to evaluate the neural network on
+     * @param times
+     *     The number of times that the evaluation should be done
+     *
+     * @return The values of the output layer of the neural network
+     */
+    @Override
+    public double[] evaluate (TraceGroup traceGroup, int times) {
+        return this.getNeuralNetwork().evaluate(traceGroup, times);
+    }
+
+    /**
+     * @brief Creates the input of the neural network for the given traceGroup
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     *
+     * @return The input of the neural network
+     */
+    @Override
+    public double[] createInput (TraceGroup traceGroup) {
+        return this.getNeuralNetwork().createInput(traceGroup);
+    }
+
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on the
+     *        given input
+     *
+     * @param input
+     *     The input, as created by createInput
+     *
+     * @return The values of the output layer of the neural network
+     */
+    @Override
+    public double[] evaluate (double[] input) {
+        return this.getNeuralNetwork().evaluate(input);
+    }
+
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on each
+     *        one of the given inputs
+     *
+     * @param inputs
+     *     The inputs, as created by createInput
+     *
+     * @return The values of the output layer of the neural network for each input
+     */
+    @Override
+    public double[][] evaluateBatch (double[][] inputs) {
+        return this.getNeuralNetwork().evaluateBatch(inputs);
+    }
+
+    /**
+     * @brief Returns the loaded neural network, loading it first if needed
+     *
+     * @return The loaded neural network
+     *
+     * @throws IllegalStateException If the neural network could not be loaded
+     */
+    public NeuralNetwork getNeuralNetwork () {
+        // Does nothing if the task has already been started.
+        loadingTask_.run();
+
+        try {
+            return loadingTask_.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Interrupted while loading the neural network",
+                exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("The neural network could not be loaded",
+                exception.getCause());
+        }
+    }
+
+    /**
+     * @brief Returns why the neural network could not be loaded
+     *
+     * @return The cause of the failure, null if the loading task has not finished or has loaded
+     *         the neural network
+     */
+    public Throwable getLoadingFailure () {
+        if (! loadingTask_.isDone()) {
+            return null;
+        }
+
+        try {
+            loadingTask_.get();
+
+            return null;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            return null;
+        } catch (ExecutionException exception) {
+            return exception.getCause();
+        }
+    }
+
+    /**
+     * @brief Returns whether the neural network has been loaded
+     *
+     * @return True if the loading task has finished
+     */
+    public boolean isLoaded () {
+        return loadingTask_.isDone();
+    }
+
+    private final FutureTask<? extends NeuralNetwork> loadingTask_; //!< The task that loads the
+                                                                    //!< neural network
+
+}
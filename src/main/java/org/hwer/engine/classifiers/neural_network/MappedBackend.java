@@ -0,0 +1,114 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Backend;
+
+import java.nio.FloatBuffer;
+
+
+/**
+ * @class MappedBackend
+ * @brief Implements a Backend that reads float32 parameters in place from a ModelFile
+ *        The parameters are never copied to the heap, so a neural network loaded from a mapped
+ *        ModelFile is ready as soon as the header of the file has been read and its payload
+ *        checked.
+ */
+public class MappedBackend implements Backend {
+    /**
+     * @brief Sets the parameters of the neural network
+     *        The parameters are converted to float32 and kept on the heap.
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The weights of each layer, stored row-major with one row for each neuron
+     * @param biases
+     *     The biases of each layer
+     */
+    @Override
+    public void setParameters (int[] sizesOfLayers, double[][] weights, double[][] biases) {
+        sizesOfLayers_ = sizesOfLayers;
+
+        weights_ = new FloatBuffer[weights.length];
+        biases_ = new FloatBuffer[biases.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights_[i] = MappedBackend.toFloatBuffer(weights[i]);
+            biases_[i] = MappedBackend.toFloatBuffer(biases[i]);
+        }
+    }
+
+    /**
+     * @brief Sets the parameters of the neural network to the ones of a ModelFile
+     *
+     * @param modelFile
+     *     The ModelFile
+     */
+    public void setModelFile (ModelFile modelFile) {
+        sizesOfLayers_ = modelFile.getSizesOfLayers();
+        weights_ = modelFile.getWeights();
+        biases_ = modelFile.getBiases();
+    }
+
+    /**
+     * @brief Evaluates a single layer of the neural network on a batch of inputs
+     *        The inputs and the outputs are stored row-major, one row for each sample of the
+     *        batch.
+     *
+     * @param layer
+     *     The index of the layer to be evaluated
+     * @param input
+     *     The activations of the previous layer
+     * @param output
+     *     The array to write the activations of this layer on
+     * @param batchSize
+     *     The number of samples in the batch
+     */
+    @Override
+    public void feedForwardLayer (int layer, double[] input, double[] output, int batchSize) {
+        FloatBuffer layerWeights = weights_[layer];
+        FloatBuffer layerBiases = biases_[layer];
+
+        int inputSize = sizesOfLayers_[layer];
+        int outputSize = sizesOfLayers_[layer + 1];
+
+        for (int sample = 0; sample < batchSize; sample++) {
+            int inputOffset = sample * inputSize;
+            int outputOffset = sample * outputSize;
+
+            for (int j = 0, offset = 0; j < outputSize; j++, offset += inputSize) {
+                double sum = 0;
+                for (int k = 0; k < inputSize; k++) {
+                    sum += layerWeights.get(offset + k) * input[inputOffset + k];
+                }
+
+                output[outputOffset + j] = Math.max(0, sum + layerBiases.get(j));
+            }
+        }
+    }
+
+    /**
+     * @brief Converts an array of doubles to a FloatBuffer
+     *
+     * @param array
+     *     The array
+     *
+     * @return The FloatBuffer
+     */
+    private static FloatBuffer toFloatBuffer (double[] array) {
+        float[] floats = new float[array.length];
+        for (int i = 0; i < array.length; i++) {
+            floats[i] = (float) array[i];
+        }
+
+        return FloatBuffer.wrap(floats);
+    }
+
+    private int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    private FloatBuffer[] weights_; //!< The weight parameters of the neural network
+                                    //!< Each layer is a row-major buffer with dimensions:
+                                    //!< [neuron, weight]
+
+    private FloatBuffer[] biases_; //!< The bias parameters of the neural network
+
+}
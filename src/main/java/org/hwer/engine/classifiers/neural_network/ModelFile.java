@@ -0,0 +1,377 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+
+/**
+ * @class ModelFile
+ * @brief Reads and writes the parameters of a neural network in a memory-mappable container
+ *        The container is little endian and has the following layout:
+ *        - the magic number "HWNN"
+ *        - the version of the format
+ *        - the number of layers followed by the number of neurons in each layer
+ *        - the CRC32 checksum and the length, in bytes, of the payload
+ *        - the payload, starting at the first multiple of ALIGNMENT after the header
+ *
+ *        The payload holds, for each layer, the biases followed by the row-major weights of the
+ *        layer as float32 values. Each one of these sections starts at a multiple of ALIGNMENT,
+ *        so that the parameters can be read in place from a mapping of the file.
+ */
+public class ModelFile {
+    /**
+     * @brief Constructor
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The views on the weights of each layer
+     * @param biases
+     *     The views on the biases of each layer
+     */
+    private ModelFile (int[] sizesOfLayers, FloatBuffer[] weights, FloatBuffer[] biases) {
+        sizesOfLayers_ = sizesOfLayers;
+        weights_ = weights;
+        biases_ = biases;
+    }
+
+    /**
+     * @brief Maps a model file in memory
+     *        The parameters are not copied; the views returned by getWeights and getBiases read
+     *        directly from the mapping.
+     *
+     * @param file
+     *     The model file
+     *
+     * @return The ModelFile mapped
+     *
+     * @throws IOException If an I/O error occurs or the file is not a valid model file
+     */
+    public static ModelFile map (File file) throws IOException {
+        MappedByteBuffer buffer;
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fileChannel = randomAccessFile.getChannel();
+
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a model file");
+        }
+
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported model file version: " + version);
+        }
+
+        // The header is checked against the size of the file before anything is allocated for
+        // it, so that a corrupt header can not ask for more memory than the file could hold.
+        int numberOfLayers = buffer.getInt();
+        if (numberOfLayers < 2) {
+            throw new IOException("Invalid number of layers on " + file + ": " + numberOfLayers);
+        }
+        if (numberOfLayers > (buffer.remaining() - 8 - 8) / 4) {
+            throw new IOException(file + " is truncated");
+        }
+
+        int[] sizesOfLayers = new int[numberOfLayers];
+        for (int i = 0; i < numberOfLayers; i++) {
+            sizesOfLayers[i] = buffer.getInt();
+
+            if (sizesOfLayers[i] <= 0) {
+                throw new IOException("Invalid size of layer " + i + " on " + file + ": " +
+                    sizesOfLayers[i]);
+            }
+            if (sizesOfLayers[i] > buffer.remaining() / 4) {
+                throw new IOException(file + " is truncated");
+            }
+        }
+
+        long checksum = buffer.getLong();
+        long payloadLength = buffer.getLong();
+
+        int payloadOffset = ModelFile.align(buffer.position());
+        if (payloadOffset + payloadLength != buffer.capacity() ||
+            payloadLength != ModelFile.payloadLength(sizesOfLayers)) {
+            throw new IOException(file + " is truncated");
+        }
+
+        ByteBuffer payload = ModelFile.slice(buffer, payloadOffset, (int) payloadLength);
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        if (crc32.getValue() != checksum) {
+            throw new IOException("Checksum mismatch on " + file);
+        }
+
+        FloatBuffer[] weights = new FloatBuffer[numberOfLayers - 1];
+        FloatBuffer[] biases = new FloatBuffer[numberOfLayers - 1];
+
+        int offset = payloadOffset;
+        for (int i = 0; i < numberOfLayers - 1; i++) {
+            int biasesLength = sizesOfLayers[i + 1] * 4;
+            int weightsLength = sizesOfLayers[i + 1] * sizesOfLayers[i] * 4;
+
+            biases[i] = ModelFile.slice(buffer, offset, biasesLength).asFloatBuffer();
+            offset = ModelFile.align(offset + biasesLength);
+
+            weights[i] = ModelFile.slice(buffer, offset, weightsLength).asFloatBuffer();
+            offset = ModelFile.align(offset + weightsLength);
+        }
+
+        return new ModelFile(sizesOfLayers, weights, biases);
+    }
+
+    /**
+     * @brief Writes the parameters of a neural network to a model file
+     *
+     * @param file
+     *     The model file
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The weights of each layer, stored row-major with one row for each neuron
+     * @param biases
+     *     The biases of each layer
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void write (File file, int[] sizesOfLayers, double[][] weights,
+                              double[][] biases) throws IOException {
+        int numberOfLayers = sizesOfLayers.length;
+
+        int payloadOffset = ModelFile.align(4 * (3 + numberOfLayers) + 8 + 8);
+        int payloadLength = (int) ModelFile.payloadLength(sizesOfLayers);
+
+        ByteBuffer buffer = ByteBuffer.allocate(payloadOffset + payloadLength);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        int offset = payloadOffset;
+        for (int i = 0; i < numberOfLayers - 1; i++) {
+            buffer.position(offset);
+            for (double bias : biases[i]) {
+                buffer.putFloat((float) bias);
+            }
+            offset = ModelFile.align(buffer.position());
+
+            buffer.position(offset);
+            for (double weight : weights[i]) {
+                buffer.putFloat((float) weight);
+            }
+            offset = ModelFile.align(buffer.position());
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(ModelFile.slice(buffer, payloadOffset, payloadLength));
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(numberOfLayers);
+        for (int size : sizesOfLayers) {
+            buffer.putInt(size);
+        }
+        buffer.putLong(crc32.getValue());
+        buffer.putLong(payloadLength);
+
+        buffer.position(0);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel fileChannel = randomAccessFile.getChannel();
+
+            fileChannel.truncate(0);
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @brief Converts a neural network from the format read by
+     *        NeuralNetworkImpl.loadFromInputStream to a model file
+     *
+     * @param inputStream
+     *     The InputStream to read the neural network from
+     * @param file
+     *     The model file to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void convert (InputStream inputStream, File file) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+
+        int numberOfLayers = dataInputStream.readInt();
+        int[] sizesOfLayers = new int[numberOfLayers];
+        for (int i = 0; i < numberOfLayers; i++) {
+            sizesOfLayers[i] = dataInputStream.readInt();
+        }
+
+        double[][] weights = new double[numberOfLayers - 1][];
+        double[][] biases = new double[numberOfLayers - 1][];
+
+        for (int i = 0; i < numberOfLayers - 1; i++) {
+            int inputSize = sizesOfLayers[i];
+            int outputSize = sizesOfLayers[i + 1];
+
+            weights[i] = new double[outputSize * inputSize];
+            biases[i] = new double[outputSize];
+
+            for (int j = 0, offset = 0; j < outputSize; j++, offset += inputSize) {
+                biases[i][j] = dataInputStream.readDouble();
+
+                for (int k = 0; k < inputSize; k++) {
+                    weights[i][offset + k] = dataInputStream.readDouble();
+                }
+            }
+        }
+
+        dataInputStream.close();
+
+        ModelFile.write(file, sizesOfLayers, weights, biases);
+    }
+
+    /**
+     * @brief Converts neural network files to model files
+     *        The arguments are pairs of input and output files.
+     *
+     * @param args
+     *     The input and output files
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void main (String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 != 0) {
+            System.err.println("Usage: ModelFile <input.bin> <output.model> " +
+                "[<input.bin> <output.model> ...]");
+            System.exit(1);
+        }
+
+        for (int i = 0; i < args.length; i += 2) {
+            ModelFile.convert(new FileInputStream(args[i]), new File(args[i + 1]));
+        }
+    }
+
+    /**
+     * @brief Returns the length, in bytes, of the payload of a model file
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     *
+     * @return The length of the payload
+     */
+    private static long payloadLength (int[] sizesOfLayers) {
+        long length = 0;
+        for (int i = 0; i < sizesOfLayers.length - 1; i++) {
+            length = ModelFile.align(length + sizesOfLayers[i + 1] * 4L);
+            length = ModelFile.align(length + (long) sizesOfLayers[i + 1] * sizesOfLayers[i] * 4);
+
+            // No model file is that long, and stopping here keeps the sum from overflowing.
+            if (length > Integer.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * @brief Rounds an offset up to the next multiple of ALIGNMENT
+     *
+     * @param offset
+     *     The offset
+     *
+     * @return The aligned offset
+     */
+    private static int align (int offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @brief Rounds an offset up to the next multiple of ALIGNMENT
+     *
+     * @param offset
+     *     The offset
+     *
+     * @return The aligned offset
+     */
+    private static long align (long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @brief Returns a little endian view on a range of a ByteBuffer
+     *
+     * @param buffer
+     *     The ByteBuffer
+     * @param offset
+     *     The index of the first byte of the range
+     * @param length
+     *     The number of bytes in the range
+     *
+     * @return The view on the range
+     */
+    private static ByteBuffer slice (ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + length);
+
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @brief Getter method for the number of neurons in each layer
+     *
+     * @return The number of neurons in each layer
+     */
+    public int[] getSizesOfLayers () {
+        return sizesOfLayers_;
+    }
+
+    /**
+     * @brief Getter method for the weights of each layer
+     *
+     * @return The views on the weights of each layer, stored row-major with one row for each
+     *         neuron
+     */
+    public FloatBuffer[] getWeights () {
+        return weights_;
+    }
+
+    /**
+     * @brief Getter method for the biases of each layer
+     *
+     * @return The views on the biases of each layer
+     */
+    public FloatBuffer[] getBiases () {
+        return biases_;
+    }
+
+    public static final int MAGIC = 0x4E4E5748; //!< The magic number, "HWNN" in little endian
+    public static final int VERSION = 1; //!< The version of the format
+    public static final int ALIGNMENT = 64; //!< The alignment, in bytes, of the payload sections
+
+    private final int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    private final FloatBuffer[] weights_; //!< The views on the weights of each layer
+    private final FloatBuffer[] biases_; //!< The views on the biases of each layer
+
+}
@@ -5,9 +5,14 @@ import org.hwer.engine.classifiers.NNClassifier.NeuralNetwork;
 import org.hwer.engine.utilities.Utilities;
 import org.hwer.engine.utilities.traces.TraceGroup;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.DataInputStream;
 import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -24,8 +29,23 @@ public class NeuralNetworkImpl implements NeuralNetwork {
      *     The Distorter implementation
      */
     public NeuralNetworkImpl (Core imageProcessor, Distorter imageDistorter) {
+        this(imageProcessor, imageDistorter, new VectorBackend());
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param imageProcessor
+     *     The Core implementation
+     * @param imageDistorter
+     *     The Distorter implementation
+     * @param backend
+     *     The Backend that will do the arithmetic of the feed forward passes
+     */
+    public NeuralNetworkImpl (Core imageProcessor, Distorter imageDistorter, Backend backend) {
         imageProcessor_ = imageProcessor;
         imageDistorter_ = imageDistorter;
+        backend_ = backend;
     }
 
     /**
@@ -37,26 +57,76 @@ public class NeuralNetworkImpl implements NeuralNetwork {
      * @return The values of the output layer of the neural network
      */
     public double[] feedForward (double[] input) {
-        double[] inputBuffer = input.clone();
+        double[] output = new double[sizesOfLayers_[numberOfLayers_ - 1]];
+
+        feedForward(input, output);
+
+        return output;
+    }
 
-        double[] output = new double[sizesOfLayers_[1]];
+    /**
+     * @brief Evaluates this neural network on the given input and writes the values of the output
+     *        layer on the given output array
+     *        The activations of the hidden layers are kept on buffers owned by the calling thread,
+     *        so, after the first call from a thread, this method does not allocate any memory.
+     *
+     * @param input
+     *     The input to evaluate this neural network on
+     * @param output
+     *     The array to write the values of the output layer on. Its length should be, at least,
+     *     the size of the output layer.
+     */
+    public void feedForward (double[] input, double[] output) {
+        double[][] activations = activations_.get(1);
+
+        double[] layerInput = input;
         for (int i = 0; i < numberOfLayers_ - 1; i++) {
-            for (int j = 0; j < sizesOfLayers_[i + 1]; j++) {
-                double sum = 0;
-                for (int k = 0; k < sizesOfLayers_[i]; k++) {
-                    sum += weights_[i][j][k] * inputBuffer[k];
-                }
+            double[] layerOutput = (i == numberOfLayers_ - 2) ? output : activations[i + 1];
 
-                output[j] = this.activationFunction(sum + biases_[i][j]);
-            }
+            backend_.feedForwardLayer(i, layerInput, layerOutput, 1);
 
-            if (i + 2 < numberOfLayers_) {
-                inputBuffer = output.clone();
-                output = new double[sizesOfLayers_[i + 2]];
-            }
+            layerInput = layerOutput;
         }
+    }
 
-        return output;
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on each
+     *        one of the given inputs
+     *        The inputs are stacked into a matrix so that each layer is evaluated with a single
+     *        matrix-matrix multiplication. The values returned for each input are exactly the same
+     *        with the values returned by feedForward(double[]) for that input.
+     *
+     * @param inputs
+     *     The inputs to evaluate this neural network on
+     *
+     * @return The values of the output layer of the neural network for each input
+     */
+    public double[][] feedForward (double[][] inputs) {
+        int batchSize = inputs.length;
+        int inputSize = sizesOfLayers_[0];
+        int outputSize = sizesOfLayers_[numberOfLayers_ - 1];
+
+        double[][] outputs = new double[batchSize][outputSize];
+        if (batchSize == 0) {
+            return outputs;
+        }
+
+        double[][] activations = activations_.get(batchSize);
+
+        for (int i = 0; i < batchSize; i++) {
+            System.arraycopy(inputs[i], 0, activations[0], i * inputSize, inputSize);
+        }
+
+        for (int i = 0; i < numberOfLayers_ - 1; i++) {
+            backend_.feedForwardLayer(i, activations[i], activations[i + 1], batchSize);
+        }
+
+        for (int i = 0; i < batchSize; i++) {
+            System.arraycopy(activations[numberOfLayers_ - 1], i * outputSize, outputs[i], 0,
+                outputSize);
+        }
+
+        return outputs;
     }
 
     /**
@@ -85,24 +155,21 @@ public class NeuralNetworkImpl implements NeuralNetwork {
             sizesOfLayers_[i] = dataInputStream.readInt();
         }
 
-        weights_ = new double[numberOfLayers_ - 1][][];
-        biases_ = new double[numberOfLayers_ - 1][];
+        double[][] weights = new double[numberOfLayers_ - 1][];
+        double[][] biases = new double[numberOfLayers_ - 1][];
 
         for (int i = 0; i < numberOfLayers_ - 1; i++) {
-            weights_[i] = new double[sizesOfLayers_[i + 1]][];
-            biases_[i] = new double[sizesOfLayers_[i + 1]];
+            int inputSize = sizesOfLayers_[i];
+            int outputSize = sizesOfLayers_[i + 1];
 
-            for (int j = 0; j < sizesOfLayers_[i + 1]; j++) {
-                weights_[i][j] = new double[sizesOfLayers_[i]];
-            }
-        }
+            weights[i] = new double[outputSize * inputSize];
+            biases[i] = new double[outputSize];
 
-        for (int i = 0; i < numberOfLayers_ - 1; i++) {
-            for (int j = 0; j < sizesOfLayers_[i + 1]; j++) {
-                biases_[i][j] = dataInputStream.readDouble();
+            for (int j = 0, offset = 0; j < outputSize; j++, offset += inputSize) {
+                biases[i][j] = dataInputStream.readDouble();
 
-                for (int k = 0; k < sizesOfLayers_[i]; k++) {
-                    weights_[i][j][k] = dataInputStream.readDouble();
+                for (int k = 0; k < inputSize; k++) {
+                    weights[i][offset + k] = dataInputStream.readDouble();
                 }
             }
         }
@@ -110,42 +177,55 @@ public class NeuralNetworkImpl implements NeuralNetwork {
         dataInputStream.close();
 
         imageSide_ = (int) Math.sqrt(sizesOfLayers_[0]);
-    }
 
-    /**
-     * @brief The activation function of the neurons of this neural network
-     *
-     * @param z
-     *     The independent variable
-     *
-     * @return The value of the activation function at z
-     */
-    private double activationFunction (double z) {
-        return (relu(z));
-    }
+        backend_.setParameters(sizesOfLayers_, weights, biases);
 
-    /**
-     * @brief The sigmoid function
-     *
-     * @param z
-     *     The independent variable
-     *
-     * @return The value of the sigmoid function on z
-     */
-    private double sigmoid (double z) {
-        return (1 / (1 + Math.exp(- z)));
+        activations_ = new ActivationBuffers(sizesOfLayers_);
     }
 
     /**
-     * @brief The rectifier function
+     * @brief Loads the parameters for this neural network from a ModelFile
+     *        If the Backend of this neural network is a MappedBackend, the parameters are read in
+     *        place from the mapping of the file. Otherwise, they are copied to the Backend.
      *
-     * @param z
-     *     The independent variable
+     * @param file
+     *     The ModelFile
      *
-     * @return The value of the rectifier function on z
+     * @throws IOException If an I/O error occurs or the file is not a valid ModelFile
      */
-    private double relu (double z) {
-        return Math.max(0, z);
+    public void loadFromModelFile (File file) throws IOException {
+        ModelFile modelFile = ModelFile.map(file);
+
+        sizesOfLayers_ = modelFile.getSizesOfLayers();
+        numberOfLayers_ = sizesOfLayers_.length;
+
+        if (backend_ instanceof MappedBackend) {
+            ((MappedBackend) backend_).setModelFile(modelFile);
+        }
+        else {
+            FloatBuffer[] modelWeights = modelFile.getWeights();
+            FloatBuffer[] modelBiases = modelFile.getBiases();
+
+            double[][] weights = new double[numberOfLayers_ - 1][];
+            double[][] biases = new double[numberOfLayers_ - 1][];
+            for (int i = 0; i < numberOfLayers_ - 1; i++) {
+                weights[i] = new double[modelWeights[i].capacity()];
+                for (int j = 0; j < weights[i].length; j++) {
+                    weights[i][j] = modelWeights[i].get(j);
+                }
+
+                biases[i] = new double[modelBiases[i].capacity()];
+                for (int j = 0; j < biases[i].length; j++) {
+                    biases[i][j] = modelBiases[i].get(j);
+                }
+            }
+
+            backend_.setParameters(sizesOfLayers_, weights, biases);
+        }
+
+        imageSide_ = (int) Math.sqrt(sizesOfLayers_[0]);
+
+        activations_ = new ActivationBuffers(sizesOfLayers_);
     }
 
     /**
@@ -171,37 +251,199 @@ public class NeuralNetworkImpl implements NeuralNetwork {
      * @return The values of the output layer of the neural network
      */
     public double[] evaluate (TraceGroup traceGroup, int times) {
-        Image image = imageProcessor_.printTraceGroup(traceGroup, imageSide_, imageSide_, 1);
+        return this.evaluate(traceGroup, times, seeds_.nextLong());
+    }
 
-        Image imageClone;
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on the
+     *        given traceGroup and on distorted copies of it
+     *        The distorted copies are generated concurrently on the augmentation ForkJoinPool,
+     *        each one with its own random generator derived from the given seed, and are then
+     *        evaluated in a single batch. The result depends only on the TraceGroup, the number of
+     *        copies and the seed.
+     *
+     * @param traceGroup
+     *     The TraceGroup to evaluate the neural network on
+     * @param times
+     *     The number of distorted copies to evaluate
+     * @param seed
+     *     The seed of the distortions
+     *
+     * @return The values of the output layer of the neural network
+     */
+    public double[] evaluate (TraceGroup traceGroup, int times, long seed) {
+        if (imageDistorter_ == null || times <= 0) {
+            // The input layer buffer is not used by single input passes, so the input is written
+            // there instead of on a new array.
+            double[] input = activations_.get(1)[0];
+            imageProcessor_.printTraceGroup(traceGroup, imageSide_, imageSide_, 1, - 1, 1, input);
+
+            return Utilities.normalizeArray(feedForward(input));
+        }
 
-        double[] neuralNetworkOutput = feedForward(image.toVector(- 1, 1));
+        Image image = imageProcessor_.printTraceGroup(traceGroup, imageSide_, imageSide_, 1);
 
-        if (imageDistorter_ != null) {
-            for (int i = 0; i < times; i++) {
-                imageClone = image.clone();
+        double[][] inputs = new double[times + 1][];
+        inputs[0] = image.toVector(- 1, 1);
 
-                imageClone = imageDistorter_.distort(imageClone);
+        // Each thread of the pool gets about one contiguous share of the copies.
+        int grainSize = Math.max(1, times / augmentationPool_.getParallelism());
 
-                double[] currentOutput = feedForward(imageClone.toVector(- 1, 1));
-                for (int j = 0; j < neuralNetworkOutput.length; j++) {
-                    neuralNetworkOutput[j] += currentOutput[j];
-                }
+        augmentationPool_.invoke(new DistortionTask(image, seed, inputs, 1, times + 1,
+            grainSize));
 
-            }
+        double[][] outputs = feedForward(inputs);
 
-            if (times > 0) {
-                for (int i = 0; i < neuralNetworkOutput.length; i++) {
-                    neuralNetworkOutput[i] /= times;
-                }
+        double[] neuralNetworkOutput = outputs[0];
+        for (int i = 1; i <= times; i++) {
+            for (int j = 0; j < neuralNetworkOutput.length; j++) {
+                neuralNetworkOutput[j] += outputs[i][j];
             }
         }
 
+        for (int i = 0; i < neuralNetworkOutput.length; i++) {
+            neuralNetworkOutput[i] /= times;
+        }
+
         neuralNetworkOutput = Utilities.normalizeArray(neuralNetworkOutput);
 
         return neuralNetworkOutput;
     }
 
+    /**
+     * @class DistortionTask
+     * @brief Creates the inputs of a range of distorted copies of an Image
+     *        The range is split in halves until it is no longer than the grain size, so that the
+     *        copies are spread over the threads of the ForkJoinPool.
+     */
+    private class DistortionTask extends RecursiveAction {
+        /**
+         * @brief Constructor
+         *
+         * @param image
+         *     The Image to distort
+         * @param seed
+         *     The seed of the distortions
+         * @param inputs
+         *     The array to write the inputs of the distorted copies on
+         * @param start
+         *     The index of the first copy of the range
+         * @param end
+         *     The index after the last copy of the range
+         * @param grainSize
+         *     The number of copies below which the range is not split
+         */
+        DistortionTask (Image image, long seed, double[][] inputs, int start, int end,
+                        int grainSize) {
+            image_ = image;
+            seed_ = seed;
+            inputs_ = inputs;
+            start_ = start;
+            end_ = end;
+            grainSize_ = grainSize;
+        }
+
+        /**
+         * @brief Creates the inputs of the distorted copies of the range
+         */
+        @Override
+        protected void compute () {
+            if (end_ - start_ > grainSize_) {
+                int middle = (start_ + end_) >>> 1;
+
+                invokeAll(new DistortionTask(image_, seed_, inputs_, start_, middle, grainSize_),
+                    new DistortionTask(image_, seed_, inputs_, middle, end_, grainSize_));
+
+                return;
+            }
+
+            for (int i = start_; i < end_; i++) {
+                // Every copy has its own generator, so the distortions do not depend on the order
+                // in which the copies are created.
+                Random random = new Random(seed_ + i * SEED_INCREMENT);
+
+                inputs_[i] = imageDistorter_.distort(image_.clone(), random).toVector(- 1, 1);
+            }
+        }
+
+        private final Image image_; //!< The Image to distort
+        private final long seed_; //!< The seed of the distortions
+        private final double[][] inputs_; //!< The inputs of the distorted copies
+        private final int start_; //!< The index of the first copy of the range
+        private final int end_; //!< The index after the last copy of the range
+        private final int grainSize_; //!< The number of copies below which the range is not split
+
+        private static final long serialVersionUID = 1L; //!< The version of the serialized form
+
+    }
+
+    /**
+     * @brief Setter method for the ForkJoinPool where distorted copies are generated
+     *
+     * @param augmentationPool
+     *     The ForkJoinPool
+     */
+    public void setAugmentationPool (ForkJoinPool augmentationPool) {
+        augmentationPool_ = augmentationPool;
+    }
+
+    /**
+     * @brief Sets the seed from which the seeds of evaluate(traceGroup, times) are drawn
+     *
+     * @param seed
+     *     The seed
+     */
+    public void setSeed (long seed) {
+        seeds_.setSeed(seed);
+    }
+
+    /**
+     * @brief Creates the input of this neural network for the given traceGroup
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     *
+     * @return The input of this neural network
+     */
+    public double[] createInput (TraceGroup traceGroup) {
+        double[] input = new double[imageSide_ * imageSide_];
+        imageProcessor_.printTraceGroup(traceGroup, imageSide_, imageSide_, 1, - 1, 1, input);
+
+        return input;
+    }
+
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on the
+     *        given input
+     *
+     * @param input
+     *     The input, as created by createInput
+     *
+     * @return The values of the output layer of the neural network
+     */
+    public double[] evaluate (double[] input) {
+        return Utilities.normalizeArray(feedForward(input));
+    }
+
+    /**
+     * @brief Returns the values of the output layer of the neural network when evaluated on each
+     *        one of the given inputs
+     *        All the inputs are evaluated together in a single batch.
+     *
+     * @param inputs
+     *     The inputs, as created by createInput
+     *
+     * @return The values of the output layer of the neural network for each input
+     */
+    public double[][] evaluateBatch (double[][] inputs) {
+        double[][] neuralNetworkOutputs = feedForward(inputs);
+        for (int i = 0; i < inputs.length; i++) {
+            neuralNetworkOutputs[i] = Utilities.normalizeArray(neuralNetworkOutputs[i]);
+        }
+
+        return neuralNetworkOutputs;
+    }
+
     /**
      * @interface Core
      * @brief Defines the API that should be implemented by an image processor so that TraceGroups
@@ -223,6 +465,30 @@ public class NeuralNetworkImpl implements NeuralNetwork {
          * @return The Image created by the given TraceGroup
          */
         Image printTraceGroup (TraceGroup traceGroup, int width, int height, int thickness);
+
+        /**
+         * @brief Transforms a TraceGroup to an Image and writes the Image, as a vector, on the
+         *        given array
+         *        The values written are the same with the ones of
+         *        printTraceGroup(traceGroup, width, height, thickness).toVector(min, max).
+         *
+         * @param traceGroup
+         *     The TraceGroup to be transformed
+         * @param width
+         *     The width of the Image
+         * @param height
+         *     The height of the Image
+         * @param thickness
+         *     The thickness of lines on the image
+         * @param min
+         *     The minimum value of the vector values
+         * @param max
+         *     The maximum value of the vector values
+         * @param vector
+         *     The array to write the vector on. Its length should be, at least, width * height.
+         */
+        void printTraceGroup (TraceGroup traceGroup, int width, int height, int thickness,
+                              double min, double max, double[] vector);
     }
 
     /**
@@ -239,6 +505,19 @@ public class NeuralNetworkImpl implements NeuralNetwork {
          * @return The distorted Image
          */
         Image distort (Image image);
+
+        /**
+         * @brief Distorts an Image so that in can be re evaluated by a neural network
+         *        This method should be safe to call concurrently.
+         *
+         * @param image
+         *     The Image to be distorted
+         * @param random
+         *     The random generator that chooses the distortion
+         *
+         * @return The distorted Image
+         */
+        Image distort (Image image, Random random);
     }
 
     /**
@@ -266,18 +545,133 @@ public class NeuralNetworkImpl implements NeuralNetwork {
         double[] toVector (double min, double max);
     }
 
+    /**
+     * @interface Backend
+     * @brief Defines the API of the engines that do the arithmetic of a feed forward pass
+     *        A Backend holds the weights and the biases of a neural network, laid out in the way
+     *        that suits its kernels, and evaluates the network one layer at a time. The activation
+     *        function of every neuron is the rectifier function.
+     */
+    public interface Backend {
+        /**
+         * @brief Sets the parameters of the neural network
+         *
+         * @param sizesOfLayers
+         *     The number of neurons in each layer
+         * @param weights
+         *     The weights of each layer, stored row-major with one row for each neuron
+         * @param biases
+         *     The biases of each layer
+         */
+        void setParameters (int[] sizesOfLayers, double[][] weights, double[][] biases);
+
+        /**
+         * @brief Evaluates a single layer of the neural network on a batch of inputs
+         *        The inputs and the outputs are stored row-major, one row for each sample of the
+         *        batch.
+         *
+         * @param layer
+         *     The index of the layer to be evaluated
+         * @param input
+         *     The activations of the previous layer
+         * @param output
+         *     The array to write the activations of this layer on
+         * @param batchSize
+         *     The number of samples in the batch
+         */
+        void feedForwardLayer (int layer, double[] input, double[] output, int batchSize);
+    }
+
+    /**
+     * @class ActivationBuffers
+     * @brief Holds, for each thread, the buffers where the activations of the layers of a neural
+     *        network are written during a feed forward pass
+     *        The buffers of each thread grow to fit the largest batch that the thread has
+     *        evaluated.
+     */
+    private static class ActivationBuffers extends ThreadLocal<double[][]> {
+        /**
+         * @brief Constructor
+         *
+         * @param sizesOfLayers
+         *     The number of neurons in each layer of the neural network
+         */
+        ActivationBuffers (int[] sizesOfLayers) {
+            sizesOfLayers_ = sizesOfLayers;
+        }
+
+        /**
+         * @brief Returns the activation buffers of the calling thread
+         *
+         * @param batchSize
+         *     The number of samples that the buffers should fit
+         *
+         * @return One row-major buffer for each layer of the neural network
+         */
+        double[][] get (int batchSize) {
+            double[][] activations = get();
+
+            if (activations[0].length < batchSize * sizesOfLayers_[0]) {
+                activations = allocate(batchSize);
+
+                set(activations);
+            }
+
+            return activations;
+        }
+
+        /**
+         * @brief Allocates the activation buffers for the calling thread
+         *
+         * @return One buffer for each layer of the neural network
+         */
+        @Override
+        protected double[][] initialValue () {
+            return allocate(1);
+        }
+
+        /**
+         * @brief Allocates activation buffers that fit the given number of samples
+         *
+         * @param batchSize
+         *     The number of samples
+         *
+         * @return One row-major buffer for each layer of the neural network
+         */
+        private double[][] allocate (int batchSize) {
+            double[][] activations = new double[sizesOfLayers_.length][];
+            for (int i = 0; i < activations.length; i++) {
+                activations[i] = new double[batchSize * sizesOfLayers_[i]];
+            }
+
+            return activations;
+        }
+
+        private final int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    }
+
     private int numberOfLayers_; //!< The number of layers of this neural network
     private int[] sizesOfLayers_; //!< The number of neurons in each layer
 
-    private double[][][] weights_; //!< The weight parameters of this NeuralNetwork
-                                   //!< Dimensions are: [layer, neuron, weight]
-    private double[][] biases_; //!< The bias parameters of this NeuralNetwork
-                                //!< dimensions are: [layer, neuron]
+    private Backend backend_; //!< The Backend that does the arithmetic of the feed forward passes
+
+    private ActivationBuffers activations_; //!< The per-thread activations of the layers
 
     private Core imageProcessor_ = null; //!< The image processor of this neural network
 
     private Distorter imageDistorter_ = null; //!< The image distorter of this neural network
 
+    private ForkJoinPool augmentationPool_ = ForkJoinPool.commonPool(); //!< The ForkJoinPool where
+                                                                        //!< distorted copies are
+                                                                        //!< generated
+
+    private final Random seeds_ = new Random(); //!< The generator of the seeds of the distortions
+
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L; //!< The difference between the
+                                                                    //!< seeds of consecutive
+                                                                    //!< distorted copies
+
     private int imageSide_; //!< The number of pixels in a row or a column of the Images that this
                             //!< neural network accepts as input
 
@@ -0,0 +1,184 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.classifiers.NNClassifier.NeuralNetwork;
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Backend;
+import org.hwer.engine.utilities.Utilities;
+import org.hwer.engine.utilities.traces.TraceGroup;
+
+
+/**
+ * @class QuantizedBackend
+ * @brief Implements a Backend that evaluates the neural network with 8-bit integer arithmetic
+ *        The weights of each layer are quantized, when the parameters are set, to signed bytes
+ *        using a single scale for the whole layer. The activations of the previous layer are
+ *        quantized in the same way, with a scale computed for each sample, and each neuron
+ *        accumulates the products of the quantized values on an integer. Only the biases are
+ *        kept in double precision.
+ */
+public class QuantizedBackend implements Backend {
+    /**
+     * @brief Sets the parameters of the neural network
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The weights of each layer, stored row-major with one row for each neuron
+     * @param biases
+     *     The biases of each layer
+     */
+    @Override
+    public void setParameters (int[] sizesOfLayers, double[][] weights, double[][] biases) {
+        sizesOfLayers_ = sizesOfLayers;
+        biases_ = biases;
+
+        weights_ = new byte[weights.length][];
+        weightScales_ = new double[weights.length];
+
+        int maximumInputSize = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weightScales_[i] = QuantizedBackend.scale(weights[i], 0, weights[i].length);
+
+            weights_[i] = new byte[weights[i].length];
+            for (int j = 0; j < weights[i].length; j++) {
+                weights_[i][j] = (byte) Math.round(weights[i][j] / weightScales_[i]);
+            }
+
+            maximumInputSize = Math.max(maximumInputSize, sizesOfLayers[i]);
+        }
+
+        final int inputBufferSize = maximumInputSize;
+        quantizedInputs_ = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue () {
+                return new byte[inputBufferSize];
+            }
+        };
+    }
+
+    /**
+     * @brief Evaluates a single layer of the neural network on a batch of inputs
+     *        The inputs and the outputs are stored row-major, one row for each sample of the
+     *        batch.
+     *
+     * @param layer
+     *     The index of the layer to be evaluated
+     * @param input
+     *     The activations of the previous layer
+     * @param output
+     *     The array to write the activations of this layer on
+     * @param batchSize
+     *     The number of samples in the batch
+     */
+    @Override
+    public void feedForwardLayer (int layer, double[] input, double[] output, int batchSize) {
+        byte[] layerWeights = weights_[layer];
+        double[] layerBiases = biases_[layer];
+
+        int inputSize = sizesOfLayers_[layer];
+        int outputSize = sizesOfLayers_[layer + 1];
+
+        byte[] quantizedInput = quantizedInputs_.get();
+
+        for (int sample = 0; sample < batchSize; sample++) {
+            int inputOffset = sample * inputSize;
+            int outputOffset = sample * outputSize;
+
+            double inputScale = QuantizedBackend.scale(input, inputOffset, inputSize);
+            for (int k = 0; k < inputSize; k++) {
+                quantizedInput[k] = (byte) Math.round(input[inputOffset + k] / inputScale);
+            }
+
+            double scale = weightScales_[layer] * inputScale;
+
+            for (int j = 0, offset = 0; j < outputSize; j++, offset += inputSize) {
+                int sum = 0;
+                for (int k = 0; k < inputSize; k++) {
+                    sum += layerWeights[offset + k] * quantizedInput[k];
+                }
+
+                output[outputOffset + j] = Math.max(0, sum * scale + layerBiases[j]);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the scale that maps the largest absolute value of a range of an array to the
+     *        largest value of a signed byte
+     *
+     * @param array
+     *     The array
+     * @param offset
+     *     The index of the first value of the range
+     * @param length
+     *     The number of values in the range
+     *
+     * @return The scale of the range. If all the values are zero, the scale is one.
+     */
+    private static double scale (double[] array, int offset, int length) {
+        double maximum = 0;
+        for (int i = offset; i < offset + length; i++) {
+            maximum = Math.max(maximum, Math.abs(array[i]));
+        }
+
+        if (maximum == 0) {
+            return 1;
+        }
+
+        return maximum / Byte.MAX_VALUE;
+    }
+
+    /**
+     * @brief Returns the fraction of a corpus of TraceGroups on which two neural networks give the
+     *        same top-1 label
+     *        This is used to check a quantized neural network against the double precision one it
+     *        was derived from.
+     *
+     * @param reference
+     *     The reference neural network
+     * @param candidate
+     *     The neural network to check against the reference
+     * @param corpus
+     *     The TraceGroups to evaluate the neural networks on
+     *
+     * @return The fraction of the corpus on which the top-1 labels agree
+     */
+    public static double agreement (NeuralNetwork reference, NeuralNetwork candidate,
+                                    TraceGroup[] corpus) {
+        if (corpus.length == 0) {
+            return 1;
+        }
+
+        double[][] inputs = new double[corpus.length][];
+        for (int i = 0; i < corpus.length; i++) {
+            inputs[i] = reference.createInput(corpus[i]);
+        }
+
+        double[][] referenceOutputs = reference.evaluateBatch(inputs);
+        double[][] candidateOutputs = candidate.evaluateBatch(inputs);
+
+        int numberOfAgreements = 0;
+        for (int i = 0; i < corpus.length; i++) {
+            if (Utilities.indexOfMax(referenceOutputs[i]) ==
+                Utilities.indexOfMax(candidateOutputs[i])) {
+                numberOfAgreements++;
+            }
+        }
+
+        return ((double) numberOfAgreements) / corpus.length;
+    }
+
+    private int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    private byte[][] weights_; //!< The quantized weight parameters of the neural network
+                               //!< Each layer is a row-major buffer with dimensions:
+                               //!< [neuron, weight]
+
+    private double[] weightScales_; //!< The scale of the quantized weights of each layer
+
+    private double[][] biases_; //!< The bias parameters of the neural network
+
+    private ThreadLocal<byte[]> quantizedInputs_; //!< The per-thread buffer where the quantized
+                                                  //!< activations of the previous layer are kept
+
+}
@@ -0,0 +1,130 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Backend;
+
+
+/**
+ * @class ScalarBackend
+ * @brief Implements a Backend that evaluates each neuron with a plain dot product
+ *        The weights are kept row-major, one row for each neuron. This is the reference
+ *        implementation that every other Backend is checked against.
+ */
+public class ScalarBackend implements Backend {
+    /**
+     * @brief Sets the parameters of the neural network
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The weights of each layer, stored row-major with one row for each neuron
+     * @param biases
+     *     The biases of each layer
+     */
+    @Override
+    public void setParameters (int[] sizesOfLayers, double[][] weights, double[][] biases) {
+        sizesOfLayers_ = sizesOfLayers;
+        weights_ = weights;
+        biases_ = biases;
+    }
+
+    /**
+     * @brief Evaluates a single layer of the neural network on a batch of inputs
+     *        The inputs and the outputs are stored row-major, one row for each sample of the
+     *        batch. Each weight row is applied on four samples at a time so that every weight
+     *        loaded from memory is used four times, while the summation order for each sample is
+     *        the same as when evaluating a single input.
+     *
+     * @param layer
+     *     The index of the layer to be evaluated
+     * @param input
+     *     The activations of the previous layer
+     * @param output
+     *     The array to write the activations of this layer on
+     * @param batchSize
+     *     The number of samples in the batch
+     */
+    @Override
+    public void feedForwardLayer (int layer, double[] input, double[] output, int batchSize) {
+        double[] layerWeights = weights_[layer];
+        double[] layerBiases = biases_[layer];
+
+        int inputSize = sizesOfLayers_[layer];
+        int outputSize = sizesOfLayers_[layer + 1];
+
+        for (int j = 0, offset = 0; j < outputSize; j++, offset += inputSize) {
+            double bias = layerBiases[j];
+
+            int sample = 0;
+            for (; sample + 3 < batchSize; sample += 4) {
+                int input0 = sample * inputSize;
+                int input1 = input0 + inputSize;
+                int input2 = input1 + inputSize;
+                int input3 = input2 + inputSize;
+
+                double sum0 = 0;
+                double sum1 = 0;
+                double sum2 = 0;
+                double sum3 = 0;
+                for (int k = 0; k < inputSize; k++) {
+                    double weight = layerWeights[offset + k];
+
+                    sum0 += weight * input[input0 + k];
+                    sum1 += weight * input[input1 + k];
+                    sum2 += weight * input[input2 + k];
+                    sum3 += weight * input[input3 + k];
+                }
+
+                output[sample * outputSize + j] = this.activationFunction(sum0 + bias);
+                output[(sample + 1) * outputSize + j] = this.activationFunction(sum1 + bias);
+                output[(sample + 2) * outputSize + j] = this.activationFunction(sum2 + bias);
+                output[(sample + 3) * outputSize + j] = this.activationFunction(sum3 + bias);
+            }
+
+            for (; sample < batchSize; sample++) {
+                int inputOffset = sample * inputSize;
+
+                double sum = 0;
+                for (int k = 0; k < inputSize; k++) {
+                    sum += layerWeights[offset + k] * input[inputOffset + k];
+                }
+
+                output[sample * outputSize + j] = this.activationFunction(sum + bias);
+            }
+        }
+    }
+
+    /**
+     * @brief The activation function of the neurons of the neural network
+     *
+     * @param z
+     *     The independent variable
+     *
+     * @return The value of the activation function at z
+     */
+    private double activationFunction (double z) {
+        return (relu(z));
+    }
+
+    /**
+     * @brief The rectifier function
+     *
+     * @param z
+     *     The independent variable
+     *
+     * @return The value of the rectifier function on z
+     */
+    private double relu (double z) {
+        return Math.max(0, z);
+    }
+
+
+    private int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    private double[][] weights_; //!< The weight parameters of the neural network
+                                 //!< Each layer is a row-major buffer with dimensions:
+                                 //!< [neuron, weight]
+
+    private double[][] biases_; //!< The bias parameters of the neural network
+
+}
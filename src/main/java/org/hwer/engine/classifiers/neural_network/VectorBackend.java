@@ -0,0 +1,102 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Backend;
+
+import java.util.Arrays;
+
+
+/**
+ * @class VectorBackend
+ * @brief Implements a Backend whose inner loops can be compiled to SIMD instructions
+ *        The weights of each layer are kept transposed, one row for each input neuron, so that a
+ *        layer is evaluated as a sequence of scaled vector additions over contiguous memory, which
+ *        the just-in-time compiler turns into SIMD instructions. The input neurons that are zero,
+ *        which after the rectifier function are most of the hidden ones, are skipped. Each output
+ *        neuron accumulates its terms in the same order as in ScalarBackend, so the two Backends
+ *        give exactly the same results.
+ */
+public class VectorBackend implements Backend {
+    /**
+     * @brief Sets the parameters of the neural network
+     *
+     * @param sizesOfLayers
+     *     The number of neurons in each layer
+     * @param weights
+     *     The weights of each layer, stored row-major with one row for each neuron
+     * @param biases
+     *     The biases of each layer
+     */
+    @Override
+    public void setParameters (int[] sizesOfLayers, double[][] weights, double[][] biases) {
+        sizesOfLayers_ = sizesOfLayers;
+        biases_ = biases;
+
+        transposedWeights_ = new double[weights.length][];
+        for (int i = 0; i < weights.length; i++) {
+            int inputSize = sizesOfLayers[i];
+            int outputSize = sizesOfLayers[i + 1];
+
+            transposedWeights_[i] = new double[inputSize * outputSize];
+            for (int j = 0; j < outputSize; j++) {
+                for (int k = 0; k < inputSize; k++) {
+                    transposedWeights_[i][k * outputSize + j] = weights[i][j * inputSize + k];
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Evaluates a single layer of the neural network on a batch of inputs
+     *        The inputs and the outputs are stored row-major, one row for each sample of the
+     *        batch.
+     *
+     * @param layer
+     *     The index of the layer to be evaluated
+     * @param input
+     *     The activations of the previous layer
+     * @param output
+     *     The array to write the activations of this layer on
+     * @param batchSize
+     *     The number of samples in the batch
+     */
+    @Override
+    public void feedForwardLayer (int layer, double[] input, double[] output, int batchSize) {
+        double[] layerWeights = transposedWeights_[layer];
+        double[] layerBiases = biases_[layer];
+
+        int inputSize = sizesOfLayers_[layer];
+        int outputSize = sizesOfLayers_[layer + 1];
+
+        for (int sample = 0; sample < batchSize; sample++) {
+            int inputOffset = sample * inputSize;
+            int outputOffset = sample * outputSize;
+
+            Arrays.fill(output, outputOffset, outputOffset + outputSize, 0);
+
+            for (int k = 0, offset = 0; k < inputSize; k++, offset += outputSize) {
+                double value = input[inputOffset + k];
+                if (value == 0) {
+                    continue;
+                }
+
+                for (int j = 0; j < outputSize; j++) {
+                    output[outputOffset + j] += layerWeights[offset + j] * value;
+                }
+            }
+
+            for (int j = 0; j < outputSize; j++) {
+                output[outputOffset + j] = Math.max(0, output[outputOffset + j] + layerBiases[j]);
+            }
+        }
+    }
+
+    private int[] sizesOfLayers_; //!< The number of neurons in each layer
+
+    private double[][] transposedWeights_; //!< The weight parameters of the neural network
+                                           //!< Each layer is a row-major buffer with dimensions:
+                                           //!< [input neuron, neuron]
+
+    private double[][] biases_; //!< The bias parameters of the neural network
+
+}
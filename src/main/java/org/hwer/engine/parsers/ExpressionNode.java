@@ -0,0 +1,385 @@
+package org.hwer.engine.parsers;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hwer.engine.parsers.grammars.GeometricalGrammar.ArgumentPosition;
+import org.hwer.engine.symbols.ExpressionTemplate;
+import org.hwer.engine.symbols.Symbol;
+import org.hwer.engine.symbols.SymbolFactory.Classes;
+import org.hwer.engine.symbols.SymbolFactory.Labels;
+import org.hwer.engine.utilities.traces.Point;
+
+
+/**
+ * @class ExpressionNode
+ * @brief Implements an immutable node of the expression tree of a parsed equation
+ *        A node holds what a Symbol was parsed to, at the moment that the node was built: its
+ *        class, its label, its confidence, its bounding box and the nodes written at each
+ *        position where it accepts children. The LaTeX and the MathML of a node are rendered
+ *        from those of its children once, and kept for as long as the node is.
+ */
+public class ExpressionNode {
+    /**
+     * @brief Constructor
+     *
+     * @param symbol
+     *     The Symbol that this node is built for
+     * @param positions
+     *     The positions where the Symbol accepts children. The array is kept by this node.
+     * @param children
+     *     The nodes written at each of the positions. The Lists are kept by this node, so they
+     *     should not be modified afterwards.
+     */
+    ExpressionNode (Symbol symbol, ArgumentPosition[] positions,
+                    List<List<ExpressionNode>> children) {
+        clazz_ = symbol.getClazz();
+        label_ = symbol.getLabel();
+        confidence_ = symbol.getConfidence();
+
+        Point topLeftCorner = symbol.getTraceGroup().getTopLeftCorner();
+        Point bottomRightCorner = symbol.getTraceGroup().getBottomRightCorner();
+        minX_ = topLeftCorner.x_;
+        maxY_ = topLeftCorner.y_;
+        maxX_ = bottomRightCorner.x_;
+        minY_ = bottomRightCorner.y_;
+
+        positions_ = positions;
+
+        List<List<ExpressionNode>> unmodifiableChildren =
+            new ArrayList<List<ExpressionNode>>(children.size());
+        for (List<ExpressionNode> samePositionChildren : children) {
+            unmodifiableChildren.add(Collections.unmodifiableList(samePositionChildren));
+        }
+        children_ = Collections.unmodifiableList(unmodifiableChildren);
+
+        template_ = symbol.getExpressionTemplate();
+
+        String[] arguments = new String[positions_.length];
+        for (int i = 0; i < positions_.length; i++) {
+            if (children_.get(i).size() > 0) {
+                arguments[i] = ExpressionNode.toLatex(children_.get(i));
+            }
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        template_.write(stringBuilder, arguments);
+        latex_ = stringBuilder.toString();
+    }
+
+    /**
+     * @brief Returns true if this node is what a given Symbol and the nodes of its children
+     *        would be built to
+     *
+     * @param symbol
+     *     The Symbol
+     * @param positions
+     *     The positions where the Symbol accepts children
+     * @param children
+     *     The nodes written at each of the positions
+     *
+     * @return True if this node can stand for the Symbol
+     */
+    boolean isBuiltFrom (Symbol symbol, ArgumentPosition[] positions,
+                         List<List<ExpressionNode>> children) {
+        if (symbol.getExpressionTemplate() != template_ || symbol.getClazz() != clazz_ ||
+            symbol.getLabel() != label_ || symbol.getConfidence() != confidence_ ||
+            ! Arrays.equals(positions, positions_)) {
+            return false;
+        }
+
+        Point topLeftCorner = symbol.getTraceGroup().getTopLeftCorner();
+        Point bottomRightCorner = symbol.getTraceGroup().getBottomRightCorner();
+        if (topLeftCorner.x_ != minX_ || topLeftCorner.y_ != maxY_ ||
+            bottomRightCorner.x_ != maxX_ || bottomRightCorner.y_ != minY_) {
+            return false;
+        }
+
+        for (int i = 0; i < positions_.length; i++) {
+            List<ExpressionNode> samePositionChildren = children.get(i);
+
+            if (samePositionChildren.size() != children_.get(i).size()) {
+                return false;
+            }
+
+            for (int j = 0; j < samePositionChildren.size(); j++) {
+                if (samePositionChildren.get(j) != children_.get(i).get(j)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @brief Getter method for the class of this node
+     *
+     * @return The class of this node
+     */
+    public Classes getClazz () {
+        return clazz_;
+    }
+
+    /**
+     * @brief Getter method for the label of this node
+     *
+     * @return The label of this node
+     */
+    public Labels getLabel () {
+        return label_;
+    }
+
+    /**
+     * @brief Getter method for the confidence of the Symbol of this node
+     *
+     * @return The confidence of the Symbol of this node
+     */
+    public double getConfidence () {
+        return confidence_;
+    }
+
+    /**
+     * @brief Getter method for the top left corner of the bounding box of this node
+     *
+     * @return The minimum abscissa and the maximum ordinate of the bounding box
+     */
+    public Point getTopLeftCorner () {
+        return new Point(minX_, maxY_);
+    }
+
+    /**
+     * @brief Getter method for the bottom right corner of the bounding box of this node
+     *
+     * @return The maximum abscissa and the minimum ordinate of the bounding box
+     */
+    public Point getBottomRightCorner () {
+        return new Point(maxX_, minY_);
+    }
+
+    /**
+     * @brief Getter method for the positions where this node accepts children
+     *
+     * @return The positions where this node accepts children
+     */
+    public ArgumentPosition[] getChildrenPositions () {
+        return Arrays.copyOf(positions_, positions_.length);
+    }
+
+    /**
+     * @brief Returns the children of this node at a given position, in the order that they are
+     *        written
+     *
+     * @param position
+     *     The position
+     *
+     * @return The children at the position, an empty List if this node has no children there
+     */
+    public List<ExpressionNode> getChildren (ArgumentPosition position) {
+        int index = Arrays.asList(positions_).indexOf(position);
+
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+
+        return children_.get(index);
+    }
+
+    /**
+     * @brief Returns the LaTeX of the expression beginning from this node
+     *
+     * @return The LaTeX of the expression beginning from this node
+     */
+    public String toLatex () {
+        return latex_;
+    }
+
+    /**
+     * @brief Returns the MathML of the expression beginning from this node
+     *        The MathML is rendered the first time that this method is called.
+     *
+     * @return The MathML of the expression beginning from this node
+     */
+    public String toMathML () {
+        if (mathML_ == null) {
+            mathML_ = this.renderMathML();
+        }
+
+        return mathML_;
+    }
+
+    /**
+     * @brief Renders the MathML of the expression beginning from this node
+     *
+     * @return The MathML of the expression beginning from this node
+     */
+    private String renderMathML () {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        switch (label_) {
+            case SQUARE_ROOT:
+                stringBuilder.append("<msqrt>");
+                this.appendRow(stringBuilder, ArgumentPosition.INSIDE);
+                stringBuilder.append("</msqrt>");
+                break;
+            case FRACTION_LINE:
+                stringBuilder.append("<mfrac>");
+                this.appendRow(stringBuilder, ArgumentPosition.ABOVE);
+                this.appendRow(stringBuilder, ArgumentPosition.BELOW);
+                stringBuilder.append("</mfrac>");
+                break;
+            default:
+                String element;
+                switch (clazz_) {
+                    case NUMBER:
+                        element = "mn";
+                        break;
+                    case OPERATOR:
+                        element = "mo";
+                        break;
+                    case LETTER:
+                    case VARIABLE:
+                        element = "mi";
+                        break;
+                    default:
+                        element = "mtext";
+                        break;
+                }
+
+                // The LaTeX of the Symbol itself, that is, without any of its children.
+                StringBuilder text = new StringBuilder();
+                template_.write(text, new String[positions_.length]);
+
+                stringBuilder.append("<").append(element).append(">");
+                ExpressionNode.appendEscaped(stringBuilder, text.toString());
+                stringBuilder.append("</").append(element).append(">");
+                break;
+        }
+
+        boolean superscript = this.getChildren(ArgumentPosition.ABOVE_RIGHT).size() > 0;
+        boolean subscript = this.getChildren(ArgumentPosition.BELOW_RIGHT).size() > 0;
+
+        if (superscript && subscript) {
+            stringBuilder.insert(0, "<msubsup>");
+            this.appendRow(stringBuilder, ArgumentPosition.BELOW_RIGHT);
+            this.appendRow(stringBuilder, ArgumentPosition.ABOVE_RIGHT);
+            stringBuilder.append("</msubsup>");
+        }
+        else if (superscript) {
+            stringBuilder.insert(0, "<msup>");
+            this.appendRow(stringBuilder, ArgumentPosition.ABOVE_RIGHT);
+            stringBuilder.append("</msup>");
+        }
+        else if (subscript) {
+            stringBuilder.insert(0, "<msub>");
+            this.appendRow(stringBuilder, ArgumentPosition.BELOW_RIGHT);
+            stringBuilder.append("</msub>");
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @brief Appends the MathML of the children of this node at a given position as a row
+     *
+     * @param stringBuilder
+     *     The StringBuilder
+     * @param position
+     *     The position
+     */
+    private void appendRow (StringBuilder stringBuilder, ArgumentPosition position) {
+        stringBuilder.append("<mrow>");
+        for (ExpressionNode child : this.getChildren(position)) {
+            stringBuilder.append(child.toMathML());
+        }
+        stringBuilder.append("</mrow>");
+    }
+
+    /**
+     * @brief Appends a text to a StringBuilder, escaping the characters that XML reserves
+     *
+     * @param stringBuilder
+     *     The StringBuilder
+     * @param text
+     *     The text
+     */
+    private static void appendEscaped (StringBuilder stringBuilder, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+
+            switch (character) {
+                case '<':
+                    stringBuilder.append("&lt;");
+                    break;
+                case '>':
+                    stringBuilder.append("&gt;");
+                    break;
+                case '&':
+                    stringBuilder.append("&amp;");
+                    break;
+                default:
+                    stringBuilder.append(character);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the LaTeX of a sequence of nodes
+     *
+     * @param nodes
+     *     The nodes
+     *
+     * @return The LaTeX of the nodes, one after the other
+     */
+    public static String toLatex (List<ExpressionNode> nodes) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (ExpressionNode node : nodes) {
+            stringBuilder.append(node.toLatex());
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @brief Returns the MathML document of a sequence of nodes
+     *
+     * @param nodes
+     *     The nodes
+     *
+     * @return A math element that holds the MathML of the nodes in a single row
+     */
+    public static String toMathML (List<ExpressionNode> nodes) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("<math xmlns=\"http://www.w3.org/1998/Math/MathML\"><mrow>");
+        for (ExpressionNode node : nodes) {
+            stringBuilder.append(node.toMathML());
+        }
+        stringBuilder.append("</mrow></math>");
+
+        return stringBuilder.toString();
+    }
+
+    private final Classes clazz_; //!< The class of the Symbol of this node
+    private final Labels label_; //!< The label of the Symbol of this node
+    private final double confidence_; //!< The confidence of the Symbol of this node
+
+    private final double minX_; //!< The minimum abscissa of the bounding box of this node
+    private final double minY_; //!< The minimum ordinate of the bounding box of this node
+    private final double maxX_; //!< The maximum abscissa of the bounding box of this node
+    private final double maxY_; //!< The maximum ordinate of the bounding box of this node
+
+    private final ArgumentPosition[] positions_; //!< The positions where this node accepts children
+    private final List<List<ExpressionNode>> children_; //!< The children of this node at each
+                                                        //!< position
+
+    private final ExpressionTemplate template_; //!< The compiled string representation of the
+                                                //!< Symbol of this node
+    private final String latex_; //!< The LaTeX of the expression beginning from this node
+    private volatile String mathML_ = null; //!< The MathML of the expression beginning from this
+                                            //!< node, once it is rendered
+
+}
@@ -1,18 +1,25 @@
 package org.hwer.engine.parsers;
 
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.logging.Level;
 import java.util.logging.ConsoleHandler;
 
+import org.hwer.engine.parsers.grammars.GeometricalGrammar.ArgumentPosition;
 import org.hwer.engine.symbols.Symbol;
 import org.hwer.engine.symbols.SymbolFactory;
 import org.hwer.engine.utilities.Utilities;
 import org.hwer.engine.utilities.logging.SingleLineFormatter;
+import org.hwer.engine.utilities.math.RTree;
 import org.hwer.engine.utilities.traces.*;
 
 
@@ -30,6 +37,7 @@ public class GrammarParser extends Parser {
     public GrammarParser (Grammar grammar) {
         equation_ = "";
         calculateEquation_ = true;
+        calculateExpressionTree_ = true;
 
         grammar_ = grammar;
 
@@ -50,6 +58,7 @@ public class GrammarParser extends Parser {
 
     /**
      * @brief Parses a given set of Symbols setting the relationships between them
+     *        The Symbols are reset first, so that no relationship of an earlier parsing is kept.
      */
     @Override
     public synchronized void parse (Symbol[] symbols) {
@@ -59,6 +68,10 @@ public class GrammarParser extends Parser {
             return;
         }
 
+        for (Symbol symbol : symbols_) {
+            symbol.reset();
+        }
+
         parseRecursively(symbols_);
 
         for (Symbol symbol : symbols_) {
@@ -68,6 +81,7 @@ public class GrammarParser extends Parser {
         }
 
         calculateEquation_ = true;
+        calculateExpressionTree_ = true;
     }
 
     private void parseRecursively (Symbol[] symbols) {
@@ -112,12 +126,15 @@ public class GrammarParser extends Parser {
         }
         /* ===== Logs End ===== */
 
-        Hashtable<Integer, int[]> pathsTable = new Hashtable<Integer, int[]>();
+        RTree symbolsIndex = GrammarParser.buildIndex(symbols);
+
+        Hashtable<BitSet, int[]> pathsTable = new Hashtable<BitSet, int[]>();
         for (int i = 0; i < numberOfSymbols - 1; i++) {
-            int[][] paths = this.processPath(symbols, symbols[i], i, symbols[i + 1], i + 1);
+            int[][] paths = this.processPath(symbols, symbolsIndex, symbols[i], i, symbols[i + 1],
+                i + 1);
 
             for (int[] path : paths) {
-                pathsTable.put(Utilities.pathHashKey(path), path);
+                pathsTable.put(Utilities.pathKey(path), path);
             }
         }
 
@@ -183,17 +200,7 @@ public class GrammarParser extends Parser {
         }
         /* ===== Logs End ===== */
 
-        for (int i = 0; i < numberOfPaths; i++) {
-            grammar_.parse(symbols[paths[i][0]], symbols[paths[i][1]]);
-        }
-
-        String previousState;
-        do {
-            previousState = this.toString();
-            for (int i = 0; i < numberOfPaths; i++) {
-                grammar_.parse(symbols[paths[i][0]], symbols[paths[i][1]]);
-            }
-        } while (! previousState.equals(this.toString()));
+        this.parseToFixPoint(symbols, paths);
 
         for (Symbol symbol : symbols) {
             List<List<Symbol>> children = symbol.getChildren();
@@ -216,11 +223,221 @@ public class GrammarParser extends Parser {
         }
     }
 
+    /**
+     * @brief Parses the given paths until the relations of the Symbols stop changing
+     *        The first pass parses every path. Each later pass only parses again the paths whose
+     *        Symbols changed after the path was last parsed, so the passes stop as soon as no path
+     *        needs to be parsed again. Symbols that compete for the same child can keep taking it
+     *        from each other, so the passes also stop when the relations return to those after
+     *        one of the two previous passes, and after MAXIMUM_NUMBER_OF_PASSES passes.
+     *
+     * @param symbols
+     *     All the symbols that are currently being processed
+     * @param paths
+     *     The paths to parse, in the order they are parsed on each pass
+     */
+    private void parseToFixPoint (Symbol[] symbols, int[][] paths) {
+        int numberOfPaths = paths.length;
+
+        ParsedPath[] parsedPaths = new ParsedPath[numberOfPaths];
+
+        // The relations after the last two passes. They are only needed once a pass after the
+        // first one has to parse a path again, which is rare for simple equations.
+        Symbol[][] relations = null;
+        Symbol[][] previousRelations = null;
+
+        int numberOfPasses = 0;
+        boolean changed = true;
+        boolean repeated = false;
+        while (changed && ! repeated && numberOfPasses < MAXIMUM_NUMBER_OF_PASSES) {
+            changed = false;
+
+            for (int i = 0; i < numberOfPaths; i++) {
+                if (parsedPaths[i] != null && ! parsedPaths[i].hasChanged()) {
+                    continue;
+                }
+
+                if (numberOfPasses > 0 && relations == null) {
+                    relations = GrammarParser.relationsOf(symbols);
+                }
+
+                Symbol primary = symbols[paths[i][0]];
+                Symbol secondary = symbols[paths[i][1]];
+
+                grammar_.parse(primary, secondary);
+
+                if (parsedPaths[i] == null) {
+                    parsedPaths[i] = new ParsedPath();
+                }
+                parsedPaths[i].record(primary, secondary);
+
+                changed = true;
+            }
+
+            numberOfPasses++;
+
+            if (changed && numberOfPasses > 1) {
+                Symbol[][] newRelations = GrammarParser.relationsOf(symbols);
+
+                repeated = Arrays.deepEquals(newRelations, relations) ||
+                    Arrays.deepEquals(newRelations, previousRelations);
+
+                previousRelations = relations;
+                relations = newRelations;
+            }
+        }
+
+        /* ===== Logs Start ===== */
+        if (logger_.getLevel() != Level.OFF) {
+            logger_.info("Paths parsed in " + numberOfPasses + " passes" +
+                (repeated ? ", until the relations repeated" :
+                    changed ? ", before the relations stopped changing" : ""));
+        }
+        /* ===== Logs End ===== */
+    }
+
+    /**
+     * @brief Returns the relations of some Symbols
+     *
+     * @param symbols
+     *     The Symbols
+     *
+     * @return The parent, the previous Symbol and the next Symbol of each Symbol, followed by its
+     *         children, with a null after the children of each position
+     */
+    private static Symbol[][] relationsOf (Symbol[] symbols) {
+        Symbol[][] relations = new Symbol[symbols.length][];
+
+        for (int i = 0; i < symbols.length; i++) {
+            ArrayList<Symbol> symbolRelations = new ArrayList<Symbol>();
+            symbolRelations.add(symbols[i].getParent());
+            symbolRelations.add(symbols[i].getPreviousSymbol());
+            symbolRelations.add(symbols[i].getNextSymbol());
+
+            for (List<Symbol> samePositionChildren : symbols[i].getChildren()) {
+                symbolRelations.addAll(samePositionChildren);
+                symbolRelations.add(null);
+            }
+
+            relations[i] = symbolRelations.toArray(new Symbol[symbolRelations.size()]);
+        }
+
+        return relations;
+    }
+
+    /**
+     * @class ParsedPath
+     * @brief Remembers what the parsing of a path depended on and what it decided
+     *        The Grammar reads the structure of the two Symbols of a path and of the ancestors of
+     *        the first one, and links the second Symbol after one of the others. The path has to be
+     *        parsed again only if one of these structures changed, or if another path changed one
+     *        of these links afterwards, since parsing the path again would then set it back. A
+     *        change of ancestors is always a change of the parent of a Symbol that is already
+     *        remembered. Links are compared by value, so a link that was changed and then set back
+     *        does not count as a change.
+     */
+    private static class ParsedPath {
+        /**
+         * @brief Remembers a path that was just parsed
+         *
+         * @param primary
+         *     The first Symbol of the path
+         * @param secondary
+         *     The second Symbol of the path
+         */
+        void record (Symbol primary, Symbol secondary) {
+            numberOfSymbols_ = 0;
+            this.add(secondary, secondary.getPreviousSymbol());
+
+            for (Symbol symbol = primary; symbol != null && ! this.contains(symbol);
+                 symbol = symbol.getParent()) {
+                this.add(symbol, symbol.getNextSymbol());
+            }
+        }
+
+        /**
+         * @brief Remembers a Symbol, the version of its structure and one of its links
+         *
+         * @param symbol
+         *     The Symbol
+         * @param link
+         *     The previous Symbol of the second Symbol of the path, or the next Symbol of any
+         *     other Symbol
+         */
+        private void add (Symbol symbol, Symbol link) {
+            if (numberOfSymbols_ == symbols_.length) {
+                symbols_ = Arrays.copyOf(symbols_, 2 * numberOfSymbols_);
+                versions_ = Arrays.copyOf(versions_, 2 * numberOfSymbols_);
+                links_ = Arrays.copyOf(links_, 2 * numberOfSymbols_);
+            }
+
+            symbols_[numberOfSymbols_] = symbol;
+            versions_[numberOfSymbols_] = symbol.getStructureVersion();
+            links_[numberOfSymbols_] = link;
+            numberOfSymbols_++;
+        }
+
+        /**
+         * @brief Returns true if a Symbol is remembered
+         *
+         * @param symbol
+         *     The Symbol
+         *
+         * @return True if the Symbol is remembered
+         */
+        private boolean contains (Symbol symbol) {
+            for (int i = 0; i < numberOfSymbols_; i++) {
+                if (symbols_[i] == symbol) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * @brief Returns true if a remembered Symbol changed since the path was parsed
+         *
+         * @return True if the path has to be parsed again
+         */
+        boolean hasChanged () {
+            if (symbols_[0].getPreviousSymbol() != links_[0]) {
+                return true;
+            }
+
+            for (int i = 0; i < numberOfSymbols_; i++) {
+                if (symbols_[i].getStructureVersion() != versions_[i]) {
+                    return true;
+                }
+
+                if (i > 0 && symbols_[i].getNextSymbol() != links_[i]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private Symbol[] symbols_ = new Symbol[4]; //!< The second Symbol of the path, followed by
+                                                   //!< the first one and its ancestors
+        private long[] versions_ = new long[4]; //!< The versions of the structures of the Symbols
+                                                //!< right after the parsing
+        private Symbol[] links_ = new Symbol[4]; //!< The links of the Symbols right after the
+                                                 //!< parsing
+        private int numberOfSymbols_ = 0; //!< The number of remembered Symbols
+
+    }
+
     /**
      * @brief Processes a pair of symbols to check if there is another symbol between them
      *
+     *        Only the symbols whose bounding boxes are close enough to the line that connects the
+     *        pair are checked, in the order of their positions into symbols.
+     *
      * @param symbols
      *     All the symbols that are currently being processed
+     * @param symbolsIndex
+     *     The index over the bounding boxes of symbols
      * @param symbol1
      *     The first symbol to be processed
      * @param index1
@@ -232,7 +449,7 @@ public class GrammarParser extends Parser {
      *
      * @return The paths that result from pre-processing
      */
-    private int[][] processPath (Symbol[] symbols, Symbol symbol1, int index1,
+    private int[][] processPath (Symbol[] symbols, RTree symbolsIndex, Symbol symbol1, int index1,
                                  Symbol symbol2, int index2) {
         Trace connectionLine = new Trace();
         Point[] closestPoints = TraceGroup.closestPoints(symbol1.getTraceGroup(),
@@ -240,7 +457,19 @@ public class GrammarParser extends Parser {
         connectionLine.add(closestPoints[0]);
         connectionLine.add(closestPoints[1]);
 
-        for (int i = 0; i < symbols.length; i++) {
+        // The traces of the symbols may be single Points too.
+        double margin = Trace.OVERLAP_TOLERANCE + Trace.SINGLE_POINT_RADIUS;
+        if (connectionLine.size() == 1) {
+            margin += Trace.SINGLE_POINT_RADIUS;
+        }
+
+        Point topLeftCorner = connectionLine.getTopLeftCorner();
+        Point bottomRightCorner = connectionLine.getBottomRightCorner();
+        int[] candidates = symbolsIndex.search(topLeftCorner.x_ - margin,
+            bottomRightCorner.y_ - margin, bottomRightCorner.x_ + margin,
+            topLeftCorner.y_ + margin);
+
+        for (int i : candidates) {
             if (i == index1 || i == index2) {
                 continue;
             }
@@ -261,6 +490,32 @@ public class GrammarParser extends Parser {
         return (new int[][] {{index1, index2}});
     }
 
+    /**
+     * @brief Builds an index over the bounding boxes of a group of Symbols
+     *
+     * @param symbols
+     *     The Symbols
+     *
+     * @return The index, whose boxes are numbered as the positions of the Symbols into symbols
+     */
+    private static RTree buildIndex (Symbol[] symbols) {
+        int numberOfSymbols = symbols.length;
+        double[] minX = new double[numberOfSymbols];
+        double[] minY = new double[numberOfSymbols];
+        double[] maxX = new double[numberOfSymbols];
+        double[] maxY = new double[numberOfSymbols];
+        for (int i = 0; i < numberOfSymbols; i++) {
+            Point topLeftCorner = symbols[i].getTraceGroup().getTopLeftCorner();
+            Point bottomRightCorner = symbols[i].getTraceGroup().getBottomRightCorner();
+            minX[i] = topLeftCorner.x_;
+            minY[i] = bottomRightCorner.y_;
+            maxX[i] = bottomRightCorner.x_;
+            maxY[i] = topLeftCorner.y_;
+        }
+
+        return new RTree(minX, minY, maxX, maxY);
+    }
+
     /**
      * @brief Returns the equation created by the parsed Symbols
      *
@@ -285,15 +540,18 @@ public class GrammarParser extends Parser {
         }
 
         if (symbols_ != null && symbols_.length > 0) {
-            equation_ = symbols_[0].buildExpression();
+            StringBuilder stringBuilder = new StringBuilder();
+            symbols_[0].buildExpression(stringBuilder);
 
             for (int i = 0; i < symbols_.length - 1; i++) {
                 if (symbols_[i].getNextSymbol() != null) {
                     if (symbols_[i].getNextSymbol().getParent() == null) {
-                        equation_ += symbols_[i].getNextSymbol().buildExpression();
+                        symbols_[i].getNextSymbol().buildExpression(stringBuilder);
                     }
                 }
             }
+
+            equation_ = stringBuilder.toString();
         }
         else {
             equation_ = "";
@@ -302,6 +560,109 @@ public class GrammarParser extends Parser {
         calculateEquation_ = false;
     }
 
+    /**
+     * @brief Builds the expression tree based upon the current state of the Symbols
+     *        A node of the last expression tree is kept if its Symbol and the nodes of its
+     *        children are the same, so only the subtrees that changed, and their ancestors, are
+     *        rendered again.
+     */
+    private void buildExpressionTree () {
+        Map<Symbol, ExpressionNode> expressionNodes = new IdentityHashMap<Symbol, ExpressionNode>(
+            (symbols_ != null) ? symbols_.length : 0);
+        List<ExpressionNode> expressionTree = new ArrayList<ExpressionNode>();
+
+        if (symbols_ != null && symbols_.length > 0) {
+            expressionTree.add(this.buildExpressionNode(symbols_[0], expressionNodes));
+
+            for (int i = 0; i < symbols_.length - 1; i++) {
+                if (symbols_[i].getNextSymbol() != null) {
+                    if (symbols_[i].getNextSymbol().getParent() == null) {
+                        expressionTree.add(this.buildExpressionNode(symbols_[i].getNextSymbol(),
+                            expressionNodes));
+                    }
+                }
+            }
+        }
+
+        /* ===== Logs Start ===== */
+        if (logger_.getLevel() != Level.OFF) {
+            int numberOfKeptNodes = 0;
+            for (Map.Entry<Symbol, ExpressionNode> entry : expressionNodes.entrySet()) {
+                if (expressionNodes_.get(entry.getKey()) == entry.getValue()) {
+                    numberOfKeptNodes++;
+                }
+            }
+
+            logger_.info("Expression tree built: " + numberOfKeptNodes + " of " +
+                expressionNodes.size() + " nodes kept");
+        }
+        /* ===== Logs End ===== */
+
+        expressionNodes_ = expressionNodes;
+        expressionTree_ = Collections.unmodifiableList(expressionTree);
+
+        calculateExpressionTree_ = false;
+    }
+
+    /**
+     * @brief Builds the node of the expression tree for a Symbol
+     *        The node of the last expression tree is returned if nothing that it holds has changed.
+     *
+     * @param symbol
+     *     The Symbol
+     * @param expressionNodes
+     *     The nodes built so far, by their Symbols
+     *
+     * @return The node of the Symbol
+     */
+    private ExpressionNode buildExpressionNode (Symbol symbol,
+                                                Map<Symbol, ExpressionNode> expressionNodes) {
+        ExpressionNode expressionNode = expressionNodes.get(symbol);
+        if (expressionNode != null) {
+            return expressionNode;
+        }
+
+        ArgumentPosition[] positions = symbol.getChildrenPositions();
+        List<List<ExpressionNode>> children = new ArrayList<List<ExpressionNode>>(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            List<Symbol> argument = symbol.getArgument(i);
+            List<ExpressionNode> samePositionChildren =
+                new ArrayList<ExpressionNode>(argument.size());
+
+            for (Symbol child : argument) {
+                samePositionChildren.add(this.buildExpressionNode(child, expressionNodes));
+            }
+
+            children.add(samePositionChildren);
+        }
+
+        expressionNode = expressionNodes_.get(symbol);
+        if (expressionNode == null || ! expressionNode.isBuiltFrom(symbol, positions, children)) {
+            expressionNode = new ExpressionNode(symbol, positions, children);
+        }
+
+        expressionNodes.put(symbol, expressionNode);
+
+        return expressionNode;
+    }
+
+    /**
+     * @brief Returns the expression tree of the parsed Symbols
+     *        The tree is built the first time that it is requested after a parsing, so parsing
+     *        costs nothing more when only the equation is used. Its nodes are immutable, and a
+     *        node that is still part of the equation is the same object from one tree to the next.
+     *
+     * @return The nodes of the equation from left to right, whose children are the nodes at each
+     *         of their positions
+     */
+    public synchronized List<ExpressionNode> getExpressionTree () {
+        if (calculateExpressionTree_) {
+            this.buildExpressionTree();
+        }
+
+        return expressionTree_;
+    }
+
     /**
      * @brief Resets this Parser
      *        Resetting a Parser should bring it to the state just after it was instantiated
@@ -309,8 +670,10 @@ public class GrammarParser extends Parser {
     @Override
     public synchronized void reset () {
         symbols_ = null;
+        expressionNodes_ = new IdentityHashMap<Symbol, ExpressionNode>();
 
         calculateEquation_ = true;
+        calculateExpressionTree_ = true;
     }
 
     /**
@@ -342,7 +705,17 @@ public class GrammarParser extends Parser {
 
     private String equation_; //!< The equation of this GrammarParser
     private boolean calculateEquation_; //!< Flag indicating that the equation should be rebuild
+    private boolean calculateExpressionTree_; //!< Flag indicating that the expression tree should
+                                              //!< be rebuild
+    private List<ExpressionNode> expressionTree_ = Collections.emptyList(); //!< The expression
+                                                                           //!< tree of the equation
+    private Map<Symbol, ExpressionNode> expressionNodes_ =
+        new IdentityHashMap<Symbol, ExpressionNode>(); //!< The nodes of the expression tree, by
+                                                       //!< their Symbols
 
     protected final Grammar grammar_; //!< The grammar of this GrammarParser
 
+    public static final int MAXIMUM_NUMBER_OF_PASSES = 8; //!< The maximum number of passes over
+                                                          //!< the paths of a group of Symbols
+
 }
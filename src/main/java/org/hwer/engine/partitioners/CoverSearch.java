@@ -0,0 +1,510 @@
+package org.hwer.engine.partitioners;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+
+/**
+ * @class CoverSearch
+ * @brief Finds the best partition of a group of Traces out of a set of candidate paths
+ *        A partition is a set of paths that covers every Trace exactly once, that is, an exact
+ *        cover of the Traces. Its rate is the sum of the rates of its paths. Instead of listing
+ *        every set of compatible paths, the search always extends a partial partition with a path
+ *        that covers its first uncovered Trace on a given order of the Traces, so each partition
+ *        is built in exactly one way.
+ *        Two kinds of search are provided. Branch and bound returns a partition of maximum rate.
+ *        Beam search keeps only the most promising partial partitions at each step, so it is
+ *        faster but may miss the best partition. Branch and bound can also be given a deadline,
+ *        after which it returns the best partition found so far.
+ */
+public class CoverSearch {
+    /**
+     * @brief Constructor
+     *
+     * @param paths
+     *     The candidate paths, each one an array of Trace indices
+     * @param rates
+     *     The rate of each path
+     * @param numberOfTraces
+     *     The number of Traces to be covered
+     */
+    public CoverSearch (int[][] paths, double[] rates, int numberOfTraces) {
+        this(paths, rates, numberOfTraces, null);
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param paths
+     *     The candidate paths, each one an array of Trace indices
+     * @param rates
+     *     The rate of each path
+     * @param numberOfTraces
+     *     The number of Traces to be covered
+     * @param order
+     *     The order in which the Traces are covered, or null for ascending index order. The
+     *     search is fastest when the Traces of each path are close together on this order.
+     */
+    public CoverSearch (int[][] paths, double[] rates, int numberOfTraces, int[] order) {
+        rates_ = rates;
+        numberOfTraces_ = numberOfTraces;
+
+        order_ = new int[numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            order_[i] = (order == null) ? i : order[i];
+        }
+
+        int numberOfPaths = paths.length;
+
+        pathMasks_ = new BitSet[numberOfPaths];
+        for (int i = 0; i < numberOfPaths; i++) {
+            pathMasks_[i] = new BitSet(numberOfTraces);
+
+            for (int trace : paths[i]) {
+                pathMasks_[i].set(trace);
+            }
+        }
+
+        // The rate of a path is spread evenly over its Traces. No partition can give a Trace more
+        // than the best share it gets from any path.
+        traceBounds_ = new double[numberOfTraces];
+        Arrays.fill(traceBounds_, Double.NEGATIVE_INFINITY);
+        pathBounds_ = new double[numberOfPaths];
+
+        ArrayList<ArrayList<Integer>> pathsOfTrace = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < numberOfTraces; i++) {
+            pathsOfTrace.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < numberOfPaths; i++) {
+            double share = rates[i] / paths[i].length;
+
+            for (int trace : paths[i]) {
+                pathsOfTrace.get(trace).add(i);
+                traceBounds_[trace] = Math.max(traceBounds_[trace], share);
+            }
+        }
+        for (int i = 0; i < numberOfPaths; i++) {
+            for (int trace : paths[i]) {
+                pathBounds_[i] += traceBounds_[trace];
+            }
+        }
+
+        // Try the paths with the highest rate first so that good partitions are found early.
+        pathsOfTrace_ = new int[numberOfTraces][];
+        for (int i = 0; i < numberOfTraces; i++) {
+            ArrayList<Integer> candidates = pathsOfTrace.get(i);
+            Collections.sort(candidates, new Comparator<Integer>() {
+                public int compare (Integer path1, Integer path2) {
+                    int comparison = Double.compare(rates_[path2], rates_[path1]);
+
+                    return (comparison != 0) ? comparison : path1.compareTo(path2);
+                }
+            });
+
+            pathsOfTrace_[i] = new int[candidates.size()];
+            for (int j = 0; j < pathsOfTrace_[i].length; j++) {
+                pathsOfTrace_[i][j] = candidates.get(j);
+            }
+        }
+    }
+
+    /**
+     * @brief Finds a partition of maximum rate with a depth first branch and bound search
+     *        A partial partition is pruned when its rate plus the bound of its uncovered Traces
+     *        cannot beat the best partition found so far. It is also pruned when the same Traces
+     *        have already been covered by a partial partition of at least the same rate, since
+     *        both can be completed in exactly the same ways. The memoized sets of covered Traces
+     *        stay few when the order of the Traces keeps the Traces of each path close together.
+     *
+     * @return The indices of the paths of the partition, in ascending order, or null if the
+     *         Traces cannot be covered exactly by the paths
+     */
+    public int[] branchAndBound () {
+        timed_ = false;
+
+        return this.search();
+    }
+
+    /**
+     * @brief Finds a partition with a depth first branch and bound search that stops at a deadline
+     *        The search starts from the partition of a narrow beam search and keeps improving it
+     *        until it either proves it best or runs out of time. If no partition has been found
+     *        when the deadline passes, the search goes on until it finds the first one, so a
+     *        partition is returned whenever one exists. The deadline therefore bounds the
+     *        improvement of a partition, not the search for the first one; with a deadline that
+     *        has already passed, this method returns the first partition it finds. isOptimal
+     *        tells whether the search ran to completion.
+     *
+     * @param deadline
+     *     The deadline, as a value of System.nanoTime
+     *
+     * @return The indices of the paths of the partition, in ascending order, or null if the
+     *         Traces cannot be covered exactly by the paths
+     */
+    public int[] branchAndBound (long deadline) {
+        timed_ = true;
+        deadline_ = deadline;
+
+        return this.search();
+    }
+
+    /**
+     * @brief Runs the branch and bound search
+     *
+     * @return The indices of the paths of the partition, in ascending order, or null if no
+     *         partition was found
+     */
+    private int[] search () {
+        // A narrow beam search gives a good partition to start pruning with.
+        this.branchFrom(this.beam(SEED_BEAM_WIDTH), false);
+
+        optimal_ = ! expired_;
+
+        return bestPartition_;
+    }
+
+    /**
+     * @brief Runs the depth first search from the empty partial partition
+     *
+     * @param seedPartition
+     *     A partition to start pruning with, or null
+     * @param firstOnly
+     *     Whether the search stops at the first partition that it finds
+     */
+    private void branchFrom (int[] seedPartition, boolean firstOnly) {
+        double remainingBound = 0;
+        for (double traceBound : traceBounds_) {
+            remainingBound += traceBound;
+        }
+
+        bestPartition_ = seedPartition;
+        bestRate_ = (bestPartition_ == null) ? Double.NEGATIVE_INFINITY :
+            this.getRate(bestPartition_);
+        coveredRates_ = new HashMap<BitSet, Double>();
+        numberOfBranches_ = 0;
+        expired_ = firstOnly;
+
+        this.branch(new BitSet(numberOfTraces_), 0, 0, remainingBound, new int[numberOfTraces_],
+            0);
+
+        coveredRates_ = null;
+    }
+
+    /**
+     * @brief Recursive step of branchAndBound
+     *
+     * @param covered
+     *     The Traces covered by the partial partition
+     * @param position
+     *     A position on the order of the Traces before which all Traces are covered
+     * @param rate
+     *     The rate of the partial partition
+     * @param remainingBound
+     *     The sum of the bounds of the uncovered Traces
+     * @param partition
+     *     The paths of the partial partition
+     * @param partitionLength
+     *     The number of paths of the partial partition
+     */
+    private void branch (BitSet covered, int position, double rate, double remainingBound,
+                         int[] partition, int partitionLength) {
+        while (position < numberOfTraces_ && covered.get(order_[position])) {
+            position++;
+        }
+
+        if (position == numberOfTraces_) {
+            if (rate > bestRate_) {
+                bestRate_ = rate;
+                bestPartition_ = Arrays.copyOf(partition, partitionLength);
+                Arrays.sort(bestPartition_);
+            }
+
+            return;
+        }
+
+        if (this.hasExpired()) {
+            return;
+        }
+
+        if (bestPartition_ != null &&
+            rate + remainingBound <= bestRate_ - this.tolerance(bestRate_)) {
+            return;
+        }
+
+        Double coveredRate = coveredRates_.get(covered);
+        if (coveredRate != null && coveredRate >= rate) {
+            return;
+        }
+        coveredRates_.put((BitSet) covered.clone(), rate);
+
+        for (int path : pathsOfTrace_[order_[position]]) {
+            if (pathMasks_[path].intersects(covered)) {
+                continue;
+            }
+
+            covered.or(pathMasks_[path]);
+            partition[partitionLength] = path;
+
+            this.branch(covered, position + 1, rate + rates_[path],
+                remainingBound - pathBounds_[path], partition, partitionLength + 1);
+
+            covered.andNot(pathMasks_[path]);
+        }
+    }
+
+    /**
+     * @brief Returns true if the deadline of the search has passed and a partition is known
+     *        The clock is only read every DEADLINE_CHECK_INTERVAL branches, since reading it costs
+     *        more than a branch of a small search.
+     *
+     * @return True if the search must stop
+     */
+    private boolean hasExpired () {
+        if (timed_ && ! expired_ && (++numberOfBranches_ % DEADLINE_CHECK_INTERVAL) == 0) {
+            expired_ = System.nanoTime() - deadline_ >= 0;
+        }
+
+        return (expired_ && bestPartition_ != null);
+    }
+
+    /**
+     * @brief Finds a partition with a beam search
+     *        At each step, every partial partition is extended in all possible ways by a path that
+     *        covers its first uncovered Trace. Only the beamWidth partial partitions with the
+     *        highest rate plus bound of their uncovered Traces are kept for the next step. If
+     *        none of the partial partitions that are kept can be completed, the first partition of
+     *        the depth first search is returned instead, so a partition is returned whenever one
+     *        exists.
+     *
+     * @param beamWidth
+     *     The number of partial partitions kept at each step. Non positive values keep all of
+     *     them.
+     *
+     * @return The indices of the paths of the partition, in ascending order, or null if the
+     *         Traces cannot be covered exactly by the paths
+     */
+    public int[] beam (int beamWidth) {
+        double remainingBound = 0;
+        for (double traceBound : traceBounds_) {
+            remainingBound += traceBound;
+        }
+
+        if (numberOfTraces_ == 0) {
+            return new int[0];
+        }
+
+        ArrayList<PartialPartition> beam = new ArrayList<PartialPartition>();
+        beam.add(new PartialPartition(new BitSet(numberOfTraces_), 0, remainingBound, new int[0]));
+
+        PartialPartition best = null;
+        boolean truncated = false;
+        while (! beam.isEmpty()) {
+            // Partial partitions that cover the same Traces are completed in the same ways, so
+            // only the one with the highest rate is kept. The order of insertion is kept, so that
+            // ties are broken the same way on every run.
+            LinkedHashMap<BitSet, PartialPartition> extensions =
+                new LinkedHashMap<BitSet, PartialPartition>();
+
+            for (PartialPartition partialPartition : beam) {
+                int trace = this.firstUncovered(partialPartition.covered_);
+
+                for (int path : pathsOfTrace_[trace]) {
+                    if (pathMasks_[path].intersects(partialPartition.covered_)) {
+                        continue;
+                    }
+
+                    BitSet covered = (BitSet) partialPartition.covered_.clone();
+                    covered.or(pathMasks_[path]);
+
+                    int[] partition = Arrays.copyOf(partialPartition.paths_,
+                        partialPartition.paths_.length + 1);
+                    partition[partition.length - 1] = path;
+
+                    PartialPartition extension = new PartialPartition(covered,
+                        partialPartition.rate_ + rates_[path],
+                        partialPartition.remainingBound_ - pathBounds_[path], partition);
+
+                    if (covered.cardinality() == numberOfTraces_) {
+                        if (best == null || extension.rate_ > best.rate_) {
+                            best = extension;
+                        }
+
+                        continue;
+                    }
+
+                    PartialPartition existing = extensions.get(covered);
+                    if (existing == null || extension.rate_ > existing.rate_) {
+                        extensions.put(covered, extension);
+                    }
+                }
+            }
+
+            beam = new ArrayList<PartialPartition>(extensions.values());
+            Collections.sort(beam, new Comparator<PartialPartition>() {
+                public int compare (PartialPartition partial1, PartialPartition partial2) {
+                    return Double.compare(partial2.rate_ + partial2.remainingBound_,
+                        partial1.rate_ + partial1.remainingBound_);
+                }
+            });
+
+            if (beamWidth > 0 && beam.size() > beamWidth) {
+                beam = new ArrayList<PartialPartition>(beam.subList(0, beamWidth));
+                truncated = true;
+            }
+
+            // Drop the partial partitions that cannot beat a complete one already found.
+            if (best != null) {
+                ArrayList<PartialPartition> promising = new ArrayList<PartialPartition>();
+                for (PartialPartition partialPartition : beam) {
+                    if (partialPartition.rate_ + partialPartition.remainingBound_ >
+                        best.rate_ - this.tolerance(best.rate_)) {
+                        promising.add(partialPartition);
+                    }
+                }
+                beam = promising;
+            }
+        }
+
+        // A beam search that drops partial partitions cannot tell if it missed a better one.
+        optimal_ = (beamWidth <= 0);
+
+        if (best == null) {
+            if (truncated) {
+                // The dropped partial partitions may have been the only ones that could be
+                // completed, so the first partition of the depth first search is returned.
+                this.branchFrom(null, true);
+
+                return bestPartition_;
+            }
+
+            return null;
+        }
+
+        int[] partition = best.paths_.clone();
+        Arrays.sort(partition);
+
+        return partition;
+    }
+
+    /**
+     * @brief Returns the first uncovered Trace on the order of the Traces
+     *
+     * @param covered
+     *     The covered Traces
+     *
+     * @return The first uncovered Trace, or -1 if all the Traces are covered
+     */
+    private int firstUncovered (BitSet covered) {
+        for (int trace : order_) {
+            if (! covered.get(trace)) {
+                return trace;
+            }
+        }
+
+        return - 1;
+    }
+
+    /**
+     * @brief Returns the rounding tolerance for comparisons with a given rate
+     *
+     * @param rate
+     *     The rate
+     *
+     * @return The rounding tolerance
+     */
+    private double tolerance (double rate) {
+        return (1e-9 * (Math.abs(rate) + 1));
+    }
+
+    /**
+     * @brief Returns true if the last search is known to have found a partition of maximum rate
+     *        This is the case for a branch and bound search that finished before its deadline and
+     *        for a beam search that kept all the partial partitions.
+     *
+     * @return True if the last search is known to have found a partition of maximum rate
+     */
+    public boolean isOptimal () {
+        return optimal_;
+    }
+
+    /**
+     * @brief Getter method for the rate of a partition
+     *
+     * @param partition
+     *     The indices of the paths of the partition
+     *
+     * @return The rate of the given partition
+     */
+    public double getRate (int[] partition) {
+        double rate = 0;
+        for (int path : partition) {
+            rate += rates_[path];
+        }
+
+        return rate;
+    }
+
+    /**
+     * @class PartialPartition
+     * @brief A partition that does not cover all the Traces yet, as kept by the beam search
+     */
+    private static class PartialPartition {
+        /**
+         * @brief Constructor
+         *
+         * @param covered
+         *     The covered Traces
+         * @param rate
+         *     The rate of the partial partition
+         * @param remainingBound
+         *     The sum of the bounds of the uncovered Traces
+         * @param paths
+         *     The paths of the partial partition
+         */
+        PartialPartition (BitSet covered, double rate, double remainingBound, int[] paths) {
+            covered_ = covered;
+            rate_ = rate;
+            remainingBound_ = remainingBound;
+            paths_ = paths;
+        }
+
+        private final BitSet covered_; //!< The covered Traces
+        private final double rate_; //!< The rate of the partial partition
+        private final double remainingBound_; //!< The sum of the bounds of the uncovered Traces
+        private final int[] paths_; //!< The paths of the partial partition
+
+    }
+
+    private static final int SEED_BEAM_WIDTH = 8; //!< The beam width of the search that seeds
+                                                  //!< branchAndBound
+    private static final int DEADLINE_CHECK_INTERVAL = 64; //!< The number of branches between two
+                                                           //!< readings of the clock
+
+    private final double[] rates_; //!< The rate of each path
+    private final int numberOfTraces_; //!< The number of Traces to be covered
+    private final int[] order_; //!< The order in which the Traces are covered
+
+    private final BitSet[] pathMasks_; //!< The Traces of each path
+    private final int[][] pathsOfTrace_; //!< The paths of each Trace, by descending rate
+    private final double[] traceBounds_; //!< The maximum share of a path rate each Trace can get
+    private final double[] pathBounds_; //!< The sum of the bounds of the Traces of each path
+
+    private double bestRate_; //!< The rate of the best partition found so far
+    private int[] bestPartition_; //!< The best partition found so far
+    private HashMap<BitSet, Double> coveredRates_; //!< The highest rate each set of covered
+                                                   //!< Traces was reached with
+
+    private boolean timed_; //!< Flag indicating that the search has a deadline
+    private long deadline_; //!< The deadline of the search, as a value of System.nanoTime
+    private long numberOfBranches_; //!< The number of branches of the search so far
+    private boolean expired_; //!< Flag indicating that the deadline of the search has passed
+    private boolean optimal_; //!< Flag indicating that the last search found a partition of
+                              //!< maximum rate
+
+}
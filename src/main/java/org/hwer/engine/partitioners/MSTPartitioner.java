@@ -2,7 +2,14 @@ package org.hwer.engine.partitioners;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.ConsoleHandler;
 
@@ -13,6 +20,7 @@ import org.hwer.engine.symbols.SymbolFactory.Labels;
 import org.hwer.engine.utilities.Utilities;
 import org.hwer.engine.utilities.logging.SingleLineFormatter;
 import org.hwer.engine.utilities.math.MinimumSpanningTree;
+import org.hwer.engine.utilities.math.MinimumSpanningTree.DisjointSets;
 import org.hwer.engine.utilities.traces.*;
 import org.hwer.engine.utilities.Utilities.PathExtensionCheck;
 
@@ -60,8 +68,28 @@ public class MSTPartitioner extends Partitioner {
             return null;
         }
 
-        expression_ = traceGroup;
+        return (this.partition(traceGroup, this.startCall()));
+    }
 
+    /**
+     * @brief Partitions a TraceGroup to Symbols as part of a call of partition, append or remove
+     *        Overlapped Traces that are far apart on the minimum spanning tree cannot be on the
+     *        same path, so there may be no partition that keeps every pair of overlapped Traces
+     *        on the same Symbol. The Traces are then partitioned again with overlapped Traces
+     *        allowed on different Symbols, which always succeeds, since every Trace is a path of
+     *        its own.
+     *
+     * @param traceGroup
+     *     The TraceGroup to be partitioned
+     * @param call
+     *     The call that the partitioning is part of
+     *
+     * @return The Symbols that the given TraceGroup is partitioned to
+     *
+     * @throws IllegalArgumentException If the Traces cannot be partitioned into Symbols
+     */
+    private Symbol[] partition (TraceGroup traceGroup, PartitionCall call)
+        throws IllegalArgumentException {
         SymbolFactory symbolFactory = SymbolFactory.getInstance();
 
         int numberOfTraces = traceGroup.size();
@@ -101,23 +129,320 @@ public class MSTPartitioner extends Partitioner {
             }
         }
 
-        double[] distances = this.calculateDistancesBetweenTraces(traceGroup);
+        MinimumSpanningTree minimumSpanningTree = this.buildMinimumSpanningTree(traceGroup);
+
+        try {
+            return (this.partitionComponents(traceGroup, minimumSpanningTree, call));
+        } catch (IllegalArgumentException illegalArgumentException) {
+            if (! call.keepsOverlapsTogether()) {
+                throw illegalArgumentException;
+            }
+
+            /* ===== Logs Start ===== */
+            if (logger_.getLevel() != Level.OFF) {
+                logger_.info("Overlapped Traces cannot be kept together, partitioning them " +
+                    "separately...");
+            }
+            /* ===== Logs End ===== */
+
+            PartitionCall splittingCall = call.splittingOverlaps();
+            Symbol[] symbols = this.partitionComponents(traceGroup, minimumSpanningTree,
+                splittingCall);
+
+            if (! splittingCall.isOptimal()) {
+                call.setOptimal(false);
+            }
+
+            return symbols;
+        }
+    }
+
+    /**
+     * @brief Partitions a TraceGroup to Symbols, one component of its Traces at a time
+     *        The edges of the given tree that are longer than the cut distance are assumed not to
+     *        join Traces of the same Symbol. The Traces that stay connected without them form a
+     *        component, which also takes in every Trace that overlaps or may create an equals sign
+     *        with one of its Traces. No Symbol can then span two components, so the components are
+     *        partitioned independently, on the ForkJoinPool of this MSTPartitioner, and each
+     *        search only enumerates the paths of its own component.
+     *
+     * @param traceGroup
+     *     The TraceGroup to be partitioned
+     * @param minimumSpanningTree
+     *     The tree, or forest, of the Traces
+     * @param call
+     *     The call that the partitioning is part of
+     *
+     * @return The Symbols of each component, with the components in the order of their first
+     *         Trace
+     *
+     * @throws IllegalArgumentException If the Traces of a component cannot be partitioned into
+     *                                  Symbols
+     */
+    private Symbol[] partitionComponents (TraceGroup traceGroup,
+                                          MinimumSpanningTree minimumSpanningTree,
+                                          PartitionCall call)
+        throws IllegalArgumentException {
+        int numberOfTraces = traceGroup.size();
+
+        // The components are partitioned on other threads, which must only read the Traces and
+        // the spatial index.
+        traceGroup.calculateProperties();
+
+        for (Trace trace : traceGroup) {
+            if (trace.size() == 0) {
+                return (this.partition(traceGroup, minimumSpanningTree, call));
+            }
+        }
+
+        int[] components = this.findComponents(traceGroup, minimumSpanningTree);
+
+        int[] componentSizes = new int[numberOfTraces];
+        int numberOfComponents = 0;
+        for (int i = 0; i < numberOfTraces; i++) {
+            if (components[i] == i) {
+                numberOfComponents++;
+            }
+
+            componentSizes[components[i]]++;
+        }
+
+        if (numberOfComponents == 1) {
+            // Traces that were merged because of an overlap may not be connected on the given
+            // tree, just like in a component of many.
+            if (! this.isConnected(minimumSpanningTree)) {
+                minimumSpanningTree = this.buildMinimumSpanningTree(traceGroup);
+            }
+
+            return (this.partition(traceGroup, minimumSpanningTree, call));
+        }
+
+        int[][] componentTraces = new int[numberOfTraces][];
+        for (int i = 0; i < numberOfTraces; i++) {
+            if (components[i] == i) {
+                componentTraces[i] = new int[componentSizes[i]];
+                componentSizes[i] = 0;
+            }
+
+            componentTraces[components[i]][componentSizes[components[i]]++] = i;
+        }
+
+        TraceGroup[] componentTraceGroups = new TraceGroup[numberOfComponents];
+        MinimumSpanningTree[] componentTrees = new MinimumSpanningTree[numberOfComponents];
+        for (int i = 0, j = 0; i < numberOfTraces; i++) {
+            if (components[i] != i) {
+                continue;
+            }
+
+            componentTraceGroups[j] = traceGroup.subTraceGroup(componentTraces[i]);
+
+            // Traces that were merged because of an overlap may not be connected on the given
+            // tree, so such components get a tree of their own.
+            componentTrees[j] = this.restrictTree(minimumSpanningTree, componentTraces[i]);
+            if (! this.isConnected(componentTrees[j])) {
+                componentTrees[j] = this.buildMinimumSpanningTree(componentTraceGroups[j]);
+            }
 
+            j++;
+        }
 
         /* ===== Logs Start ===== */
         if (logger_.getLevel() != Level.OFF) {
-            logger_.info("Distances between traces... ===== Start =====");
+            logger_.info("Components... ===== Start =====");
 
-            for (double distance : distances) {
-                logger_.info(String.valueOf(distance));
+            for (int[] traces : componentTraces) {
+                if (traces == null) {
+                    continue;
+                }
+
+                StringBuilder stringBuilder = new StringBuilder();
+                for (int trace : traces) {
+                    stringBuilder.append(trace).append(", ");
+                }
+                logger_.info(stringBuilder.toString());
             }
 
-            logger_.info("Distances between traces... ===== End =====");
+            logger_.info("Components... ===== End =====");
         }
         /* ===== Logs End ===== */
 
-        MinimumSpanningTree minimumSpanningTree = MinimumSpanningTree.
-            kruskal(distances, numberOfTraces);
+        Symbol[][] componentSymbols = new Symbol[numberOfComponents][];
+        pool_.invoke(new ComponentPartitionTask(componentTraceGroups, componentTrees,
+            componentSymbols, 0, numberOfComponents, call));
+
+        ArrayList<Symbol> symbols = new ArrayList<Symbol>();
+        for (Symbol[] symbolsOfComponent : componentSymbols) {
+            symbols.addAll(Arrays.asList(symbolsOfComponent));
+        }
+
+        return symbols.toArray(new Symbol[symbols.size()]);
+    }
+
+    /**
+     * @brief Splits the Traces of a TraceGroup into components
+     *        Two Traces are on the same component if they are joined by a path of edges of the
+     *        given tree that are no longer than the cut distance, or if they overlap or may create
+     *        an equals sign. The cut distance is the cut factor of this MSTPartitioner times the
+     *        greater of the median length of the edges of the tree and the median diagonal of the
+     *        Traces, so that it follows the size of the handwriting.
+     *
+     * @param traceGroup
+     *     The TraceGroup, whose Traces must all have a center of mass
+     * @param minimumSpanningTree
+     *     The tree, or forest, of the Traces
+     *
+     * @return The component of each Trace, named after the smallest index of its Traces
+     */
+    private int[] findComponents (TraceGroup traceGroup, MinimumSpanningTree minimumSpanningTree) {
+        int numberOfTraces = traceGroup.size();
+
+        ArrayList<Double> edgeLengths = new ArrayList<Double>();
+        for (int i = 0; i < numberOfTraces; i++) {
+            for (int j : minimumSpanningTree.getNeighbors(i)) {
+                if (j > i) {
+                    edgeLengths.add(this.distanceOfTraces(traceGroup.get(i), traceGroup.get(j)));
+                }
+            }
+        }
+
+        double[] diagonals = new double[numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            Trace trace = traceGroup.get(i);
+
+            diagonals[i] = Math.sqrt(Math.pow(trace.getWidth(), 2) +
+                Math.pow(trace.getHeight(), 2));
+        }
+        Arrays.sort(diagonals);
+
+        double medianEdgeLength = 0;
+        if (edgeLengths.size() > 0) {
+            Collections.sort(edgeLengths);
+            medianEdgeLength = edgeLengths.get(edgeLengths.size() / 2);
+        }
+
+        double cutDistance = cutFactor_ * Math.max(medianEdgeLength,
+            diagonals[numberOfTraces / 2]);
+
+        DisjointSets disjointSets = new DisjointSets(numberOfTraces);
+
+        for (int i = 0; i < numberOfTraces; i++) {
+            for (int j : minimumSpanningTree.getNeighbors(i)) {
+                if (j > i &&
+                    this.distanceOfTraces(traceGroup.get(i), traceGroup.get(j)) <= cutDistance) {
+                    disjointSets.union(i, j);
+                }
+            }
+        }
+
+        for (int i = 0; i < numberOfTraces; i++) {
+            Trace trace = traceGroup.get(i);
+
+            for (int j : traceGroup.findOverlapCandidates(trace)) {
+                if (j > i && disjointSets.find(i) != disjointSets.find(j) &&
+                    Trace.areOverlapped(trace, traceGroup.get(j))) {
+                    disjointSets.union(i, j);
+                }
+            }
+
+            // Whether two Traces create an equals sign is decided by the Classifier, which is too
+            // slow to ask here, so every candidate is kept with the given Trace.
+            for (int j : this.findEqualsCandidates(traceGroup, i)) {
+                disjointSets.union(i, j);
+            }
+        }
+
+        int[] firstTraces = new int[numberOfTraces];
+        Arrays.fill(firstTraces, - 1);
+
+        int[] components = new int[numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            int root = disjointSets.find(i);
+            if (firstTraces[root] < 0) {
+                firstTraces[root] = i;
+            }
+
+            components[i] = firstTraces[root];
+        }
+
+        return components;
+    }
+
+    /**
+     * @brief Returns the part of a tree that connects some of its vertices
+     *
+     * @param minimumSpanningTree
+     *     The tree, or forest
+     * @param vertices
+     *     The vertices to keep, in ascending order
+     *
+     * @return The forest of the edges between the given vertices, with vertex i standing for
+     *         vertices[i]
+     */
+    private MinimumSpanningTree restrictTree (MinimumSpanningTree minimumSpanningTree,
+                                              int[] vertices) {
+        int[] localIndices = new int[minimumSpanningTree.getNumberOfVertices()];
+        Arrays.fill(localIndices, - 1);
+        for (int i = 0; i < vertices.length; i++) {
+            localIndices[vertices[i]] = i;
+        }
+
+        int[][] adjacency = new int[vertices.length][];
+        for (int i = 0; i < vertices.length; i++) {
+            int[] neighbors = minimumSpanningTree.getNeighbors(vertices[i]);
+
+            int numberOfNeighbors = 0;
+            for (int neighbor : neighbors) {
+                if (localIndices[neighbor] >= 0) {
+                    neighbors[numberOfNeighbors++] = localIndices[neighbor];
+                }
+            }
+
+            adjacency[i] = Arrays.copyOf(neighbors, numberOfNeighbors);
+        }
+
+        return (new MinimumSpanningTree(adjacency));
+    }
+
+    /**
+     * @brief Returns true if a forest is a tree
+     *
+     * @param minimumSpanningTree
+     *     The forest
+     *
+     * @return True if the forest connects all of its vertices
+     */
+    private boolean isConnected (MinimumSpanningTree minimumSpanningTree) {
+        int numberOfVertices = minimumSpanningTree.getNumberOfVertices();
+
+        int numberOfEdges = 0;
+        for (int i = 0; i < numberOfVertices; i++) {
+            numberOfEdges += minimumSpanningTree.getNeighbors(i).length;
+        }
+
+        // A forest is a tree when it has one edge less than its vertices.
+        return (numberOfEdges / 2 == numberOfVertices - 1);
+    }
+
+    /**
+     * @brief Partitions a TraceGroup to Symbols along a given tree of its Traces
+     *        Only Traces that are connected on the tree can be on the same Symbol.
+     *
+     * @param traceGroup
+     *     The TraceGroup to be partitioned
+     * @param minimumSpanningTree
+     *     The tree, or forest, of the Traces
+     * @param call
+     *     The call that the partitioning is part of
+     *
+     * @return The Symbols that the given TraceGroup is partitioned to
+     *
+     * @throws IllegalArgumentException If the Traces cannot be partitioned into Symbols
+     */
+    private Symbol[] partition (TraceGroup traceGroup, MinimumSpanningTree minimumSpanningTree,
+                                PartitionCall call) throws IllegalArgumentException {
+        SymbolFactory symbolFactory = SymbolFactory.getInstance();
+
+        int numberOfTraces = traceGroup.size();
 
         /* ===== Logs Start ===== */
         if (logger_.getLevel() != Level.OFF) {
@@ -173,8 +498,13 @@ public class MSTPartitioner extends Partitioner {
         paths = Utilities.removeRows(paths, pathsToClear);
         numberOfPaths = paths.length;
 
-        int[][] overlaps = Utilities.concatenateArrays(this.findOverlaps(traceGroup),
-            this.findEqualsSymbol(traceGroup));
+        // The pair scans and the classification run on other threads, which must only read the
+        // Traces and the spatial index.
+        traceGroup.calculateProperties();
+
+        int[][] overlaps = call.keepsOverlapsTogether() ?
+            Utilities.concatenateArrays(this.findOverlaps(traceGroup),
+                this.findEqualsSymbol(traceGroup)) : new int[0][];
 
         /* ===== Logs Start ===== */
         if (logger_.getLevel() != Level.OFF) {
@@ -241,18 +571,67 @@ public class MSTPartitioner extends Partitioner {
         }
         /* ===== Logs End ===== */
 
+        // Classifying the candidates is what costs the most, so, once the time budget has run
+        // out, only the paths of the first partition that the Traces allow are classified.
+        if (searchStrategy_ == SearchStrategy.BRANCH_AND_BOUND && call.hasExpired()) {
+            double[] unitRates = new double[numberOfPaths];
+            Arrays.fill(unitRates, 1);
+
+            // The deadline has passed, so the search stops at the first partition it finds.
+            int[] firstPartition = new CoverSearch(paths, unitRates, numberOfTraces,
+                this.sweepOrder(traceGroup)).branchAndBound(call.getDeadline());
+            if (firstPartition == null) {
+                throw new IllegalArgumentException("The Traces cannot be partitioned into Symbols");
+            }
+
+            pathsToClear.clear();
+            for (int path = 0; path < numberOfPaths; path++) {
+                if (Arrays.binarySearch(firstPartition, path) < 0) {
+                    pathsToClear.add(path);
+                }
+            }
+            paths = Utilities.removeRows(paths, pathsToClear);
+            numberOfPaths = paths.length;
+
+            call.setOptimal(false);
+
+            /* ===== Logs Start ===== */
+            if (logger_.getLevel() != Level.OFF) {
+                logger_.info("Time budget expired before classification, keeping " +
+                    numberOfPaths + " paths");
+            }
+            /* ===== Logs End ===== */
+        }
+
         double[] pathsRates = new double[numberOfPaths];
         Symbol[] pathSymbols = new Symbol[numberOfPaths];
 
-        TraceGroup symbol;
-
+        // Classify all the candidate symbols that are not dots in a single batch.
+        int numberOfCandidates = 0;
+        boolean[] isDot = new boolean[numberOfPaths];
         for (int i = 0; i < numberOfPaths; i++) {
-            symbol = traceGroup.subTraceGroup(paths[i]);
+            isDot[i] = paths[i].length == 1 && Utilities.arrayContains(dots, paths[i][0]);
+
+            if (! isDot[i]) {
+                numberOfCandidates++;
+            }
+        }
+
+        TraceGroup[] candidates = new TraceGroup[numberOfCandidates];
+        for (int i = 0, j = 0; i < numberOfPaths; i++) {
+            if (! isDot[i]) {
+                candidates[j++] = traceGroup.subTraceGroup(paths[i]);
+            }
+        }
 
-            if (paths[i].length == 1 && Utilities.arrayContains(dots, paths[i][0])) {
+        Symbol[] candidateSymbols = this.classifyCandidates(candidates);
+
+        for (int i = 0, j = 0; i < numberOfPaths; i++) {
+            if (isDot[i]) {
                 Symbol symbolObject = null;
                 try {
-                    symbolObject = symbolFactory.create(Labels.DOT, symbol);
+                    symbolObject = symbolFactory.create(Labels.DOT,
+                        traceGroup.subTraceGroup(paths[i]));
 
                     symbolObject.setConfidence(10000);
                 } catch (Exception exception) {
@@ -261,7 +640,7 @@ public class MSTPartitioner extends Partitioner {
                 pathSymbols[i] = symbolObject;
             }
             else {
-                pathSymbols[i] = classifier_.classify(symbol, null, false, false);
+                pathSymbols[i] = candidateSymbols[j++];
             }
             pathsRates[i] = pathSymbols[i].getConfidence();
 
@@ -278,6 +657,121 @@ public class MSTPartitioner extends Partitioner {
             /* ===== Logs End ===== */
         }
 
+        int[] bestPartition;
+        CoverSearch coverSearch;
+        switch (searchStrategy_) {
+            case EXHAUSTIVE:
+                bestPartition = this.findBestPartitionExhaustively(paths, pathsRates,
+                    numberOfTraces);
+                break;
+            case BEAM:
+                coverSearch = new CoverSearch(paths, pathsRates, numberOfTraces,
+                    this.sweepOrder(traceGroup));
+                bestPartition = coverSearch.beam(beamWidth_);
+
+                if (! coverSearch.isOptimal()) {
+                    call.setOptimal(false);
+                }
+                break;
+            case BRANCH_AND_BOUND:
+            default:
+                coverSearch = new CoverSearch(paths, pathsRates, numberOfTraces,
+                    this.sweepOrder(traceGroup));
+                bestPartition = call.isBudgeted() ?
+                    coverSearch.branchAndBound(call.getDeadline()) : coverSearch.branchAndBound();
+
+                if (! coverSearch.isOptimal()) {
+                    call.setOptimal(false);
+
+                    /* ===== Logs Start ===== */
+                    if (logger_.getLevel() != Level.OFF) {
+                        logger_.info("Time budget expired before the best partition was proven");
+                    }
+                    /* ===== Logs End ===== */
+                }
+                break;
+        }
+
+        if (bestPartition == null) {
+            throw new IllegalArgumentException("The Traces cannot be partitioned into Symbols");
+        }
+
+        /* ===== Logs Start ===== */
+        if (logger_.getLevel() != Level.OFF) {
+            logger_.info("Best partition... ===== Start =====");
+
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int path : bestPartition) {
+                stringBuilder.append(path).append(", ");
+            }
+            logger_.info(stringBuilder.toString());
+
+            logger_.info("Best partition... ===== End =====");
+        }
+        /* ===== Logs End ===== */
+
+        int bestPartitionLength = bestPartition.length;
+        Symbol[] symbols = new Symbol[bestPartitionLength];
+        for (int i = 0; i < bestPartitionLength; i++) {
+            symbols[i] = pathSymbols[bestPartition[i]];
+        }
+
+        return symbols;
+    }
+
+    /**
+     * @brief Starts a call of partition, append or remove
+     *        Every partition search of the call shares the same deadline.
+     *
+     * @return The call, which isOptimal reports on from now on
+     */
+    private PartitionCall startCall () {
+        PartitionCall call = new PartitionCall(timeBudget_);
+        lastCall_ = call;
+
+        return call;
+    }
+
+    /**
+     * @brief Returns the indices of the Traces of a TraceGroup from left to right
+     *        Traces are ordered by the abscissa of their center of mass, which keeps the Traces
+     *        of a Symbol close together, as the partition search needs.
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     *
+     * @return The indices of the Traces from left to right
+     */
+    private int[] sweepOrder (TraceGroup traceGroup) {
+        int numberOfTraces = traceGroup.size();
+
+        double[] abscissas = new double[numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            Trace trace = traceGroup.get(i);
+
+            abscissas[i] = (trace.size() == 0) ? 0 : trace.getCenterOfMass().x_;
+        }
+
+        return (Utilities.sortArray(abscissas));
+    }
+
+    /**
+     * @brief Finds the best partition by enumerating every set of compatible paths
+     *        This is the reference search. Its cost grows exponentially with the number of paths.
+     *
+     * @param paths
+     *     The candidate paths
+     * @param pathsRates
+     *     The rate of each path
+     * @param numberOfTraces
+     *     The number of Traces to be covered
+     *
+     * @return The indices of the paths of the best partition, or null if there is no partition
+     */
+    private int[] findBestPartitionExhaustively (int[][] paths, double[] pathsRates,
+                                                 int numberOfTraces) {
+        int numberOfPaths = paths.length;
+
         boolean[][] connections = new boolean[numberOfPaths][numberOfPaths];
         for (int i = 0; i < numberOfPaths; i++) {
             for (int j = i + 1; j < numberOfPaths; j++) {
@@ -337,6 +831,10 @@ public class MSTPartitioner extends Partitioner {
         }
         /* ===== Logs End ===== */
 
+        if (numberOfPartitions == 0) {
+            return null;
+        }
+
         double currentRate = 0;
         for (int path = 0; path < partitions[0].length; path++) {
             currentRate += pathsRates[partitions[0][path]];
@@ -374,17 +872,17 @@ public class MSTPartitioner extends Partitioner {
             }
         }
 
-        int bestPartitionLength = partitions[bestPartition].length;
-        Symbol[] symbols = new Symbol[bestPartitionLength];
-        for (int i = 0; i < bestPartitionLength; i++) {
-            symbols[i] = pathSymbols[partitions[bestPartition][i]];
-        }
-
-        return symbols;
+        return partitions[bestPartition];
     }
 
     /**
      * @brief Appends a group of Traces to an existent group of Symbols
+     *        The minimum spanning tree of the Traces of the session is kept between calls and
+     *        each new Trace is inserted on it. The Symbols that hold a Trace whose neighbors on the
+     *        tree changed, or a Trace that a new Trace overlaps or creates an equals sign with,
+     *        are released and partitioned again together with the new Traces. All the other
+     *        Symbols are kept as they are, so the work per call depends on the new Traces and
+     *        their neighborhood, not on the size of the session.
      *
      * @param symbols
      *     The Symbols already identified
@@ -396,11 +894,11 @@ public class MSTPartitioner extends Partitioner {
     @Override
     public Symbol[] append (Symbol[] symbols, TraceGroup newTraces) {
         if (symbols == null) {
-            return partition(newTraces);
+            return this.startSession(partition(newTraces));
         }
 
         if (symbols.length == 0) {
-            return partition(newTraces);
+            return this.startSession(partition(newTraces));
         }
 
         if (newTraces == null) {
@@ -411,76 +909,60 @@ public class MSTPartitioner extends Partitioner {
             return symbols;
         }
 
-        int numberOfSymbols = symbols.length;
-        int numberOfNewTraces = newTraces.size();
+        PartitionCall call = this.startCall();
+        this.synchronizeSession(symbols);
 
-        TraceGroup freeTraces = new TraceGroup();
+        Set<Trace> changedTraces = Collections.newSetFromMap(
+            new IdentityHashMap<Trace, Boolean>());
 
-        HashSet<Integer> changedSymbols = new HashSet<Integer>();
-
-        boolean continueFlag = false;
-        for (int i = 0; i < numberOfNewTraces; i++) {
-            for (int j = 0; j < numberOfSymbols; j++) {
-                if (symbols[j].getTraceGroup().isOverlappedBy(newTraces.get(i))) {
-                    symbols[j].getTraceGroup().add(newTraces.get(i));
-                    changedSymbols.add(j);
-
-                    continueFlag = true;
-                    break;
-                }
-                else {
-                    TraceGroup combined = new TraceGroup(
-                        symbols[j].getTraceGroup()).add(newTraces.get(i));
-                    Symbol symbol = classifier_.classify(combined, null, false, false);
-
-                    if (symbol.getLabel() == Labels.EQUALS &&
-                        (
-                            symbols[j].getLabel() == Labels.MINUS ||
-                            symbols[j].getLabel() == Labels.HORIZONTAL_LINE ||
-                            (
-                                symbols[j].getLabel() == Labels.FRACTION_LINE &&
-                                    ! symbols[j].hasChildren()
-                            )
-                        )) {
-                        symbols[j].getTraceGroup().add(newTraces.get(i));
-                        changedSymbols.add(j);
-
-                        continueFlag = true;
-                        break;
-                    }
-                }
+        for (Trace newTrace : newTraces) {
+            if (newTrace.size() == 0) {
+                sessionIncremental_ = false;
             }
 
-            if (continueFlag) {
-                continueFlag = false;
-            }
-            else {
-                freeTraces.add(newTraces.get(i));
+            if (! sessionIncremental_) {
+                sessionTraces_.add(newTrace);
+                continue;
             }
-        }
-
-        for (Integer index : changedSymbols) {
-            symbols[index] = classifier_.classify(symbols[index].getTraceGroup(),
-                null, false, false);
-        }
 
-        Symbol[] newSymbols = partition(freeTraces);
-        int numberOfNewSymbols = newSymbols.length;
+            MinimumSpanningTree oldTree = sessionTree_;
+            sessionTraces_.add(newTrace);
 
-        Symbol[] allSymbols = new Symbol[numberOfSymbols + numberOfNewSymbols];
+            double[][] centersOfMass = this.calculateCentersOfMass(sessionTraces_);
+            sessionTree_ = oldTree.addVertex(centersOfMass[0], centersOfMass[1]);
 
-        System.arraycopy(symbols, 0, allSymbols, 0, numberOfSymbols);
-        System.arraycopy(newSymbols, 0, allSymbols, numberOfSymbols, numberOfNewSymbols);
+            changedTraces.add(newTrace);
+            for (int i = 0, n = oldTree.getNumberOfVertices(); i < n; i++) {
+                if (! Arrays.equals(oldTree.getNeighbors(i), sessionTree_.getNeighbors(i))) {
+                    changedTraces.add(sessionTraces_.get(i));
+                }
+            }
 
-        for (Symbol symbol : allSymbols) {
-            symbol.reset();
+            // A new Trace may join a Symbol that is not next to it on the tree.
+            int newIndex = sessionTraces_.size() - 1;
+            for (int index : sessionTraces_.findOverlapCandidates(newTrace)) {
+                if (index != newIndex &&
+                    Trace.areOverlapped(sessionTraces_.get(index), newTrace)) {
+                    changedTraces.add(sessionTraces_.get(index));
+                }
+            }
+            for (int index : this.findEqualsCandidates(sessionTraces_, newIndex)) {
+                if (index != newIndex &&
+                    this.areEqualsSymbol(sessionTraces_.get(index), newTrace, sessionTraces_)) {
+                    changedTraces.add(sessionTraces_.get(index));
+                }
+            }
         }
 
-        return allSymbols;
+        return this.finishSessionUpdate(symbols, changedTraces, call);
     }
 
     /**
      * @brief Removes a group of Traces from an existent group of Symbols
+     *        Each removed Trace is deleted from the minimum spanning tree of the session, whose
+     *        remaining pieces are reconnected. The Symbols that held a removed Trace or a Trace
+     *        whose neighbors on the tree changed are released and partitioned again. All the
+     *        other Symbols are kept as they are.
      *
      * @param symbols
      *     The Symbols already identified
@@ -507,42 +989,316 @@ public class MSTPartitioner extends Partitioner {
             return symbols;
         }
 
-        for (Symbol symbol : symbols) {
-            symbol.reset();
-        }
+        PartitionCall call = this.startCall();
+        this.synchronizeSession(symbols);
 
-        HashSet<Integer> changedSymbols = new HashSet<Integer>();
+        Set<Trace> changedTraces = Collections.newSetFromMap(
+            new IdentityHashMap<Trace, Boolean>());
 
-        for (int i = 0, n = symbols.length; i < n; i++) {
-            for (int j = 0, m = tracesToBeRemoved.size(); j < m; j++) {
-                if (symbols[i].getTraceGroup().remove(tracesToBeRemoved.get(j))) {
-                    changedSymbols.add(i);
+        for (Trace trace : tracesToBeRemoved) {
+            int vertex = - 1;
+            for (int i = 0, n = sessionTraces_.size(); i < n; i++) {
+                if (sessionTraces_.get(i) == trace) {
+                    vertex = i;
+                    break;
                 }
             }
-        }
 
-        int numberOfNullSymbols = 0;
-        for (Integer index : changedSymbols) {
-            if (symbols[index].getTraceGroup().size() != 0) {
-                symbols[index] = classifier_.classify(symbols[index].getTraceGroup(),
-                    null, false, false);
+            if (vertex < 0) {
+                continue;
             }
-            else {
-                symbols[index] = null;
-                numberOfNullSymbols++;
+
+            changedTraces.add(trace);
+
+            MinimumSpanningTree oldTree = sessionTree_;
+            sessionTraces_.remove(trace);
+
+            if (! sessionIncremental_) {
+                continue;
             }
-        }
 
-        Symbol[] finalSymbols = new Symbol[symbols.length - numberOfNullSymbols];
-        int index = 0;
+            double[][] centersOfMass = this.calculateCentersOfMass(sessionTraces_);
+            sessionTree_ = oldTree.removeVertex(vertex, centersOfMass[0], centersOfMass[1]);
+
+            for (int i = 0, n = sessionTree_.getNumberOfVertices(); i < n; i++) {
+                int[] oldNeighbors = oldTree.getNeighbors((i < vertex) ? i : i + 1);
+
+                int numberOfOldNeighbors = 0;
+                for (int neighbor : oldNeighbors) {
+                    if (neighbor != vertex) {
+                        oldNeighbors[numberOfOldNeighbors++] = (neighbor > vertex) ?
+                            neighbor - 1 : neighbor;
+                    }
+                }
+
+                if (! Arrays.equals(Arrays.copyOf(oldNeighbors, numberOfOldNeighbors),
+                    sessionTree_.getNeighbors(i))) {
+                    changedTraces.add(sessionTraces_.get(i));
+                }
+            }
+        }
+
+        if (changedTraces.size() == 0) {
+            return symbols;
+        }
+
+        return this.finishSessionUpdate(symbols, changedTraces, call);
+    }
+
+    /**
+     * @brief Partitions again the Symbols of the session that hold changed Traces
+     *        The released Traces, together with the Traces of the session that belong to no
+     *        Symbol, are partitioned along the part of the session tree that connects them. The
+     *        whole session is partitioned again if the tree of the session cannot be kept, or if
+     *        the released Traces cannot be partitioned on their own. Since partitioning the whole
+     *        session always succeeds, a change never drops the session.
+     *
+     * @param symbols
+     *     The Symbols of the session before the change
+     * @param changedTraces
+     *     The changed Traces
+     * @param call
+     *     The call that the change is part of
+     *
+     * @return The Symbols of the session after the change
+     */
+    private Symbol[] finishSessionUpdate (Symbol[] symbols, Set<Trace> changedTraces,
+                                          PartitionCall call) {
+        Symbol[] allSymbols;
+        if (sessionIncremental_) {
+            allSymbols = this.partitionReleasedTraces(symbols, changedTraces, call);
+
+            this.recordSessionSymbols(allSymbols);
+        }
+        else {
+            // The new TraceGroup holds the same Traces, since startSession replaces the one of
+            // the session.
+            allSymbols = this.startSession(this.partition(new TraceGroup().add(sessionTraces_),
+                call));
+        }
+
+        return allSymbols;
+    }
+
+    /**
+     * @brief Partitions the Traces of the session that are released by a change
+     *
+     * @param symbols
+     *     The Symbols of the session before the change
+     * @param changedTraces
+     *     The changed Traces
+     * @param call
+     *     The call that the change is part of
+     *
+     * @return The kept Symbols followed by the Symbols of the released Traces, or the Symbols of
+     *         the whole session if the released Traces cannot be partitioned on their own
+     */
+    private Symbol[] partitionReleasedTraces (Symbol[] symbols, Set<Trace> changedTraces,
+                                              PartitionCall call) {
+        int numberOfTraces = sessionTraces_.size();
+
+        IdentityHashMap<Trace, Integer> vertices = new IdentityHashMap<Trace, Integer>();
+        for (int i = 0; i < numberOfTraces; i++) {
+            vertices.put(sessionTraces_.get(i), i);
+        }
+
+        // Traces that belong to no Symbol yet are released.
+        boolean[] isReleased = new boolean[numberOfTraces];
+        Arrays.fill(isReleased, true);
+
+        ArrayList<Symbol> keptSymbols = new ArrayList<Symbol>();
         for (Symbol symbol : symbols) {
-            if (symbol != null) {
-                finalSymbols[index] = symbol;
-                index++;
+            boolean release = false;
+            for (Trace trace : symbol.getTraceGroup()) {
+                if (changedTraces.contains(trace)) {
+                    release = true;
+                    break;
+                }
+            }
+
+            for (Trace trace : symbol.getTraceGroup()) {
+                Integer vertex = vertices.get(trace);
+                if (vertex != null) {
+                    isReleased[vertex] = release;
+                }
+            }
+
+            if (! release) {
+                keptSymbols.add(symbol);
             }
         }
 
-        return finalSymbols;
+        int numberOfReleasedTraces = 0;
+        for (int i = 0; i < numberOfTraces; i++) {
+            if (isReleased[i]) {
+                numberOfReleasedTraces++;
+            }
+        }
+
+        int[] releasedTraces = new int[numberOfReleasedTraces];
+        for (int i = 0, j = 0; i < numberOfTraces; i++) {
+            if (isReleased[i]) {
+                releasedTraces[j++] = i;
+            }
+        }
+
+        /* ===== Logs Start ===== */
+        if (logger_.getLevel() != Level.OFF) {
+            logger_.info("Released Traces... ===== Start =====");
+
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int trace : releasedTraces) {
+                stringBuilder.append(trace).append(", ");
+            }
+            logger_.info(stringBuilder.toString());
+
+            logger_.info("Released Traces... ===== End =====");
+        }
+        /* ===== Logs End ===== */
+
+        Symbol[] releasedSymbols = new Symbol[0];
+        if (numberOfReleasedTraces > 0) {
+            TraceGroup releasedTraceGroup = sessionTraces_.subTraceGroup(releasedTraces);
+
+            try {
+                releasedSymbols = this.partitionComponents(releasedTraceGroup,
+                    this.restrictTree(sessionTree_, releasedTraces), call);
+            } catch (IllegalArgumentException illegalArgumentException) {
+                // Overlapped Traces that are far apart on the tree of the released Traces cannot
+                // be covered by any path. The Symbols between them on the tree of the session
+                // are kept, so the whole session is partitioned again instead.
+
+                /* ===== Logs Start ===== */
+                if (logger_.getLevel() != Level.OFF) {
+                    logger_.info("Released Traces cannot be partitioned, partitioning the " +
+                        "whole session...");
+                }
+                /* ===== Logs End ===== */
+
+                return (this.partition(new TraceGroup().add(sessionTraces_), call));
+            }
+        }
+
+        Symbol[] allSymbols = new Symbol[keptSymbols.size() + releasedSymbols.length];
+        for (int i = 0, n = keptSymbols.size(); i < n; i++) {
+            allSymbols[i] = keptSymbols.get(i);
+        }
+        System.arraycopy(releasedSymbols, 0, allSymbols, keptSymbols.size(),
+            releasedSymbols.length);
+
+        return allSymbols;
+    }
+
+    /**
+     * @brief Starts a new session with the given Symbols
+     *        The Traces of the Symbols become the Traces of the session and their minimum
+     *        spanning tree is built from scratch.
+     *
+     * @param symbols
+     *     The Symbols of the new session
+     *
+     * @return The given Symbols
+     */
+    private Symbol[] startSession (Symbol[] symbols) {
+        sessionTraces_ = new TraceGroup();
+        if (symbols != null) {
+            for (Symbol symbol : symbols) {
+                sessionTraces_.add(symbol.getTraceGroup());
+            }
+        }
+
+        // The tree can only be updated when every Trace has a center of mass.
+        sessionIncremental_ = true;
+        for (Trace trace : sessionTraces_) {
+            if (trace.size() == 0) {
+                sessionIncremental_ = false;
+            }
+        }
+
+        if (sessionIncremental_) {
+            double[][] centersOfMass = this.calculateCentersOfMass(sessionTraces_);
+            sessionTree_ = MinimumSpanningTree.euclidean(centersOfMass[0], centersOfMass[1]);
+        }
+        else {
+            sessionTree_ = null;
+        }
+
+        this.recordSessionSymbols(symbols);
+
+        return symbols;
+    }
+
+    /**
+     * @brief Starts a new session with the given Symbols, unless they are the Symbols of the
+     *        current session
+     *        Symbols are the same if they hold the same Trace objects, so Symbols that a Parser
+     *        has replaced with others of the same Traces keep the session going.
+     *
+     * @param symbols
+     *     The given Symbols
+     */
+    private void synchronizeSession (Symbol[] symbols) {
+        boolean same = (sessionSymbolTraces_ != null &&
+            sessionSymbolTraces_.length == symbols.length);
+
+        for (int i = 0; same && i < symbols.length; i++) {
+            TraceGroup traceGroup = symbols[i].getTraceGroup();
+
+            same = (traceGroup.size() == sessionSymbolTraces_[i].length);
+            for (int j = 0; same && j < traceGroup.size(); j++) {
+                same = (traceGroup.get(j) == sessionSymbolTraces_[i][j]);
+            }
+        }
+
+        if (! same) {
+            this.startSession(symbols);
+        }
+    }
+
+    /**
+     * @brief Records the Traces of each Symbol of the session
+     *
+     * @param symbols
+     *     The Symbols of the session
+     */
+    private void recordSessionSymbols (Symbol[] symbols) {
+        if (symbols == null) {
+            sessionSymbolTraces_ = null;
+            return;
+        }
+
+        sessionSymbolTraces_ = new Trace[symbols.length][];
+        for (int i = 0; i < symbols.length; i++) {
+            TraceGroup traceGroup = symbols[i].getTraceGroup();
+
+            sessionSymbolTraces_[i] = new Trace[traceGroup.size()];
+            for (int j = 0; j < traceGroup.size(); j++) {
+                sessionSymbolTraces_[i][j] = traceGroup.get(j);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the centers of mass of the Traces of a TraceGroup
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     *
+     * @return The abscissas of the centers of mass as the first row and the ordinates as the
+     *         second
+     */
+    private double[][] calculateCentersOfMass (TraceGroup traceGroup) {
+        int numberOfTraces = traceGroup.size();
+
+        double[][] centersOfMass = new double[2][numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            Point centerOfMass = traceGroup.get(i).getCenterOfMass();
+
+            centersOfMass[0][i] = centerOfMass.x_;
+            centersOfMass[1][i] = centerOfMass.y_;
+        }
+
+        return centersOfMass;
     }
 
     /**
@@ -606,6 +1362,66 @@ public class MSTPartitioner extends Partitioner {
         return true;
     }
 
+    /**
+     * @brief Builds the minimum spanning tree of the centers of mass of the Traces of a TraceGroup
+     *        Depending on the construction mode, the tree is built either by Kruskal's algorithm
+     *        on all the distances between the Traces, or by Boruvka's algorithm on a k-d tree of
+     *        the centers of mass. Both give the same tree. TraceGroups with an empty Trace are
+     *        always built densely, since an empty Trace has no center of mass.
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     *
+     * @return The minimum spanning tree of the Traces of the TraceGroup
+     */
+    private MinimumSpanningTree buildMinimumSpanningTree (TraceGroup traceGroup) {
+        int numberOfTraces = traceGroup.size();
+
+        boolean sparse = (constructionMode_ == ConstructionMode.SPARSE ||
+            (constructionMode_ == ConstructionMode.AUTOMATIC &&
+                numberOfTraces >= SPARSE_CONSTRUCTION_THRESHOLD));
+
+        double[] x = new double[numberOfTraces];
+        double[] y = new double[numberOfTraces];
+        for (int i = 0; i < numberOfTraces && sparse; i++) {
+            Trace trace = traceGroup.get(i);
+            if (trace.size() == 0) {
+                sparse = false;
+            }
+            else {
+                Point centerOfMass = trace.getCenterOfMass();
+                x[i] = centerOfMass.x_;
+                y[i] = centerOfMass.y_;
+            }
+        }
+
+        if (sparse) {
+            /* ===== Logs Start ===== */
+            if (logger_.getLevel() != Level.OFF) {
+                logger_.info("Building the Minimum Spanning Tree on a k-d tree");
+            }
+            /* ===== Logs End ===== */
+
+            return (MinimumSpanningTree.euclidean(x, y));
+        }
+
+        double[] distances = this.calculateDistancesBetweenTraces(traceGroup);
+
+        /* ===== Logs Start ===== */
+        if (logger_.getLevel() != Level.OFF) {
+            logger_.info("Distances between traces... ===== Start =====");
+
+            for (double distance : distances) {
+                logger_.info(String.valueOf(distance));
+            }
+
+            logger_.info("Distances between traces... ===== End =====");
+        }
+        /* ===== Logs End ===== */
+
+        return (MinimumSpanningTree.kruskal(distances, numberOfTraces));
+    }
+
     /**
      * @brief Returns the distances between all the given Traces
      *
@@ -661,57 +1477,464 @@ public class MSTPartitioner extends Partitioner {
      * @return The pairs of Traces that are overlapped
      */
     private int[][] findOverlaps (TraceGroup traceGroup) {
-        int numberOfTraces = traceGroup.size();
+        return this.findPairs(traceGroup, new PairTest() {
+            public int[] candidates (TraceGroup traceGroup, int index) {
+                return traceGroup.findOverlapCandidates(traceGroup.get(index));
+            }
 
-        ArrayList<int[]> overlaps = new ArrayList<int[]>();
+            public boolean test (Trace trace1, Trace trace2) {
+                return Trace.areOverlapped(trace1, trace2);
+            }
+        });
+    }
 
-        for (int i = 0; i < numberOfTraces; i++) {
-            for (int j = i + 1; j < numberOfTraces; j++) {
-                if (Trace.areOverlapped(traceGroup.get(i), traceGroup.get(j))) {
-                    overlaps.add(new int[] {i, j});
-                }
+    /**
+     * @brief Returns the pairs of Traces that create an equals sign
+     *
+     * @param traceGroup
+     *     The group of Traces
+     *
+     * @return The pairs of Traces that create an equals sign
+     */
+    private int[][] findEqualsSymbol (final TraceGroup traceGroup) {
+        return this.findPairs(traceGroup, new PairTest() {
+            public int[] candidates (TraceGroup traceGroup, int index) {
+                return findEqualsCandidates(traceGroup, index);
             }
-        }
 
-        // Convert array list to array.
-        int[][] overlapsArray = new int[overlaps.size()][2];
-        for (int i = 0; i < overlaps.size(); i++) {
-            overlapsArray[i][0] = overlaps.get(i)[0];
-            overlapsArray[i][1] = overlaps.get(i)[1];
+            public boolean test (Trace trace1, Trace trace2) {
+                return areEqualsSymbol(trace1, trace2, traceGroup);
+            }
+        });
+    }
+
+    /**
+     * @brief Returns the Traces of a TraceGroup that may create an equals sign with a given Trace
+     *        The lines of an equals sign are closer to each other than the width of either line,
+     *        so only the Traces near the bounding box of the given Trace are returned.
+     *
+     * @param traceGroup
+     *     The group of Traces
+     * @param index
+     *     The index of the given Trace
+     *
+     * @return The indices of the candidate Traces in ascending order
+     */
+    private int[] findEqualsCandidates (TraceGroup traceGroup, int index) {
+        Trace trace = traceGroup.get(index);
+        if (trace.size() == 0) {
+            return new int[] {};
         }
 
-        return overlapsArray;
+        double width = trace.getWidth();
+        Point topLeftCorner = trace.getTopLeftCorner();
+        Point bottomRightCorner = trace.getBottomRightCorner();
+
+        return traceGroup.findTraces(new Point(topLeftCorner.x_ - width, topLeftCorner.y_ + width),
+            new Point(bottomRightCorner.x_ + width, bottomRightCorner.y_ - width));
     }
 
     /**
-     * @brief Returns the pairs of Traces that create an equals sign
+     * @brief Returns the pairs of Traces of a TraceGroup that pass a test
+     *        Each Trace is only tested with the candidates that the test gives for it. The pairs
+     *        are tested on the ForkJoinPool of this MSTPartitioner, one range of first Traces per
+     *        task. The result is the same as that of a sequential scan, whatever the number of
+     *        threads.
      *
      * @param traceGroup
      *     The group of Traces
+     * @param test
+     *     The test
      *
-     * @return The pairs of Traces that create an equals sign
+     * @return The pairs {i, j}, with i < j, of the Traces that pass the test, in row-major order
      */
-    private int[][] findEqualsSymbol (TraceGroup traceGroup) {
+    private int[][] findPairs (TraceGroup traceGroup, PairTest test) {
         int numberOfTraces = traceGroup.size();
 
-        ArrayList<int[]> equals = new ArrayList<int[]>();
+        int[][] partners = new int[numberOfTraces][];
+        if (numberOfTraces > 1) {
+            // Rows hold different numbers of candidates, so the ranges are kept small for the pool
+            // to balance the work.
+            int grainSize = Math.max(1, numberOfTraces / (4 * pool_.getParallelism()));
 
+            pool_.invoke(new PairScanTask(traceGroup, test, partners, 0, numberOfTraces,
+                grainSize));
+        }
+
+        ArrayList<int[]> pairs = new ArrayList<int[]>();
         for (int i = 0; i < numberOfTraces; i++) {
-            for (int j = i + 1; j < numberOfTraces; j++) {
-                if (areEqualsSymbol(traceGroup.get(i), traceGroup.get(j))) {
-                    equals.add(new int[] {i, j});
+            for (int j = 0; partners[i] != null && j < partners[i].length; j++) {
+                pairs.add(new int[] {i, partners[i][j]});
+            }
+        }
+
+        return pairs.toArray(new int[pairs.size()][]);
+    }
+
+    /**
+     * @interface PairTest
+     * @brief A test on a pair of Traces
+     */
+    private interface PairTest {
+        /**
+         * @brief Returns the Traces of a TraceGroup that may pass the test with a given Trace
+         *        Every Trace that passes the test with the given Trace must be returned.
+         *
+         * @param traceGroup
+         *     The group of Traces
+         * @param index
+         *     The index of the given Trace
+         *
+         * @return The indices of the candidate Traces in ascending order
+         */
+        int[] candidates (TraceGroup traceGroup, int index);
+
+        /**
+         * @brief Tests a pair of Traces
+         *
+         * @param trace1
+         *     The first Trace
+         * @param trace2
+         *     The second Trace
+         *
+         * @return True if the pair passes the test
+         */
+        boolean test (Trace trace1, Trace trace2);
+
+    }
+
+    /**
+     * @class PairScanTask
+     * @brief Tests the pairs of Traces whose first Trace is in a range of a TraceGroup
+     *        The range is split in halves until it is no longer than the grain size.
+     */
+    private static class PairScanTask extends RecursiveAction {
+        /**
+         * @brief Constructor
+         *
+         * @param traceGroup
+         *     The group of Traces
+         * @param test
+         *     The test
+         * @param partners
+         *     The array to write the results on. Row i holds, in ascending order, every j > i
+         *     such that the pair {i, j} passes the test.
+         * @param start
+         *     The index of the first Trace of the range
+         * @param end
+         *     The index after the last Trace of the range
+         * @param grainSize
+         *     The number of Traces below which the range is not split
+         */
+        PairScanTask (TraceGroup traceGroup, PairTest test, int[][] partners, int start,
+                      int end, int grainSize) {
+            traceGroup_ = traceGroup;
+            test_ = test;
+            partners_ = partners;
+            start_ = start;
+            end_ = end;
+            grainSize_ = grainSize;
+        }
+
+        /**
+         * @brief Tests the pairs of the range
+         */
+        @Override
+        protected void compute () {
+            if (end_ - start_ > grainSize_) {
+                int middle = (start_ + end_) >>> 1;
+
+                invokeAll(new PairScanTask(traceGroup_, test_, partners_, start_, middle,
+                        grainSize_),
+                    new PairScanTask(traceGroup_, test_, partners_, middle, end_, grainSize_));
+
+                return;
+            }
+
+            for (int i = start_; i < end_; i++) {
+                int[] candidates = test_.candidates(traceGroup_, i);
+
+                int numberOfPartners = 0;
+                for (int j : candidates) {
+                    if (j > i && test_.test(traceGroup_.get(i), traceGroup_.get(j))) {
+                        candidates[numberOfPartners++] = j;
+                    }
                 }
+
+                partners_[i] = Arrays.copyOf(candidates, numberOfPartners);
             }
         }
 
-        // Convert array list to array.
-        int[][] equalsArray = new int[equals.size()][2];
-        for (int i = 0; i < equals.size(); i++) {
-            equalsArray[i][0] = equals.get(i)[0];
-            equalsArray[i][1] = equals.get(i)[1];
+        private final TraceGroup traceGroup_; //!< The group of Traces
+        private final PairTest test_; //!< The test
+        private final int[][] partners_; //!< The results of the tests
+        private final int start_; //!< The index of the first Trace of the range
+        private final int end_; //!< The index after the last Trace of the range
+        private final int grainSize_; //!< The number of Traces below which the range is not split
+
+        private static final long serialVersionUID = 1L; //!< The version of the serialized form
+
+    }
+
+    /**
+     * @class ClassificationTask
+     * @brief Classifies a range of candidate Symbols
+     *        The range is split in halves until it is no longer than the grain size. Each range is
+     *        classified as one batch and written on its own positions, so the results do not
+     *        depend on the number of threads.
+     */
+    private class ClassificationTask extends RecursiveAction {
+        /**
+         * @brief Constructor
+         *
+         * @param candidates
+         *     The Traces of the candidate Symbols
+         * @param symbols
+         *     The array to write the classified Symbols on
+         * @param start
+         *     The index of the first candidate of the range
+         * @param end
+         *     The index after the last candidate of the range
+         * @param grainSize
+         *     The number of candidates below which the range is not split
+         */
+        ClassificationTask (TraceGroup[] candidates, Symbol[] symbols, int start, int end,
+                            int grainSize) {
+            candidates_ = candidates;
+            symbols_ = symbols;
+            start_ = start;
+            end_ = end;
+            grainSize_ = grainSize;
+        }
+
+        /**
+         * @brief Classifies the candidates of the range
+         */
+        @Override
+        protected void compute () {
+            if (end_ - start_ > grainSize_) {
+                int middle = (start_ + end_) >>> 1;
+
+                invokeAll(new ClassificationTask(candidates_, symbols_, start_, middle,
+                        grainSize_),
+                    new ClassificationTask(candidates_, symbols_, middle, end_, grainSize_));
+
+                return;
+            }
+
+            Symbol[] symbols = classifier_.classifyBatch(Arrays.copyOfRange(candidates_, start_,
+                end_));
+            System.arraycopy(symbols, 0, symbols_, start_, symbols.length);
         }
 
-        return equalsArray;
+        private final TraceGroup[] candidates_; //!< The Traces of the candidate Symbols
+        private final Symbol[] symbols_; //!< The classified Symbols
+        private final int start_; //!< The index of the first candidate of the range
+        private final int end_; //!< The index after the last candidate of the range
+        private final int grainSize_; //!< The number of candidates below which the range is not
+                                      //!< split
+
+        private static final long serialVersionUID = 1L; //!< The version of the serialized form
+
+    }
+
+    /**
+     * @class ComponentPartitionTask
+     * @brief Partitions a range of components of a TraceGroup
+     *        The range is split in halves until it holds a single component. Each component is
+     *        written on its own position, so the results do not depend on the number of threads.
+     */
+    private class ComponentPartitionTask extends RecursiveAction {
+        /**
+         * @brief Constructor
+         *
+         * @param traceGroups
+         *     The Traces of each component
+         * @param minimumSpanningTrees
+         *     The tree of the Traces of each component
+         * @param symbols
+         *     The array to write the Symbols of each component on
+         * @param start
+         *     The index of the first component of the range
+         * @param end
+         *     The index after the last component of the range
+         * @param call
+         *     The call that the partitioning is part of
+         */
+        ComponentPartitionTask (TraceGroup[] traceGroups,
+                                MinimumSpanningTree[] minimumSpanningTrees, Symbol[][] symbols,
+                                int start, int end, PartitionCall call) {
+            traceGroups_ = traceGroups;
+            minimumSpanningTrees_ = minimumSpanningTrees;
+            symbols_ = symbols;
+            start_ = start;
+            end_ = end;
+            call_ = call;
+        }
+
+        /**
+         * @brief Partitions the components of the range
+         */
+        @Override
+        protected void compute () {
+            if (end_ - start_ > 1) {
+                int middle = (start_ + end_) >>> 1;
+
+                invokeAll(new ComponentPartitionTask(traceGroups_, minimumSpanningTrees_,
+                        symbols_, start_, middle, call_),
+                    new ComponentPartitionTask(traceGroups_, minimumSpanningTrees_, symbols_,
+                        middle, end_, call_));
+
+                return;
+            }
+
+            symbols_[start_] = partition(traceGroups_[start_], minimumSpanningTrees_[start_],
+                call_);
+        }
+
+        private final TraceGroup[] traceGroups_; //!< The Traces of each component
+        private final MinimumSpanningTree[] minimumSpanningTrees_; //!< The tree of the Traces of
+                                                                   //!< each component
+        private final Symbol[][] symbols_; //!< The Symbols of each component
+        private final int start_; //!< The index of the first component of the range
+        private final int end_; //!< The index after the last component of the range
+        private final PartitionCall call_; //!< The call that the partitioning is part of
+
+        private static final long serialVersionUID = 1L; //!< The version of the serialized form
+
+    }
+
+    /**
+     * @class PartitionCall
+     * @brief Holds the state that the partition searches of a call of partition, append or
+     *        remove share
+     *        That is the deadline of the call and whether every search found a best partition.
+     *        The components of a call are partitioned on different threads, so each call has its
+     *        own PartitionCall instead of fields of the MSTPartitioner.
+     */
+    private static class PartitionCall {
+        /**
+         * @brief Constructor
+         *        The deadline of the call starts counting when it is created.
+         *
+         * @param timeBudget
+         *     The time budget of the call in milliseconds. Non positive values set no deadline.
+         */
+        PartitionCall (long timeBudget) {
+            budgeted_ = timeBudget > 0;
+            deadline_ = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+            keepsOverlapsTogether_ = true;
+        }
+
+        /**
+         * @brief Constructor
+         *
+         * @param call
+         *     The call whose deadline is kept
+         * @param keepsOverlapsTogether
+         *     Flag indicating that overlapped Traces must be on the same Symbol
+         */
+        private PartitionCall (PartitionCall call, boolean keepsOverlapsTogether) {
+            budgeted_ = call.budgeted_;
+            deadline_ = call.deadline_;
+            keepsOverlapsTogether_ = keepsOverlapsTogether;
+        }
+
+        /**
+         * @brief Returns a call with the same deadline that allows overlapped Traces on different
+         *        Symbols
+         *
+         * @return The new call
+         */
+        PartitionCall splittingOverlaps () {
+            return new PartitionCall(this, false);
+        }
+
+        /**
+         * @brief Returns true if overlapped Traces must be on the same Symbol
+         *
+         * @return True if overlapped Traces must be on the same Symbol
+         */
+        boolean keepsOverlapsTogether () {
+            return keepsOverlapsTogether_;
+        }
+
+        /**
+         * @brief Returns true if the call has a deadline
+         *
+         * @return True if the call has a deadline
+         */
+        boolean isBudgeted () {
+            return budgeted_;
+        }
+
+        /**
+         * @brief Getter method for the deadline of the call
+         *
+         * @return The deadline of the call, as a value of System.nanoTime
+         */
+        long getDeadline () {
+            return deadline_;
+        }
+
+        /**
+         * @brief Returns true if the call has a deadline that has passed
+         *
+         * @return True if the call has a deadline that has passed
+         */
+        boolean hasExpired () {
+            return budgeted_ && System.nanoTime() - deadline_ >= 0;
+        }
+
+        /**
+         * @brief Returns true if every partition search of the call found a best partition
+         *
+         * @return True if every partition search of the call found a best partition
+         */
+        boolean isOptimal () {
+            return optimal_;
+        }
+
+        /**
+         * @brief Setter method for the flag of the call that tells if every partition search
+         *        found a best partition
+         *
+         * @param optimal
+         *     The new value of the flag
+         */
+        void setOptimal (boolean optimal) {
+            optimal_ = optimal;
+        }
+
+        private final boolean budgeted_; //!< Flag indicating that the call has a deadline
+        private final long deadline_; //!< The deadline of the call, as a value of System.nanoTime
+        private final boolean keepsOverlapsTogether_; //!< Flag indicating that overlapped Traces
+                                                      //!< must be on the same Symbol
+        private volatile boolean optimal_ = true; //!< Flag indicating that every partition search
+                                                  //!< of the call found a best partition
+
+    }
+
+    /**
+     * @brief Classifies candidate Symbols on the ForkJoinPool of this MSTPartitioner
+     *
+     * @param candidates
+     *     The Traces of the candidate Symbols
+     *
+     * @return The classified Symbols, in the order of the candidates
+     */
+    private Symbol[] classifyCandidates (TraceGroup[] candidates) {
+        int numberOfCandidates = candidates.length;
+
+        Symbol[] symbols = new Symbol[numberOfCandidates];
+        if (numberOfCandidates > 0) {
+            int grainSize = Math.max(1, numberOfCandidates / pool_.getParallelism());
+
+            pool_.invoke(new ClassificationTask(candidates, symbols, 0, numberOfCandidates,
+                grainSize));
+        }
+
+        return symbols;
     }
 
     /**
@@ -721,10 +1944,12 @@ public class MSTPartitioner extends Partitioner {
      *     The first trace
      * @param trace2
      *     The second trace
+     * @param expression
+     *     The TraceGroup of the given Traces
      *
      * @return True if the given Traces create an equals sign
      */
-    private boolean areEqualsSymbol (Trace trace1, Trace trace2) {
+    private boolean areEqualsSymbol (Trace trace1, Trace trace2, TraceGroup expression) {
         boolean classifierDecision;
         boolean algebraicDecision = false;
 
@@ -769,12 +1994,12 @@ public class MSTPartitioner extends Partitioner {
                 connectionLine.add(new Point(smaller.get(i)));
                 connectionLine.add(bigger.closestPoint(smaller.get(i)));
 
-                for (int j = 0; j < expression_.size(); j++) {
-                    if (expression_.get(j) == trace1 || expression_.get(j) == trace2) {
+                for (int j = 0; j < expression.size(); j++) {
+                    if (expression.get(j) == trace1 || expression.get(j) == trace2) {
                         continue;
                     }
 
-                    if (Trace.areOverlapped(connectionLine, expression_.get(j))) {
+                    if (Trace.areOverlapped(connectionLine, expression.get(j))) {
                         algebraicDecision = false;
                     }
                 }
@@ -835,13 +2060,13 @@ public class MSTPartitioner extends Partitioner {
          *
          *  @return True if the path is valid
          */
-        public boolean check (ArrayList<Integer> path) {
+        public boolean check (int[] path) {
             int[] tracesOccurrenceCounter = new int[numberOfTraces_];
             for (int i = 0; i < numberOfTraces_; i++) {
                 tracesOccurrenceCounter[i] = 0;
             }
 
-            for (Integer traceIndex : path) {
+            for (int traceIndex : path) {
                 for (int trace = 0; trace < paths_[traceIndex].length; trace++) {
                     tracesOccurrenceCounter[paths_[traceIndex][trace]]++;
                 }
@@ -861,6 +2086,215 @@ public class MSTPartitioner extends Partitioner {
 
     }
 
-    private TraceGroup expression_; //!< The TraceGroup to be partitioned
+    /**
+     * @brief Getter method for the construction mode of the minimum spanning tree
+     *
+     * @return The construction mode of the minimum spanning tree
+     */
+    public ConstructionMode getConstructionMode () {
+        return constructionMode_;
+    }
+
+    /**
+     * @brief Setter method for the construction mode of the minimum spanning tree
+     *
+     * @param constructionMode
+     *     The new construction mode of the minimum spanning tree
+     */
+    public void setConstructionMode (ConstructionMode constructionMode) {
+        constructionMode_ = constructionMode;
+    }
+
+    /**
+     * @brief Getter method for the ForkJoinPool where candidate Symbols are classified and pairs
+     *        of Traces are scanned
+     *
+     * @return The ForkJoinPool
+     */
+    public ForkJoinPool getPool () {
+        return pool_;
+    }
+
+    /**
+     * @brief Setter method for the ForkJoinPool where candidate Symbols are classified and pairs
+     *        of Traces are scanned
+     *        The Classifier of this MSTPartitioner must be safe to use from many threads.
+     *
+     * @param pool
+     *     The ForkJoinPool
+     */
+    public void setPool (ForkJoinPool pool) {
+        pool_ = pool;
+    }
+
+    /**
+     * @enum ConstructionMode
+     * @brief The ways the minimum spanning tree of the Traces can be built
+     */
+    public enum ConstructionMode {
+        DENSE, //!< Kruskal's algorithm on the distances between all pairs of Traces
+        SPARSE, //!< Boruvka's algorithm on a k-d tree of the centers of mass of the Traces
+        AUTOMATIC //!< SPARSE for at least SPARSE_CONSTRUCTION_THRESHOLD Traces, DENSE otherwise
+    }
+
+    /**
+     * @brief Getter method for the strategy used to find the best partition
+     *
+     * @return The strategy used to find the best partition
+     */
+    public SearchStrategy getSearchStrategy () {
+        return searchStrategy_;
+    }
+
+    /**
+     * @brief Setter method for the strategy used to find the best partition
+     *
+     * @param searchStrategy
+     *     The new strategy used to find the best partition
+     */
+    public void setSearchStrategy (SearchStrategy searchStrategy) {
+        searchStrategy_ = searchStrategy;
+    }
+
+    /**
+     * @brief Getter method for the beam width of the BEAM search strategy
+     *
+     * @return The beam width of the BEAM search strategy
+     */
+    public int getBeamWidth () {
+        return beamWidth_;
+    }
+
+    /**
+     * @brief Setter method for the beam width of the BEAM search strategy
+     *        Narrower beams are faster but are more likely to miss the best partition.
+     *
+     * @param beamWidth
+     *     The number of partial partitions kept at each step. Non positive values keep all of
+     *     them.
+     */
+    public void setBeamWidth (int beamWidth) {
+        beamWidth_ = beamWidth;
+    }
+
+    /**
+     * @brief Getter method for the cut factor
+     *
+     * @return The cut factor
+     */
+    public double getCutFactor () {
+        return cutFactor_;
+    }
+
+    /**
+     * @brief Setter method for the cut factor
+     *        Edges of the minimum spanning tree that are longer than the cut factor times the
+     *        typical distance between the Traces split the Traces into components that are
+     *        partitioned independently. Smaller factors give more and smaller components, at the
+     *        risk of cutting through a Symbol.
+     *
+     * @param cutFactor
+     *     The new cut factor. Double.POSITIVE_INFINITY keeps all the Traces on one component.
+     */
+    public void setCutFactor (double cutFactor) {
+        cutFactor_ = cutFactor;
+    }
+
+    /**
+     * @brief Getter method for the time budget of the BRANCH_AND_BOUND search strategy
+     *
+     * @return The time budget in milliseconds
+     */
+    public long getTimeBudget () {
+        return timeBudget_;
+    }
+
+    /**
+     * @brief Setter method for the time budget of the BRANCH_AND_BOUND search strategy
+     *        The budget is shared by every partition search of a call of partition, append or
+     *        remove. It bounds the classification of the candidate Symbols and the search for the
+     *        best partition:
+     *        - a search that is running when the budget runs out returns the best partition it
+     *          has found instead of proving it best
+     *        - a component that reaches its classification after the budget has run out only
+     *          classifies the paths of the first partition that its Traces allow
+     *
+     *        The budget is checked before the candidates of a component are classified, so a
+     *        call can still overrun it by the classification of one component. The enumeration
+     *        of the paths, the overlap tests and the search for a first partition, none of which
+     *        classifies anything, are not bounded. isOptimal tells afterwards if the budget ran
+     *        out.
+     *
+     *        There is no budget unless one is set, since a partition found within a budget may
+     *        depend on the load of the machine.
+     *
+     * @param timeBudget
+     *     The time budget in milliseconds. Non positive values let the searches run to
+     *     completion.
+     */
+    public void setTimeBudget (long timeBudget) {
+        timeBudget_ = timeBudget;
+    }
+
+    /**
+     * @brief Returns true if the Symbols returned by the last call of partition, append or remove
+     *        are known to be a partition of maximum rate
+     *        This is false when the time budget ran out during a search, or when the BEAM search
+     *        strategy dropped partial partitions.
+     *
+     * @return True if every partition search of the last call is known to have found a best
+     *         partition
+     */
+    public boolean isOptimal () {
+        return lastCall_.isOptimal();
+    }
+
+    /**
+     * @enum SearchStrategy
+     * @brief The ways the best partition of the Traces into Symbols can be found
+     */
+    public enum SearchStrategy {
+        EXHAUSTIVE, //!< Every set of compatible paths is listed and rated
+        BRANCH_AND_BOUND, //!< An exact cover search that always returns a best partition
+        BEAM //!< An exact cover search that keeps only the most promising partial partitions
+    }
+
+    private TraceGroup sessionTraces_ = new TraceGroup(); //!< The Traces of the current session
+    private MinimumSpanningTree sessionTree_; //!< The minimum spanning tree of the centers of mass
+                                              //!< of the Traces of the session
+    private boolean sessionIncremental_ = false; //!< Flag indicating that the tree of the session
+                                                 //!< can be updated, which needs every Trace to
+                                                 //!< have a center of mass
+    private Trace[][] sessionSymbolTraces_; //!< The Traces of each Symbol of the session
+
+    private ForkJoinPool pool_ = ForkJoinPool.commonPool(); //!< The ForkJoinPool where candidate
+                                                             //!< Symbols are classified and pairs
+                                                             //!< of Traces are scanned
+
+    private SearchStrategy searchStrategy_ = SearchStrategy.BRANCH_AND_BOUND; //!< How the best
+                                                                             //!< partition is
+                                                                             //!< found
+    private int beamWidth_ = DEFAULT_BEAM_WIDTH; //!< The beam width of the BEAM search strategy
+
+    public static final int DEFAULT_BEAM_WIDTH = 32; //!< The default beam width
+
+    private volatile long timeBudget_ = 0; //!< The time budget of each call, in milliseconds
+    private volatile PartitionCall lastCall_ = new PartitionCall(0); //!< The last call of
+                                                                      //!< partition, append or
+                                                                      //!< remove
+
+    private double cutFactor_ = DEFAULT_CUT_FACTOR; //!< The factor of the typical distance between
+                                                    //!< the Traces above which edges of the tree
+                                                    //!< split the Traces into components
+
+    public static final double DEFAULT_CUT_FACTOR = 3; //!< The default cut factor
+
+    private ConstructionMode constructionMode_ = ConstructionMode.AUTOMATIC; //!< How the minimum
+                                                                               //!< spanning tree
+                                                                               //!< is built
+
+    public static final int SPARSE_CONSTRUCTION_THRESHOLD = 64; //!< The number of Traces from
+                                                                 //!< which AUTOMATIC mode builds
+                                                                 //!< the tree sparsely
 
 }
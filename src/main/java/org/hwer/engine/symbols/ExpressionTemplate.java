@@ -0,0 +1,138 @@
+package org.hwer.engine.symbols;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hwer.engine.parsers.grammars.GeometricalGrammar.ArgumentPosition;
+
+
+/**
+ * @class ExpressionTemplate
+ * @brief Implements the compiled form of the string representation of a Symbol
+ *        The string representation of a Symbol holds a placeholder, like {ABOVE_RIGHT}, for each
+ *        position where the Symbol accepts children, optionally preceded by ^ or _. An
+ *        ExpressionTemplate splits it once into the constant text between the placeholders and
+ *        the slots where the children are written, so that the expression of the Symbol is
+ *        written in a single pass, without searching for the placeholders every time.
+ */
+public class ExpressionTemplate {
+    /**
+     * @brief Constructor
+     *
+     * @param symbol
+     *     The Symbol whose string representation is compiled. Its clearString method gives the
+     *     text of a slot without children.
+     * @param template
+     *     The string representation of the Symbol
+     * @param positions
+     *     The positions where the Symbol accepts children
+     */
+    ExpressionTemplate (Symbol symbol, String template, ArgumentPosition[] positions) {
+        List<String> texts = new ArrayList<String>();
+        List<Integer> slots = new ArrayList<Integer>();
+        List<String> openings = new ArrayList<String>();
+        List<String> emptySlots = new ArrayList<String>();
+
+        int textStart = 0;
+        while (true) {
+            // The next placeholder of any of the positions.
+            int placeholderStart = - 1;
+            int slot = - 1;
+            for (int i = 0; i < positions.length; i++) {
+                int index = template.indexOf("{" + positions[i] + "}", textStart);
+
+                if (index >= 0 && (placeholderStart < 0 || index < placeholderStart)) {
+                    placeholderStart = index;
+                    slot = i;
+                }
+            }
+
+            if (placeholderStart < 0) {
+                break;
+            }
+
+            int placeholderEnd = placeholderStart + positions[slot].toString().length() + 2;
+
+            int slotStart = placeholderStart;
+            if (placeholderStart > textStart && (template.charAt(placeholderStart - 1) == '^' ||
+                template.charAt(placeholderStart - 1) == '_')) {
+                slotStart--;
+            }
+
+            texts.add(template.substring(textStart, slotStart));
+            slots.add(slot);
+            openings.add(template.substring(slotStart, placeholderStart + 1));
+            emptySlots.add(symbol.clearString(template.substring(slotStart, placeholderEnd)));
+
+            textStart = placeholderEnd;
+        }
+        texts.add(template.substring(textStart));
+
+        texts_ = texts.toArray(new String[texts.size()]);
+        openings_ = openings.toArray(new String[openings.size()]);
+        emptySlots_ = emptySlots.toArray(new String[emptySlots.size()]);
+
+        slots_ = new int[slots.size()];
+        for (int i = 0; i < slots_.length; i++) {
+            slots_[i] = slots.get(i);
+        }
+    }
+
+    /**
+     * @brief Writes the expression of a Symbol at the end of a given StringBuilder
+     *
+     * @param symbol
+     *     The Symbol that this ExpressionTemplate was compiled for
+     * @param stringBuilder
+     *     The StringBuilder
+     */
+    void write (Symbol symbol, StringBuilder stringBuilder) {
+        for (int i = 0; i < slots_.length; i++) {
+            stringBuilder.append(texts_[i]);
+
+            if (symbol.hasArgument(slots_[i])) {
+                stringBuilder.append(openings_[i]);
+                symbol.buildArgument(slots_[i], stringBuilder);
+                stringBuilder.append('}');
+            }
+            else {
+                stringBuilder.append(emptySlots_[i]);
+            }
+        }
+
+        stringBuilder.append(texts_[slots_.length]);
+    }
+
+    /**
+     * @brief Writes an expression at the end of a given StringBuilder, given the expression of
+     *        the children at each position
+     *
+     * @param stringBuilder
+     *     The StringBuilder
+     * @param arguments
+     *     The expression of the children at each position, or null for a position without
+     *     children
+     */
+    public void write (StringBuilder stringBuilder, String[] arguments) {
+        for (int i = 0; i < slots_.length; i++) {
+            stringBuilder.append(texts_[i]);
+
+            if (arguments[slots_[i]] != null) {
+                stringBuilder.append(openings_[i]).append(arguments[slots_[i]]).append('}');
+            }
+            else {
+                stringBuilder.append(emptySlots_[i]);
+            }
+        }
+
+        stringBuilder.append(texts_[slots_.length]);
+    }
+
+    private final String[] texts_; //!< The constant text before each slot and after the last one
+    private final int[] slots_; //!< The index of the position of each slot
+    private final String[] openings_; //!< The text that opens each slot, like ^{
+    private final String[] emptySlots_; //!< The text of each slot when there are no children at
+                                        //!< its position
+
+}
@@ -1,6 +1,7 @@
 package org.hwer.engine.symbols;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -97,7 +98,10 @@ public abstract class Symbol implements SymbolClass {
             parent_.removeChild(this);
         }
 
-        parent_ = parent;
+        if (parent_ != parent) {
+            parent_ = parent;
+            structureVersion_++;
+        }
     }
 
     /**
@@ -179,6 +183,19 @@ public abstract class Symbol implements SymbolClass {
         return false;
     }
 
+    /**
+     * @brief Getter method for the version of the structure of this Symbol
+     *        The version grows every time the parent or the children of this Symbol change through
+     *        the methods of this class, so two equal versions mean that the place of this Symbol on
+     *        the tree of the equation did not change in between. The previous and the next Symbol
+     *        are not part of the structure.
+     *
+     * @return The version of the structure of this Symbol
+     */
+    public long getStructureVersion () {
+        return structureVersion_;
+    }
+
     /**
      * @brief Processes an argument at a given position for this Symbol
      *        This method concludes on the relation between this Symbol and the given one
@@ -201,6 +218,7 @@ public abstract class Symbol implements SymbolClass {
                     this, symbol, relativePosition)) {
                     if (! children_.get(index).contains(symbol)) {
                         children_.get(index).add(symbol);
+                        structureVersion_++;
                     }
 
                     return ArgumentType.CHILD;
@@ -233,6 +251,7 @@ public abstract class Symbol implements SymbolClass {
             for (int child = 0; child < childrenList.size(); child++) {
                 if (childrenList.get(child) == symbol) {
                     childrenList.remove(symbol);
+                    structureVersion_++;
 
                     if (child > 0 && childrenList.get(child - 1).getNextSymbol() == symbol) {
                         childrenList.get(child - 1).setNextSymbol(null);
@@ -251,30 +270,105 @@ public abstract class Symbol implements SymbolClass {
      * @return The String representation of the equation
      */
     public String buildExpression () {
-        String stringValue = this.toString();
+        StringBuilder stringBuilder = new StringBuilder();
+        this.buildExpression(stringBuilder);
 
-        for (int i = 0; i < childrenPositions_.length; i++) {
-            if (children_.get(i).size() == 0) {
-                continue;
-            }
+        return stringBuilder.toString();
+    }
 
-            String childrenValue = children_.get(i).get(0).buildExpression();
+    /**
+     * @brief Builds the equation beginning from this Symbol at the end of a given StringBuilder
+     *        The string representation of this Symbol is compiled into an ExpressionTemplate the
+     *        first time that this method is called, and the children of this Symbol are written
+     *        into the slots of the template.
+     *
+     * @param stringBuilder
+     *     The StringBuilder
+     */
+    public void buildExpression (StringBuilder stringBuilder) {
+        this.getExpressionTemplate().write(this, stringBuilder);
+    }
 
-            for (int j = 0; j < children_.get(i).size() - 1; j++) {
-                if (children_.get(i).get(j).getNextSymbol() != null) {
-                    childrenValue += children_.get(i).get(j).getNextSymbol().buildExpression();
-                }
-                else {
-                    if (j <= children_.get(i).size() - 2) {
-                        childrenValue += children_.get(i).get(j + 1).buildExpression();
-                    }
-                }
-            }
+    /**
+     * @brief Getter method for the compiled string representation of this Symbol
+     *        The string representation is compiled the first time that this method is called.
+     *
+     * @return The ExpressionTemplate of this Symbol
+     */
+    public ExpressionTemplate getExpressionTemplate () {
+        if (expressionTemplate_ == null) {
+            expressionTemplate_ = new ExpressionTemplate(this, this.toString(), childrenPositions_);
+        }
+
+        return expressionTemplate_;
+    }
 
-            stringValue = stringValue.replace(childrenPositions_[i].toString(), childrenValue);
+    /**
+     * @brief Getter method for the positions where this Symbol accepts children
+     *
+     * @return A copy of the positions where this Symbol accepts children
+     */
+    public ArgumentPosition[] getChildrenPositions () {
+        return Arrays.copyOf(childrenPositions_, childrenPositions_.length);
+    }
+
+    /**
+     * @brief Returns the Symbols that the expression of this Symbol writes at a given position
+     *        These are the children at the position, with each child replaced by the next Symbol
+     *        of the child before it, when there is one.
+     *
+     * @param index
+     *     The index of the position into the children positions of this Symbol
+     *
+     * @return The Symbols in the order that they are written
+     */
+    public List<Symbol> getArgument (int index) {
+        List<Symbol> samePositionChildren = this.getChildren().get(index);
+        List<Symbol> argument = new ArrayList<Symbol>();
+
+        if (samePositionChildren.size() == 0) {
+            return argument;
+        }
+
+        argument.add(samePositionChildren.get(0));
+
+        for (int j = 0; j < samePositionChildren.size() - 1; j++) {
+            if (samePositionChildren.get(j).getNextSymbol() != null) {
+                argument.add(samePositionChildren.get(j).getNextSymbol());
+            }
+            else {
+                argument.add(samePositionChildren.get(j + 1));
+            }
         }
 
-        return (this.clearString(stringValue));
+        return argument;
+    }
+
+    /**
+     * @brief Returns true if this Symbol has children at a given position
+     *
+     * @param index
+     *     The index of the position into the children positions of this Symbol
+     *
+     * @return True if this Symbol has children at the given position
+     */
+    boolean hasArgument (int index) {
+        return children_.get(index).size() > 0;
+    }
+
+    /**
+     * @brief Builds the equation of the children of this Symbol at a given position at the end of
+     *        a given StringBuilder
+     *
+     * @param index
+     *     The index of the position into the children positions of this Symbol
+     * @param stringBuilder
+     *     The StringBuilder
+     */
+    void buildArgument (int index, StringBuilder stringBuilder) {
+        for (Symbol symbol : this.getArgument(index)) {
+            symbol.buildExpression(stringBuilder);
+        }
     }
 
     /**
@@ -486,6 +580,10 @@ public abstract class Symbol implements SymbolClass {
     private Symbol previousSymbol_ = null; //!< The Symbol before this Symbol in an equation
     private Symbol nextSymbol_ = null; //!< The Symbol after this Symbol in an equation
     private final TraceGroup traceGroup_; //!< The TraceGroup of this Symbol
+    private long structureVersion_ = 0; //!< The number of changes of the parent or the children of
+                                        //!< this Symbol
+    private ExpressionTemplate expressionTemplate_ = null; //!< The compiled string representation
+                                                           //!< of this Symbol
 
     protected List<List<Symbol>> children_ = null; //!< The children Symbols of this Symbol
 
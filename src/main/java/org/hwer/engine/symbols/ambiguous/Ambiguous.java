@@ -2,6 +2,7 @@ package org.hwer.engine.symbols.ambiguous;
 
 
 import org.hwer.engine.parsers.grammars.GeometricalGrammar.ArgumentPosition;
+import org.hwer.engine.symbols.ExpressionTemplate;
 import org.hwer.engine.symbols.Symbol;
 import org.hwer.engine.utilities.traces.TraceGroup;
 import org.hwer.engine.symbols.SymbolFactory.Classes;
@@ -156,17 +157,48 @@ public abstract class Ambiguous extends Symbol {
     }
 
     /**
-     * @brief Builds the equation beginning from this Symbol
+     * @brief Builds the equation beginning from this Symbol at the end of a given StringBuilder
      *
-     * @return The String representation of the equation
+     * @param stringBuilder
+     *     The StringBuilder
      */
     @Override
-    public String buildExpression () {
+    public void buildExpression (StringBuilder stringBuilder) {
         if (chosenSymbol_ != this) {
-            return chosenSymbol_.buildExpression();
+            chosenSymbol_.buildExpression(stringBuilder);
         }
         else {
-            return super.buildExpression();
+            super.buildExpression(stringBuilder);
+        }
+    }
+
+    /**
+     * @brief Getter method for the compiled string representation of this Symbol
+     *
+     * @return The ExpressionTemplate of this Symbol
+     */
+    @Override
+    public ExpressionTemplate getExpressionTemplate () {
+        if (chosenSymbol_ != this) {
+            return chosenSymbol_.getExpressionTemplate();
+        }
+        else {
+            return super.getExpressionTemplate();
+        }
+    }
+
+    /**
+     * @brief Getter method for the positions where this Symbol accepts children
+     *
+     * @return The positions where this Symbol accepts children
+     */
+    @Override
+    public ArgumentPosition[] getChildrenPositions () {
+        if (chosenSymbol_ != this) {
+            return chosenSymbol_.getChildrenPositions();
+        }
+        else {
+            return super.getChildrenPositions();
         }
     }
 
@@ -230,6 +262,26 @@ public abstract class Ambiguous extends Symbol {
         return chosenSymbol_ != this && chosenSymbol_.hasChildren();
     }
 
+    /**
+     * @brief Getter method for the version of the structure of this Symbol
+     *        The children of this Symbol are held by the possible Symbol that it chose, so the
+     *        changes of the possible Symbols count as changes of this Symbol too.
+     *
+     * @return The version of the structure of this Symbol
+     */
+    @Override
+    public long getStructureVersion () {
+        long structureVersion = super.getStructureVersion();
+
+        if (possibleSymbols_ != null) {
+            for (Symbol possibleSymbol : possibleSymbols_) {
+                structureVersion += possibleSymbol.getStructureVersion();
+            }
+        }
+
+        return structureVersion;
+    }
+
     /**
      * @brief Returns a string representation of this SymbolClass
      *        The string representation can vary based on the Symbol of this SymbolClass that
@@ -3,11 +3,10 @@ package org.hwer.engine.utilities;
 
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Hashtable;
-import java.util.Iterator;
 
 
 /**
@@ -17,6 +16,8 @@ import java.util.Iterator;
 public class Utilities {
     /**
      * @brief Returns the sorted in ascending order indices of a given array
+     *        The sort is stable, that is, indices of equal values keep their original order. It is
+     *        a bottom-up merge sort on the indices, so it runs in O(n log n) time.
      *
      * @param array
      *     The array
@@ -25,27 +26,41 @@ public class Utilities {
      */
     public static int[] sortArray (double[] array) {
         int length = array.length;
-        double[] arrayClone = new double[length];
-
-        System.arraycopy(array, 0, arrayClone, 0, length);
 
         int[] indices = new int[length];
         for (int i = 0; i < length; i++) {
             indices[i] = i;
         }
 
-        for (int i = 0; i < length; i++) {
-            for (int j = 1; j < length - i; j++) {
-                if (arrayClone[j - 1] > arrayClone[j]) {
-                    double temp = arrayClone[j - 1];
-                    arrayClone[j - 1] = arrayClone[j];
-                    arrayClone[j] = temp;
-
-                    int tempIndex = indices[j - 1];
-                    indices[j - 1] = indices[j];
-                    indices[j] = tempIndex;
+        int[] buffer = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+
+                int left = start;
+                int right = middle;
+                int index = start;
+                while (left < middle && right < end) {
+                    // Take from the right run only when strictly smaller to keep the sort stable.
+                    if (array[indices[left]] > array[indices[right]]) {
+                        buffer[index++] = indices[right++];
+                    }
+                    else {
+                        buffer[index++] = indices[left++];
+                    }
+                }
+                while (left < middle) {
+                    buffer[index++] = indices[left++];
+                }
+                while (right < end) {
+                    buffer[index++] = indices[right++];
                 }
             }
+
+            int[] temp = indices;
+            indices = buffer;
+            buffer = temp;
         }
 
         return indices;
@@ -146,6 +161,69 @@ public class Utilities {
         return (Utilities.getContext(verticesInt, connections));
     }
 
+    /**
+     * @brief Returns the context indices of the given indices based on the adjacency lists of a
+     *        graph
+     *
+     * @param vertices
+     *     The vertices the context of which should be found
+     * @param adjacency
+     *     The neighbors of each vertex of the graph
+     *
+     * @return The context indices of the given indices based on the adjacency lists of the graph
+     *
+     * @sa getContext
+     */
+    public static int[] getContext (int[] vertices, int[][] adjacency) {
+        HashSet<Integer> uniqueContext = new HashSet<Integer>();
+        for (int vertex : vertices) {
+            for (int neighbor : adjacency[vertex]) {
+                // Don't add the given vertices to context.
+                if (! Utilities.arrayContains(vertices, neighbor)) {
+                    uniqueContext.add(neighbor);
+                }
+            }
+        }
+
+        // Convert the hash set to an array of integers.
+        int[] context = new int[uniqueContext.size()];
+        int index = 0;
+        for (Integer anUniqueContext : uniqueContext) {
+            context[index] = anUniqueContext;
+            index++;
+        }
+
+        return context;
+    }
+
+    /**
+     * @brief Converts the connections of a graph to adjacency lists
+     *        The diagonal of the connections matrix is ignored.
+     *
+     * @param connections
+     *     The connections between the vertices
+     *
+     * @return The neighbors of each vertex, in ascending order
+     */
+    public static int[][] toAdjacencyLists (boolean[][] connections) {
+        int numberOfVertices = connections.length;
+        int[][] adjacency = new int[numberOfVertices][];
+
+        int[] neighbors = new int[numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            int numberOfNeighbors = 0;
+            for (int j = 0; j < numberOfVertices; j++) {
+                if (i != j && connections[i][j]) {
+                    neighbors[numberOfNeighbors++] = j;
+                }
+            }
+
+            adjacency[i] = Arrays.copyOf(neighbors, numberOfNeighbors);
+        }
+
+        return adjacency;
+    }
+
     /**
      * @brief Returns unique paths of given length on a graph
      *        The paths can be forced to comply with some checks.
@@ -161,74 +239,262 @@ public class Utilities {
      */
     public static int[][] findUniquePaths (boolean[][] connections, int maxPathLength,
                                            PathExtensionCheck... checks) {
-        Hashtable<Integer, ArrayList<Integer>> hashTable = new Hashtable<Integer, ArrayList<Integer>>();
-        int hashTableOldSize;
-
-        // Add every single vertex to the hash table.
-        for (int vertex = 0; vertex < connections.length; vertex++) {
-            ArrayList<Integer> path = new ArrayList<Integer>();
-            path.add(vertex);
+        return (Utilities.findUniquePaths(Utilities.toAdjacencyLists(connections), maxPathLength,
+            checks));
+    }
 
-            hashTable.put(pathHashKey(path), path);
-        }
+    /**
+     * @brief Returns unique paths of given length on a graph given by adjacency lists
+     *        A path grows by any neighbor of any of its vertices, so the paths are the connected
+     *        groups of vertices of the graph. Two paths are the same if they have the same
+     *        vertices. The paths are enumerated level by level. Each level is a flat array of
+     *        vertices, and duplicates are removed by a hash table of vertex bit masks, so there is
+     *        no limit on the number of vertices of the graph. The paths are returned by ascending
+     *        length and, within each length, in the order they are first found.
+     *
+     * @param adjacency
+     *     The neighbors of each vertex of the graph
+     * @param maxPathLength
+     *     The maximum length of the paths
+     * @param checks
+     *     The checks that every path must comply with in order to be chosen
+     *
+     * @return The unique paths of given length on the graph
+     *
+     * @sa findUniquePaths
+     */
+    public static int[][] findUniquePaths (int[][] adjacency, int maxPathLength,
+                                           PathExtensionCheck... checks) {
+        int numberOfVertices = adjacency.length;
+        int numberOfWords = Math.max(1, (numberOfVertices + 63) >>> 6);
 
-        int currentPathLength = 1;
-        if (maxPathLength > currentPathLength) {
-            do {
-                Iterator<ArrayList<Integer>> existingPathsIterator = hashTable.values().iterator();
+        ArrayList<int[]> uniquePaths = new ArrayList<int[]>();
 
-                // Find all possible new paths(even duplicates).
-                ArrayList<ArrayList<Integer>> newPaths = new ArrayList<ArrayList<Integer>>();
-                while (existingPathsIterator.hasNext()) {
-                    ArrayList<Integer> currentPath = existingPathsIterator.next();
+        // Every single vertex is a path.
+        PathTable frontier = new PathTable(1, numberOfWords);
+        long[] mask = new long[numberOfWords];
+        for (int vertex = 0; vertex < numberOfVertices; vertex++) {
+            mask[vertex >>> 6] = 1L << vertex;
+            frontier.add(new int[] {vertex}, mask);
+            mask[vertex >>> 6] = 0;
 
-                    int[] context = Utilities.getContext(currentPath, connections);
+            uniquePaths.add(new int[] {vertex});
+        }
 
-                    for (int contextVertex : context) {
-                        ArrayList<Integer> currentPathClone = new ArrayList<Integer>(currentPath);
-                        currentPathClone.add(contextVertex);
+        // The last path that each vertex was found next to, so that a vertex next to many
+        // vertices of a path is tried only once.
+        int[] lastSeen = new int[numberOfVertices];
+        Arrays.fill(lastSeen, - 1);
+        int pathIndex = 0;
+
+        int pathLength = 1;
+        while (pathLength < maxPathLength && frontier.size() > 0) {
+            PathTable nextFrontier = new PathTable(pathLength + 1, numberOfWords);
+            int[] path = new int[pathLength + 1];
+
+            for (int i = 0; i < frontier.size(); i++) {
+                frontier.copyPath(i, path);
+                frontier.copyMask(i, mask);
+
+                for (int j = 0; j < pathLength; j++) {
+                    for (int neighbor : adjacency[path[j]]) {
+                        if (lastSeen[neighbor] == pathIndex ||
+                            (mask[neighbor >>> 6] & (1L << neighbor)) != 0) {
+                            continue;
+                        }
+                        lastSeen[neighbor] = pathIndex;
+
+                        mask[neighbor >>> 6] |= 1L << neighbor;
+                        path[pathLength] = neighbor;
+
+                        if (! nextFrontier.contains(mask)) {
+                            boolean checksPassed = true;
+                            for (PathExtensionCheck check : checks) {
+                                if (! check.check(path)) {
+                                    checksPassed = false;
+                                    break;
+                                }
+                            }
 
-                        boolean checksPassed = true;
-                        for (PathExtensionCheck check : checks) {
-                            if (! check.check(currentPathClone)) {
-                                checksPassed = false;
-                                break;
+                            if (checksPassed) {
+                                nextFrontier.add(path, mask);
+                                uniquePaths.add(path.clone());
                             }
                         }
 
-                        if (checksPassed) {
-                            newPaths.add(currentPathClone);
-                        }
+                        mask[neighbor >>> 6] &= ~ (1L << neighbor);
                     }
                 }
 
-                hashTableOldSize = hashTable.size();
+                pathIndex++;
+            }
 
-                // Add new paths to the hash table to eliminate duplicates.
-                for (ArrayList<Integer> newPath : newPaths) {
-                    hashTable.put(Utilities.pathHashKey(newPath), newPath);
-                }
+            frontier = nextFrontier;
+            pathLength++;
+        }
 
-                currentPathLength++;
-            } while (hashTableOldSize != hashTable.size() && currentPathLength < maxPathLength);
+        return uniquePaths.toArray(new int[uniquePaths.size()][]);
+    }
+
+    /**
+     * @class PathTable
+     * @brief A hash set of paths of the same length, keyed by the bit mask of their vertices
+     *        The paths and their masks are kept in flat primitive arrays. The table uses open
+     *        addressing with linear probing.
+     */
+    private static class PathTable {
+        /**
+         * @brief Constructor
+         *
+         * @param pathLength
+         *     The length of the paths of this PathTable
+         * @param numberOfWords
+         *     The number of longs in the bit mask of a path
+         */
+        PathTable (int pathLength, int numberOfWords) {
+            pathLength_ = pathLength;
+            numberOfWords_ = numberOfWords;
+
+            paths_ = new int[INITIAL_CAPACITY * pathLength];
+            masks_ = new long[INITIAL_CAPACITY * numberOfWords];
+            slots_ = new int[2 * INITIAL_CAPACITY];
         }
 
-        // Convert the hash table to an array of arrays of integers.
-        int[][] uniquePaths = new int[hashTable.size()][];
-        int uniquePathsIndex = 0;
+        /**
+         * @brief Returns true if a path with the vertices of the given mask is in this PathTable
+         *
+         * @param mask
+         *     The bit mask of the vertices of the path
+         *
+         * @return True if a path with the vertices of the given mask is in this PathTable
+         */
+        boolean contains (long[] mask) {
+            return (slots_[this.findSlot(mask)] != 0);
+        }
 
-        for (ArrayList<Integer> path : hashTable.values()) {
-            int pathSize = path.size();
+        /**
+         * @brief Adds a path to this PathTable
+         *        The path is not added if a path with the same vertices is already there.
+         *
+         * @param path
+         *     The path, of which only the first pathLength_ vertices are used
+         * @param mask
+         *     The bit mask of the vertices of the path
+         */
+        void add (int[] path, long[] mask) {
+            int slot = this.findSlot(mask);
+            if (slots_[slot] != 0) {
+                return;
+            }
 
-            uniquePaths[uniquePathsIndex] = new int[pathSize];
-            for (int vertex = 0; vertex < pathSize; vertex++) {
-                uniquePaths[uniquePathsIndex][vertex] = path.get(vertex);
+            if (size_ * pathLength_ == paths_.length) {
+                paths_ = Arrays.copyOf(paths_, 2 * paths_.length);
+                masks_ = Arrays.copyOf(masks_, 2 * masks_.length);
+            }
+            System.arraycopy(path, 0, paths_, size_ * pathLength_, pathLength_);
+            System.arraycopy(mask, 0, masks_, size_ * numberOfWords_, numberOfWords_);
+            size_++;
+            slots_[slot] = size_;
+
+            // Keep the table at most half full.
+            if (2 * size_ > slots_.length) {
+                slots_ = new int[2 * slots_.length];
+                for (int i = 0; i < size_; i++) {
+                    long[] existingMask = new long[numberOfWords_];
+                    this.copyMask(i, existingMask);
+
+                    slots_[this.findSlot(existingMask)] = i + 1;
+                }
+            }
+        }
+
+        /**
+         * @brief Returns the slot of the given mask, or the empty slot where it would be added
+         *
+         * @param mask
+         *     The bit mask
+         *
+         * @return The slot of the given mask
+         */
+        private int findSlot (long[] mask) {
+            long hash = 0;
+            for (long word : mask) {
+                hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+            }
+
+            int tableMask = slots_.length - 1;
+            int slot = (int) (hash ^ (hash >>> 32)) & tableMask;
+            while (slots_[slot] != 0 && ! this.maskEquals(slots_[slot] - 1, mask)) {
+                slot = (slot + 1) & tableMask;
             }
 
-            uniquePathsIndex++;
+            return slot;
         }
 
-        return uniquePaths;
+        /**
+         * @brief Returns true if the mask of a path equals a given mask
+         *
+         * @param index
+         *     The index of the path
+         * @param mask
+         *     The bit mask
+         *
+         * @return True if the mask of the path equals the given mask
+         */
+        private boolean maskEquals (int index, long[] mask) {
+            int offset = index * numberOfWords_;
+            for (int i = 0; i < numberOfWords_; i++) {
+                if (masks_[offset + i] != mask[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @brief Copies a path of this PathTable to an array
+         *
+         * @param index
+         *     The index of the path
+         * @param path
+         *     The array to copy the path to
+         */
+        void copyPath (int index, int[] path) {
+            System.arraycopy(paths_, index * pathLength_, path, 0, pathLength_);
+        }
+
+        /**
+         * @brief Copies the mask of a path of this PathTable to an array
+         *
+         * @param index
+         *     The index of the path
+         * @param mask
+         *     The array to copy the mask to
+         */
+        void copyMask (int index, long[] mask) {
+            System.arraycopy(masks_, index * numberOfWords_, mask, 0, numberOfWords_);
+        }
+
+        /**
+         * @brief Getter method for the number of paths on this PathTable
+         *
+         * @return The number of paths on this PathTable
+         */
+        int size () {
+            return size_;
+        }
+
+        private static final int INITIAL_CAPACITY = 16; //!< The initial number of paths
+
+        private final int pathLength_; //!< The length of the paths
+        private final int numberOfWords_; //!< The number of longs in the mask of a path
+
+        private int[] paths_; //!< The vertices of the paths, one path after the other
+        private long[] masks_; //!< The bit masks of the paths, one mask after the other
+        private int[] slots_; //!< The index plus one of the path on each slot, or zero if empty
+        private int size_ = 0; //!< The number of paths
+
     }
 
     /**
@@ -242,54 +508,34 @@ public class Utilities {
          *  @brief The check that will be performed to decide whether the given path is valid or not
          *
          *  @param path
-         *      The path that should be checked for validity
+         *      The path that should be checked for validity. The array must not be modified.
          *
          *  @return True if the path is valid
          */
-        boolean check(ArrayList<Integer> path);
+        boolean check(int[] path);
 
     }
 
-
     /**
-     * @brief Returns the unique hash key of the given path
+     * @brief Returns a key that identifies a path by its vertices
+     *        Two paths get equal keys if and only if they have the same vertices, whatever the
+     *        number of vertices of the graph.
      *
      * @param path
      *     The path
      *
-     * @return The unique hash key of the given path
+     * @return The key of the given path
      */
-    public static int pathHashKey (int[] path) {
-        int key = 0;
+    public static BitSet pathKey (int[] path) {
+        BitSet key = new BitSet();
 
         for (int vertex : path) {
-            key ^= (int) (Math.pow(2, vertex));
+            key.set(vertex);
         }
 
         return key;
     }
 
-    /**
-     * @brief Returns the unique hash key of the given path
-     *
-     * @param path
-     *     The path
-     *
-     * @return The unique hash key of the given path
-     *
-     * @sa pathHashKey
-     */
-    public static int pathHashKey (ArrayList<Integer> path) {
-        int numberOfVertices = path.size();
-
-        int[] array = new int[numberOfVertices];
-        for (int i = 0; i < numberOfVertices; i++) {
-            array[i] = path.get(i);
-        }
-
-        return pathHashKey(array);
-    }
-
     /**
      * @brief Returns the position of the maximum value inside an array
      *
@@ -456,11 +702,11 @@ public class Utilities {
         int[][] array = new int[array1.length + array2.length][];
 
         for (int i = 0; i < array1.length; i++) {
-            System.arraycopy(array1[i], 0, array[i], 0, array1[i].length);
+            array[i] = array1[i].clone();
         }
 
         for (int i = 0; i < array2.length; i++) {
-            System.arraycopy(array2[i], 0, array[i], array1.length, array2[i].length);
+            array[array1.length + i] = array2[i].clone();
         }
 
         return array;
@@ -0,0 +1,360 @@
+package org.hwer.engine.utilities.math;
+
+
+/**
+ * @class KDTree
+ * @brief A static, two dimensional k-d tree over a set of points
+ *        Every point may carry a label. Nearest neighbor queries skip the points that have the
+ *        same label as the query point, which is what Boruvka's algorithm needs to find the
+ *        cheapest edge leaving each connected component. Subtrees whose points all have the same
+ *        label are pruned as a whole.
+ */
+public class KDTree {
+    /**
+     * @brief Constructor
+     *
+     * @param x
+     *     The abscissas of the points
+     * @param y
+     *     The ordinates of the points
+     */
+    public KDTree (double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("Abscissas and ordinates differ in length");
+        }
+
+        x_ = x.clone();
+        y_ = y.clone();
+
+        int numberOfPoints = x_.length;
+        points_ = new int[numberOfPoints];
+        for (int i = 0; i < numberOfPoints; i++) {
+            points_[i] = i;
+        }
+        labels_ = new int[numberOfPoints];
+
+        // Only ranges of more than LEAF_SIZE points are split in halves, so every leaf holds at
+        // least (LEAF_SIZE + 1) / 2 points and there are less than twice as many nodes as leaves.
+        int maximumNumberOfNodes = 2 * (numberOfPoints / ((LEAF_SIZE + 1) / 2)) + 1;
+        nodeStart_ = new int[maximumNumberOfNodes];
+        nodeEnd_ = new int[maximumNumberOfNodes];
+        nodeLeft_ = new int[maximumNumberOfNodes];
+        nodeRight_ = new int[maximumNumberOfNodes];
+        nodeMinX_ = new double[maximumNumberOfNodes];
+        nodeMaxX_ = new double[maximumNumberOfNodes];
+        nodeMinY_ = new double[maximumNumberOfNodes];
+        nodeMaxY_ = new double[maximumNumberOfNodes];
+        nodeLabel_ = new int[maximumNumberOfNodes];
+
+        if (numberOfPoints > 0) {
+            this.build(0, numberOfPoints);
+        }
+    }
+
+    /**
+     * @brief Builds the subtree that holds the points in the given range of points_
+     *
+     * @param start
+     *     The first position of the range
+     * @param end
+     *     The position after the last position of the range
+     *
+     * @return The index of the root node of the subtree
+     */
+    private int build (int start, int end) {
+        int node = numberOfNodes_++;
+
+        nodeStart_[node] = start;
+        nodeEnd_[node] = end;
+        nodeLeft_[node] = - 1;
+        nodeRight_[node] = - 1;
+
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            minX = Math.min(minX, x_[points_[i]]);
+            maxX = Math.max(maxX, x_[points_[i]]);
+            minY = Math.min(minY, y_[points_[i]]);
+            maxY = Math.max(maxY, y_[points_[i]]);
+        }
+        nodeMinX_[node] = minX;
+        nodeMaxX_[node] = maxX;
+        nodeMinY_[node] = minY;
+        nodeMaxY_[node] = maxY;
+
+        if (end - start > LEAF_SIZE) {
+            // Split the widest dimension on the median.
+            double[] coordinates = (maxX - minX >= maxY - minY) ? x_ : y_;
+            int middle = (start + end) >>> 1;
+            this.select(coordinates, start, end, middle);
+
+            nodeLeft_[node] = this.build(start, middle);
+            nodeRight_[node] = this.build(middle, end);
+        }
+
+        return node;
+    }
+
+    /**
+     * @brief Partially sorts a range of points_ so that the given position holds the point that
+     *        would be there if the range were sorted by the given coordinates
+     *
+     * @param coordinates
+     *     The coordinates to sort by
+     * @param start
+     *     The first position of the range
+     * @param end
+     *     The position after the last position of the range
+     * @param position
+     *     The position to be filled
+     */
+    private void select (double[] coordinates, int start, int end, int position) {
+        int low = start;
+        int high = end - 1;
+
+        while (low < high) {
+            double pivot = coordinates[points_[(low + high) >>> 1]];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinates[points_[i]] < pivot) {
+                    i++;
+                }
+                while (coordinates[points_[j]] > pivot) {
+                    j--;
+                }
+
+                if (i <= j) {
+                    int temp = points_[i];
+                    points_[i] = points_[j];
+                    points_[j] = temp;
+
+                    i++;
+                    j--;
+                }
+            }
+
+            if (position <= j) {
+                high = j;
+            }
+            else if (position >= i) {
+                low = i;
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @brief Sets the labels of the points
+     *        A node whose points all share the same label records that label so that queries can
+     *        skip it.
+     *
+     * @param labels
+     *     The label of each point
+     */
+    public void setLabels (int[] labels) {
+        System.arraycopy(labels, 0, labels_, 0, labels_.length);
+
+        // Children are always created after their parent, so a reverse pass is bottom-up.
+        for (int node = numberOfNodes_ - 1; node >= 0; node--) {
+            if (nodeLeft_[node] < 0) {
+                int label = labels_[points_[nodeStart_[node]]];
+                for (int i = nodeStart_[node] + 1; i < nodeEnd_[node]; i++) {
+                    if (labels_[points_[i]] != label) {
+                        label = MIXED;
+                        break;
+                    }
+                }
+
+                nodeLabel_[node] = label;
+            }
+            else if (nodeLabel_[nodeLeft_[node]] == nodeLabel_[nodeRight_[node]]) {
+                nodeLabel_[node] = nodeLabel_[nodeLeft_[node]];
+            }
+            else {
+                nodeLabel_[node] = MIXED;
+            }
+        }
+    }
+
+    /**
+     * @brief Finds the nearest point to a given point that has a different label
+     *        Distances are compared as (distance, smaller index, greater index) so that the result
+     *        does not depend on the shape of the tree. Only candidates that precede the given
+     *        bound in that order are considered.
+     *
+     * @param point
+     *     The index of the query point
+     * @param bound
+     *     The distance, smaller index and greater index of the best edge known so far. The array
+     *     is updated in place when a better candidate is found; the distance is stored as the
+     *     first element and the indices as the second and third.
+     *
+     * @return The index of the nearest point with a different label, or -1 if no point precedes
+     *         the given bound
+     */
+    public int findNearest (int point, double[] bound) {
+        if (numberOfNodes_ == 0) {
+            return - 1;
+        }
+
+        return this.findNearest(0, point, bound, - 1);
+    }
+
+    /**
+     * @brief Recursive step of findNearest
+     *
+     * @param node
+     *     The node to search
+     * @param point
+     *     The index of the query point
+     * @param bound
+     *     The best edge known so far
+     * @param nearest
+     *     The nearest point found so far
+     *
+     * @return The nearest point found after searching the given node
+     */
+    private int findNearest (int node, int point, double[] bound, int nearest) {
+        int label = labels_[point];
+        if (nodeLabel_[node] == label) {
+            return nearest;
+        }
+
+        if (this.lowerBound(node, point) > bound[0]) {
+            return nearest;
+        }
+
+        if (nodeLeft_[node] < 0) {
+            for (int i = nodeStart_[node]; i < nodeEnd_[node]; i++) {
+                int candidate = points_[i];
+                if (labels_[candidate] == label) {
+                    continue;
+                }
+
+                double distance = this.distance(point, candidate);
+                int smaller = Math.min(point, candidate);
+                int greater = Math.max(point, candidate);
+
+                if (KDTree.precedes(distance, smaller, greater, bound)) {
+                    bound[0] = distance;
+                    bound[1] = smaller;
+                    bound[2] = greater;
+
+                    nearest = candidate;
+                }
+            }
+
+            return nearest;
+        }
+
+        // Visit the closer child first to shrink the bound early.
+        int first = nodeLeft_[node];
+        int second = nodeRight_[node];
+        if (this.lowerBound(second, point) < this.lowerBound(first, point)) {
+            first = nodeRight_[node];
+            second = nodeLeft_[node];
+        }
+
+        nearest = this.findNearest(first, point, bound, nearest);
+        return this.findNearest(second, point, bound, nearest);
+    }
+
+    /**
+     * @brief Returns true if the edge (distance, smaller, greater) comes before the given bound
+     *
+     * @param distance
+     *     The length of the edge
+     * @param smaller
+     *     The smaller index of the vertices of the edge
+     * @param greater
+     *     The greater index of the vertices of the edge
+     * @param bound
+     *     The distance, smaller index and greater index of the edge to compare with
+     *
+     * @return True if the given edge comes before the given bound
+     */
+    public static boolean precedes (double distance, int smaller, int greater, double[] bound) {
+        if (distance != bound[0]) {
+            return (distance < bound[0]);
+        }
+        if (smaller != bound[1]) {
+            return (smaller < bound[1]);
+        }
+
+        return (greater < bound[2]);
+    }
+
+    /**
+     * @brief Returns the distance between two points
+     *        It is computed exactly like Point.distance so that both give bit-identical results.
+     *
+     * @param point1
+     *     The index of the first point
+     * @param point2
+     *     The index of the second point
+     *
+     * @return The distance between the two points
+     */
+    public double distance (int point1, int point2) {
+        return Math.sqrt(Math.pow(x_[point1] - x_[point2], 2) +
+            Math.pow(y_[point1] - y_[point2], 2));
+    }
+
+    /**
+     * @brief Returns a lower bound of the distance between a point and any point of a node
+     *        The bound never exceeds the result of distance for a point of the node, since it is
+     *        computed with the same operations on coordinates that are no further apart.
+     *
+     * @param node
+     *     The node
+     * @param point
+     *     The index of the point
+     *
+     * @return A lower bound of the distance between the point and the points of the node
+     */
+    private double lowerBound (int node, int point) {
+        double x = x_[point];
+        double y = y_[point];
+
+        double closestX = Math.min(Math.max(x, nodeMinX_[node]), nodeMaxX_[node]);
+        double closestY = Math.min(Math.max(y, nodeMinY_[node]), nodeMaxY_[node]);
+
+        return Math.sqrt(Math.pow(x - closestX, 2) + Math.pow(y - closestY, 2));
+    }
+
+    /**
+     * @brief Getter method for the number of points on this KDTree
+     *
+     * @return The number of points on this KDTree
+     */
+    public int size () {
+        return x_.length;
+    }
+
+    private static final int LEAF_SIZE = 8; //!< The maximum number of points on a leaf
+    private static final int MIXED = - 1; //!< The label of a node with points of many labels
+
+    private final double[] x_; //!< The abscissas of the points
+    private final double[] y_; //!< The ordinates of the points
+    private final int[] labels_; //!< The label of each point
+
+    private final int[] points_; //!< The points ordered so that each node holds a range of them
+
+    private int numberOfNodes_ = 0; //!< The number of nodes on this KDTree
+    private final int[] nodeStart_; //!< The first position on points_ of each node
+    private final int[] nodeEnd_; //!< The position after the last on points_ of each node
+    private final int[] nodeLeft_; //!< The left child of each node, or -1 for leaves
+    private final int[] nodeRight_; //!< The right child of each node, or -1 for leaves
+    private final double[] nodeMinX_; //!< The minimum abscissa of each node
+    private final double[] nodeMaxX_; //!< The maximum abscissa of each node
+    private final double[] nodeMinY_; //!< The minimum ordinate of each node
+    private final double[] nodeMaxY_; //!< The maximum ordinate of each node
+    private final int[] nodeLabel_; //!< The common label of the points of each node, or MIXED
+
+}
@@ -2,7 +2,7 @@ package org.hwer.engine.utilities.math;
 
 
 import java.lang.IndexOutOfBoundsException;
-import java.util.HashSet;
+import java.util.Arrays;
 
 import org.hwer.engine.utilities.Utilities;
 
@@ -27,62 +27,337 @@ public class MinimumSpanningTree {
      *     The connections between the vertices of the MinimumSpanningTree
      */
     public MinimumSpanningTree (boolean[][] connections) {
-        int numberOfVertices = connections.length;
-        connections_ = new boolean[numberOfVertices][numberOfVertices];
+        this(Utilities.toAdjacencyLists(connections));
+    }
+
+    /**
+     * @brief Constructor
+     *
+     * @param adjacency
+     *     The neighbors of each vertex of the MinimumSpanningTree
+     */
+    public MinimumSpanningTree (int[][] adjacency) {
+        int numberOfVertices = adjacency.length;
+        adjacency_ = new int[numberOfVertices][];
 
         for (int i = 0; i < numberOfVertices; i++) {
-            System.arraycopy(connections[i], 0, connections_[i], 0, numberOfVertices);
+            adjacency_[i] = adjacency[i].clone();
         }
     }
 
     /**
      * @brief Creates a MinimumSpanningTree using Kruskal's algorithm
+     *        The edges are visited in ascending order of weight, with ties broken by their index,
+     *        and the connected components are tracked with a disjoint-set forest. The whole method
+     *        runs in O(E log E) time where E is the number of edges.
      *
      * @param edgeWeights
-     *     The weights of the edges of the graph
+     *     The weights of the edges of the graph, in row-major order of the upper triangular part
+     *     of the connections matrix, excluding the main diagonal
      * @param numberOfVertices
      *     The number of vertices on the graph
      *
      * @return The created MinimumSpanningTree
      */
     public static MinimumSpanningTree kruskal (double[] edgeWeights, int numberOfVertices) {
-        if (numberOfVertices == 0) {
-            return (new MinimumSpanningTree(new boolean[0][0]));
+        int numberOfEdges = edgeWeights.length;
+
+        // Find the vertices of every edge once, instead of once per visited edge.
+        int[] edgeRows = new int[numberOfEdges];
+        int[] edgeColumns = new int[numberOfEdges];
+        int edge = 0;
+        for (int row = 0; row < numberOfVertices && edge < numberOfEdges; row++) {
+            for (int column = row + 1; column < numberOfVertices && edge < numberOfEdges;
+                 column++) {
+                edgeRows[edge] = row;
+                edgeColumns[edge] = column;
+                edge++;
+            }
+        }
+
+        return (MinimumSpanningTree.kruskal(edgeWeights, edgeRows, edgeColumns,
+            numberOfVertices));
+    }
+
+    /**
+     * @brief Creates a MinimumSpanningTree using Kruskal's algorithm on a list of edges
+     *
+     * @param edgeWeights
+     *     The weights of the edges
+     * @param edgeRows
+     *     The first vertex of each edge
+     * @param edgeColumns
+     *     The second vertex of each edge
+     * @param numberOfVertices
+     *     The number of vertices on the graph
+     *
+     * @return The created MinimumSpanningTree
+     */
+    private static MinimumSpanningTree kruskal (double[] edgeWeights, int[] edgeRows,
+                                                int[] edgeColumns, int numberOfVertices) {
+        int numberOfEdges = edgeWeights.length;
+
+        int[] sortedIndices = Utilities.sortArray(edgeWeights);
+
+        DisjointSets components = new DisjointSets(numberOfVertices);
+        int[] degrees = new int[numberOfVertices];
+        int[] treeRows = new int[Math.max(numberOfVertices - 1, 0)];
+        int[] treeColumns = new int[treeRows.length];
+        int numberOfTreeEdges = 0;
+
+        for (int i = 0; i < numberOfEdges && numberOfTreeEdges < treeRows.length; i++) {
+            int row = edgeRows[sortedIndices[i]];
+            int column = edgeColumns[sortedIndices[i]];
+
+            if (components.union(row, column)) {
+                treeRows[numberOfTreeEdges] = row;
+                treeColumns[numberOfTreeEdges] = column;
+                numberOfTreeEdges++;
+
+                degrees[row]++;
+                degrees[column]++;
+            }
         }
 
-        boolean[][] connections = new boolean[numberOfVertices][numberOfVertices];
-        boolean[][] scope = new boolean[numberOfVertices][numberOfVertices];
+        return (MinimumSpanningTree.fromEdges(degrees, treeRows, treeColumns, numberOfTreeEdges));
+    }
+
+    /**
+     * @brief Creates the Euclidean MinimumSpanningTree of a set of points using Boruvka's algorithm
+     *        The points are indexed by a KDTree, so the n(n - 1) / 2 distances between them are
+     *        never computed or stored. In every round, the cheapest edge leaving each connected
+     *        component is found with a nearest neighbor query per point and all those edges are
+     *        added to the tree. Edges are ordered by (distance, smaller vertex, greater vertex),
+     *        which is the order kruskal visits them in when given the row-major distances computed
+     *        with Point.distance. Under a strict total order the minimum spanning tree is unique,
+     *        so both methods return the same tree.
+     *
+     * @param x
+     *     The abscissas of the points
+     * @param y
+     *     The ordinates of the points
+     *
+     * @return The created MinimumSpanningTree
+     */
+    public static MinimumSpanningTree euclidean (double[] x, double[] y) {
+        return (MinimumSpanningTree.euclidean(x, y, new int[0], new int[0]));
+    }
+
+    /**
+     * @brief Creates the Euclidean MinimumSpanningTree of a set of points using Boruvka's
+     *        algorithm, starting from a forest of edges that are known to be on the tree
+     *
+     * @param x
+     *     The abscissas of the points
+     * @param y
+     *     The ordinates of the points
+     * @param forestRows
+     *     The first vertex of each edge of the forest
+     * @param forestColumns
+     *     The second vertex of each edge of the forest
+     *
+     * @return The created MinimumSpanningTree
+     */
+    private static MinimumSpanningTree euclidean (double[] x, double[] y, int[] forestRows,
+                                                  int[] forestColumns) {
+        int numberOfVertices = x.length;
+
+        KDTree kdTree = new KDTree(x, y);
+        DisjointSets components = new DisjointSets(numberOfVertices);
+        int[] degrees = new int[numberOfVertices];
+        int[] treeRows = new int[Math.max(numberOfVertices - 1, 0)];
+        int[] treeColumns = new int[treeRows.length];
+        int numberOfTreeEdges = 0;
+
+        for (int i = 0; i < forestRows.length; i++) {
+            if (components.union(forestRows[i], forestColumns[i])) {
+                treeRows[numberOfTreeEdges] = forestRows[i];
+                treeColumns[numberOfTreeEdges] = forestColumns[i];
+                numberOfTreeEdges++;
+
+                degrees[forestRows[i]]++;
+                degrees[forestColumns[i]]++;
+            }
+        }
+
+        int[] labels = new int[numberOfVertices];
+        double[][] cheapestEdges = new double[numberOfVertices][3];
+        while (numberOfTreeEdges < treeRows.length) {
+            for (int i = 0; i < numberOfVertices; i++) {
+                labels[i] = components.find(i);
+
+                cheapestEdges[i][0] = Double.POSITIVE_INFINITY;
+                cheapestEdges[i][1] = Integer.MAX_VALUE;
+                cheapestEdges[i][2] = Integer.MAX_VALUE;
+            }
+            kdTree.setLabels(labels);
+
+            // The cheapest edge of each component is kept on the entry of its representative and
+            // bounds the queries of all the other points of the component.
+            for (int i = 0; i < numberOfVertices; i++) {
+                kdTree.findNearest(i, cheapestEdges[labels[i]]);
+            }
+
+            int numberOfOldTreeEdges = numberOfTreeEdges;
+            for (int i = 0; i < numberOfVertices; i++) {
+                if (labels[i] != i || cheapestEdges[i][0] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                int row = (int) cheapestEdges[i][1];
+                int column = (int) cheapestEdges[i][2];
+
+                // Two components may have chosen the same edge.
+                if (components.union(row, column)) {
+                    treeRows[numberOfTreeEdges] = row;
+                    treeColumns[numberOfTreeEdges] = column;
+                    numberOfTreeEdges++;
+
+                    degrees[row]++;
+                    degrees[column]++;
+                }
+            }
+
+            if (numberOfTreeEdges == numberOfOldTreeEdges) {
+                // Only possible with NaN coordinates, which no edge can be compared with.
+                break;
+            }
+        }
+
+        return (MinimumSpanningTree.fromEdges(degrees, treeRows, treeColumns, numberOfTreeEdges));
+    }
+
+    /**
+     * @brief Creates a MinimumSpanningTree from the list of its edges
+     *
+     * @param degrees
+     *     The number of edges of each vertex. The array is used as scratch space.
+     * @param rows
+     *     The first vertex of each edge
+     * @param columns
+     *     The second vertex of each edge
+     * @param numberOfEdges
+     *     The number of edges
+     *
+     * @return The created MinimumSpanningTree
+     */
+    private static MinimumSpanningTree fromEdges (int[] degrees, int[] rows, int[] columns,
+                                                  int numberOfEdges) {
+        int numberOfVertices = degrees.length;
+
+        int[][] adjacency = new int[numberOfVertices][];
         for (int i = 0; i < numberOfVertices; i++) {
-            for (int j = 0; j < numberOfVertices; j++) {
-                connections[i][j] = (i == j);
-                scope[i][j] = (i == j);
+            adjacency[i] = new int[degrees[i]];
+            degrees[i] = 0;
+        }
+        for (int i = 0; i < numberOfEdges; i++) {
+            adjacency[rows[i]][degrees[rows[i]]++] = columns[i];
+            adjacency[columns[i]][degrees[columns[i]]++] = rows[i];
+        }
+        for (int[] neighbors : adjacency) {
+            Arrays.sort(neighbors);
+        }
+
+        return (new MinimumSpanningTree(adjacency));
+    }
+
+    /**
+     * @brief Returns the Euclidean minimum spanning tree after a point is added
+     *        This tree must be the Euclidean minimum spanning tree of the points but the last.
+     *        Every edge of the new tree is either an edge of this tree or an edge of the new
+     *        point, so Kruskal's algorithm runs on those 2n - 1 edges only, with ties broken as
+     *        kruskal breaks them. This tree is not modified.
+     *
+     * @param x
+     *     The abscissas of the points, with the added point last
+     * @param y
+     *     The ordinates of the points, with the added point last
+     *
+     * @return The Euclidean minimum spanning tree of all the points
+     */
+    public MinimumSpanningTree addVertex (double[] x, double[] y) {
+        int numberOfVertices = adjacency_.length + 1;
+        if (x.length != numberOfVertices || y.length != numberOfVertices) {
+            throw new IllegalArgumentException("There should be one more point than vertices");
+        }
+
+        int newVertex = numberOfVertices - 1;
+
+        // The edges are listed in row-major order, so that the stable sort of kruskal keeps that
+        // order between edges of equal weight.
+        int numberOfEdges = Math.max(newVertex - 1, 0) + newVertex;
+        double[] edgeWeights = new double[numberOfEdges];
+        int[] edgeRows = new int[numberOfEdges];
+        int[] edgeColumns = new int[numberOfEdges];
+        int edge = 0;
+        for (int row = 0; row < newVertex; row++) {
+            for (int column : adjacency_[row]) {
+                if (column > row) {
+                    edgeRows[edge] = row;
+                    edgeColumns[edge] = column;
+                    edge++;
+                }
             }
+
+            edgeRows[edge] = row;
+            edgeColumns[edge] = newVertex;
+            edge++;
         }
 
-        int[] sortedIndices = Utilities.sortArray(edgeWeights);
+        for (int i = 0; i < numberOfEdges; i++) {
+            edgeWeights[i] = Math.sqrt(Math.pow(x[edgeRows[i]] - x[edgeColumns[i]], 2) +
+                Math.pow(y[edgeRows[i]] - y[edgeColumns[i]], 2));
+        }
 
-        // Use the first connection.
-        int[] vertices = MinimumSpanningTree.connect(connections, sortedIndices[0]);
-        scope = updateScope(scope, vertices[0], vertices[1]);
+        return (MinimumSpanningTree.kruskal(edgeWeights, edgeRows, edgeColumns,
+            numberOfVertices));
+    }
 
-        for (int i = 1; i < sortedIndices.length; i++) {
-            vertices = Utilities.vectorIndexToUpperTriangularIndices(connections.length,
-                sortedIndices[i]);
-            if (! scope[vertices[0]][vertices[1]]) {
-                MinimumSpanningTree.connect(connections, sortedIndices[i]);
-                scope = updateScope(scope, vertices[0], vertices[1]);
+    /**
+     * @brief Returns the Euclidean minimum spanning tree after a point is removed
+     *        This tree must be the Euclidean minimum spanning tree of the points before the
+     *        removal. The edges of this tree that do not touch the removed vertex stay on the new
+     *        tree, so Boruvka's algorithm only has to reconnect the pieces they form. This tree is
+     *        not modified.
+     *
+     * @param vertex
+     *     The vertex to remove. Every vertex after it moves one position back.
+     * @param x
+     *     The abscissas of the remaining points
+     * @param y
+     *     The ordinates of the remaining points
+     *
+     * @return The Euclidean minimum spanning tree of the remaining points
+     */
+    public MinimumSpanningTree removeVertex (int vertex, double[] x, double[] y) {
+        int numberOfVertices = adjacency_.length - 1;
+        if (vertex < 0 || vertex > numberOfVertices) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (x.length != numberOfVertices || y.length != numberOfVertices) {
+            throw new IllegalArgumentException("There should be one less point than vertices");
+        }
 
-                if (Utilities.areAllTrue(scope)) {
-                    break;
+        int numberOfForestEdges = numberOfVertices - adjacency_[vertex].length;
+        int[] forestRows = new int[numberOfForestEdges];
+        int[] forestColumns = new int[numberOfForestEdges];
+        int edge = 0;
+        for (int row = 0; row <= numberOfVertices; row++) {
+            for (int column : adjacency_[row]) {
+                if (column > row && row != vertex && column != vertex) {
+                    forestRows[edge] = (row > vertex) ? row - 1 : row;
+                    forestColumns[edge] = (column > vertex) ? column - 1 : column;
+                    edge++;
                 }
             }
         }
 
-        return (new MinimumSpanningTree(connections));
+        return (MinimumSpanningTree.euclidean(x, y, forestRows, forestColumns));
     }
 
     /**
      * @brief Returns true if the two given vertices are connected on this tree
+     *        A vertex is always considered connected to itself.
      *
      * @param vertex1
      *     The first vertex
@@ -95,12 +370,12 @@ public class MinimumSpanningTree {
      *                                   greater or equal to the number of vertices.
      */
     public boolean areConnected (int vertex1, int vertex2) throws IndexOutOfBoundsException {
-        if (vertex1 < 0 || vertex1 >= connections_.length ||
-            vertex2 < 0 || vertex2 >= connections_.length) {
+        if (vertex1 < 0 || vertex1 >= adjacency_.length ||
+            vertex2 < 0 || vertex2 >= adjacency_.length) {
             throw new IndexOutOfBoundsException();
         }
         else {
-            return connections_[vertex1][vertex2];
+            return (vertex1 == vertex2 || Arrays.binarySearch(adjacency_[vertex1], vertex2) >= 0);
         }
     }
 
@@ -133,26 +408,6 @@ public class MinimumSpanningTree {
         }
     }
 
-    /**
-     * @brief Connects two vertices on a given graph
-     *        The position of the vertices to be connected is provided by row-major, excluding the
-     *        main diagonal representation.
-     *
-     * @param connections
-     *     The graph
-     * @param index
-     *     The position of the vertices to be connected
-     *
-     * @return The corresponding matrix indices for the connected vertices
-     */
-    private static int[] connect (boolean[][] connections, int index) {
-        int[] matrixIndices = Utilities.vectorIndexToUpperTriangularIndices(connections.length, index);
-
-        MinimumSpanningTree.connect(connections, matrixIndices[0], matrixIndices[1]);
-
-        return matrixIndices;
-    }
-
     /**
      * @brief Returns all the possible unique paths upon the tree
      *        By unique, it is meant that, if path 0,1,2 is one of the returned paths, then 2,1,0
@@ -164,7 +419,7 @@ public class MinimumSpanningTree {
      * @return All the possible unique paths upon the tree
      */
     public int[][] getUniquePaths (int maxPathLength) {
-        return (Utilities.findUniquePaths(connections_, maxPathLength));
+        return (Utilities.findUniquePaths(adjacency_, maxPathLength));
     }
 
     /**
@@ -176,65 +431,114 @@ public class MinimumSpanningTree {
      * @return The neighboring vertices of a group of vertices on the tree
      */
     public int[] getContext (int[] vertices) {
-        return (Utilities.getContext(vertices, connections_));
+        return (Utilities.getContext(vertices, adjacency_));
     }
 
     /**
-     * @brief Updates the scope of each vertex when a new connection is added to the tree
-     *        Kruskal's algorithm, stops when there is a path from every vertex to every other
-     *        vertex. That is when each vertex has in its scope, all the other vertices. This method
-     *        will update the scope that Kruskal's algorithm keeps, for every vertex.
+     * @brief Returns the neighbors of a vertex on the tree, in ascending order
      *
-     * @param scope
-     *     The current scope of each vertex
-     * @param row
-     *     The first vertex of the new connection
-     * @param column
-     *     The second vertex of the new connection
+     * @param vertex
+     *     The vertex
      *
-     * @return The updated scope of each vertex
+     * @return The neighbors of the given vertex on the tree
      */
-    public static boolean[][] updateScope (boolean[][] scope, int row, int column) {
-        int numberOfVertices = scope.length;
-
-        scope[row][column] = true;
-        scope[column][row] = true;
+    public int[] getNeighbors (int vertex) {
+        return adjacency_[vertex].clone();
+    }
 
-        HashSet<Integer> vertexGroup = new HashSet<Integer>();
-        vertexGroup.add(row);
-        vertexGroup.add(column);
-        int oldSize;
-        int newSize = vertexGroup.size();
+    /**
+     * @brief Getter method for the number of vertices of this MinimumSpanningTree
+     *
+     * @return The number of vertices of this MinimumSpanningTree
+     */
+    public int getNumberOfVertices () {
+        return adjacency_.length;
+    }
 
-        do {
-            oldSize = newSize;
+    /**
+     * @class DisjointSets
+     * @brief A disjoint-set forest with path compression and union by rank
+     *        Kruskal's algorithm uses it to tell in amortized constant time whether an edge would
+     *        close a cycle on the tree built so far. It is also used to group the vertices of a
+     *        tree into components.
+     */
+    public static class DisjointSets {
+        /**
+         * @brief Constructor
+         *
+         * @param numberOfElements
+         *     The number of elements, each of which starts on its own set
+         */
+        public DisjointSets (int numberOfElements) {
+            parents_ = new int[numberOfElements];
+            ranks_ = new byte[numberOfElements];
+
+            for (int i = 0; i < numberOfElements; i++) {
+                parents_[i] = i;
+            }
+        }
 
-            for (int i = 0; i < numberOfVertices; i++) {
-                if (vertexGroup.contains(i)) {
-                    continue;
-                }
+        /**
+         * @brief Returns the representative of the set that an element belongs to
+         *
+         * @param element
+         *     The element
+         *
+         * @return The representative of the set that the given element belongs to
+         */
+        public int find (int element) {
+            int root = element;
+            while (parents_[root] != root) {
+                root = parents_[root];
+            }
 
-                for (Integer aVertexGroup : vertexGroup) {
-                    if (scope[i][aVertexGroup]) {
+            // Point every element on the way directly to the root.
+            while (parents_[element] != root) {
+                int next = parents_[element];
+                parents_[element] = root;
+                element = next;
+            }
 
-                        for (Integer target : vertexGroup) {
-                            scope[i][target] = true;
-                            scope[target][i] = true;
-                        }
+            return root;
+        }
 
-                        vertexGroup.add(i);
+        /**
+         * @brief Merges the sets of two elements
+         *
+         * @param element1
+         *     The first element
+         * @param element2
+         *     The second element
+         *
+         * @return True if the two elements were on different sets before the call
+         */
+        public boolean union (int element1, int element2) {
+            int root1 = this.find(element1);
+            int root2 = this.find(element2);
+
+            if (root1 == root2) {
+                return false;
+            }
 
-                        break;
-                    }
-                }
+            if (ranks_[root1] < ranks_[root2]) {
+                parents_[root1] = root2;
+            }
+            else if (ranks_[root1] > ranks_[root2]) {
+                parents_[root2] = root1;
             }
+            else {
+                parents_[root2] = root1;
+                ranks_[root1]++;
+            }
+
+            return true;
+        }
 
-            newSize = vertexGroup.size();
-        } while (oldSize != newSize);
+        private final int[] parents_; //!< The parent of each element on the forest
+        private final byte[] ranks_; //!< The upper bound of the height of each root
 
-        return scope;
     }
 
-    public boolean[][] connections_; //!< The connections of this MinimumSpanningTree
+    private final int[][] adjacency_; //!< The neighbors of each vertex, in ascending order
 
 }
@@ -0,0 +1,400 @@
+package org.hwer.engine.utilities.math;
+
+
+import org.hwer.engine.utilities.Utilities;
+
+import java.util.Arrays;
+
+
+/**
+ * @class RTree
+ * @brief A static R-tree over a set of axis aligned boxes
+ *        The tree is bulk loaded with the Sort-Tile-Recursive algorithm: the entries of each level
+ *        are sorted by the abscissa of their centers, cut into vertical slices, and every slice
+ *        is sorted by the ordinate of the centers and packed into nodes of NODE_CAPACITY entries.
+ *        Nodes are kept on flat arrays and the tree never changes after it is built, so it can be
+ *        queried by many threads.
+ */
+public class RTree {
+    /**
+     * @brief Constructor
+     *
+     * @param minX
+     *     The minimum abscissa of each box
+     * @param minY
+     *     The minimum ordinate of each box
+     * @param maxX
+     *     The maximum abscissa of each box
+     * @param maxY
+     *     The maximum ordinate of each box
+     */
+    public RTree (double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int numberOfBoxes = minX.length;
+        if (minY.length != numberOfBoxes || maxX.length != numberOfBoxes ||
+            maxY.length != numberOfBoxes) {
+            throw new IllegalArgumentException("Box coordinates differ in length");
+        }
+
+        numberOfBoxes_ = numberOfBoxes;
+
+        // Each level has one node per NODE_CAPACITY entries of the level below, up to the root.
+        int maximumNumberOfNodes = 0;
+        int count = numberOfBoxes;
+        while (count > 0) {
+            count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            maximumNumberOfNodes += count;
+
+            if (count == 1) {
+                break;
+            }
+        }
+        nodeMinX_ = new double[maximumNumberOfNodes];
+        nodeMinY_ = new double[maximumNumberOfNodes];
+        nodeMaxX_ = new double[maximumNumberOfNodes];
+        nodeMaxY_ = new double[maximumNumberOfNodes];
+        nodeStart_ = new int[maximumNumberOfNodes];
+        nodeEnd_ = new int[maximumNumberOfNodes];
+        nodeIsLeaf_ = new boolean[maximumNumberOfNodes];
+        // Every node but the root is an entry of its parent.
+        entries_ = new int[numberOfBoxes + Math.max(0, maximumNumberOfNodes - 1)];
+
+        boxMinX_ = minX.clone();
+        boxMinY_ = minY.clone();
+        boxMaxX_ = maxX.clone();
+        boxMaxY_ = maxY.clone();
+
+        if (numberOfBoxes > 0) {
+            this.build();
+        }
+    }
+
+    /**
+     * @brief Packs the boxes into leaves and the nodes of each level into the level above, until
+     *        a single root is left
+     */
+    private void build () {
+        // The entries of the level being packed: boxes for the leaves, nodes for the levels above.
+        int[] level = new int[numberOfBoxes_];
+        for (int i = 0; i < numberOfBoxes_; i++) {
+            level[i] = i;
+        }
+        double[] minX = boxMinX_;
+        double[] minY = boxMinY_;
+        double[] maxX = boxMaxX_;
+        double[] maxY = boxMaxY_;
+        boolean leaves = true;
+
+        while (true) {
+            int[] packed = this.tile(level, minX, minY, maxX, maxY);
+
+            int firstNode = numberOfNodes_;
+            for (int start = 0; start < packed.length; start += NODE_CAPACITY) {
+                int end = Math.min(start + NODE_CAPACITY, packed.length);
+                int node = numberOfNodes_++;
+
+                nodeIsLeaf_[node] = leaves;
+                nodeStart_[node] = numberOfEntries_;
+                nodeMinX_[node] = Double.POSITIVE_INFINITY;
+                nodeMinY_[node] = Double.POSITIVE_INFINITY;
+                nodeMaxX_[node] = Double.NEGATIVE_INFINITY;
+                nodeMaxY_[node] = Double.NEGATIVE_INFINITY;
+                for (int i = start; i < end; i++) {
+                    int entry = packed[i];
+                    entries_[numberOfEntries_++] = entry;
+
+                    nodeMinX_[node] = Math.min(nodeMinX_[node], minX[entry]);
+                    nodeMinY_[node] = Math.min(nodeMinY_[node], minY[entry]);
+                    nodeMaxX_[node] = Math.max(nodeMaxX_[node], maxX[entry]);
+                    nodeMaxY_[node] = Math.max(nodeMaxY_[node], maxY[entry]);
+                }
+                nodeEnd_[node] = numberOfEntries_;
+            }
+
+            if (numberOfNodes_ - firstNode == 1) {
+                root_ = firstNode;
+                return;
+            }
+
+            level = new int[numberOfNodes_ - firstNode];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = firstNode + i;
+            }
+            minX = nodeMinX_;
+            minY = nodeMinY_;
+            maxX = nodeMaxX_;
+            maxY = nodeMaxY_;
+            leaves = false;
+        }
+    }
+
+    /**
+     * @brief Orders the entries of a level so that every run of NODE_CAPACITY consecutive entries
+     *        forms a compact node
+     *
+     * @param level
+     *     The entries of the level
+     * @param minX
+     *     The minimum abscissa of every entry
+     * @param minY
+     *     The minimum ordinate of every entry
+     * @param maxX
+     *     The maximum abscissa of every entry
+     * @param maxY
+     *     The maximum ordinate of every entry
+     *
+     * @return The ordered entries
+     */
+    private int[] tile (int[] level, double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int numberOfEntries = level.length;
+
+        double[] centerX = new double[numberOfEntries];
+        for (int i = 0; i < numberOfEntries; i++) {
+            centerX[i] = (minX[level[i]] + maxX[level[i]]) / 2;
+        }
+        int[] byX = Utilities.sortArray(centerX);
+
+        int numberOfNodes = (numberOfEntries + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int numberOfSlices = (int) Math.ceil(Math.sqrt(numberOfNodes));
+        int sliceSize = numberOfSlices * NODE_CAPACITY;
+
+        int[] packed = new int[numberOfEntries];
+        for (int start = 0; start < numberOfEntries; start += sliceSize) {
+            int end = Math.min(start + sliceSize, numberOfEntries);
+
+            double[] centerY = new double[end - start];
+            for (int i = start; i < end; i++) {
+                centerY[i - start] = (minY[level[byX[i]]] + maxY[level[byX[i]]]) / 2;
+            }
+            int[] byY = Utilities.sortArray(centerY);
+
+            for (int i = start; i < end; i++) {
+                packed[i] = level[byX[start + byY[i - start]]];
+            }
+        }
+
+        return packed;
+    }
+
+    /**
+     * @brief Returns the boxes that intersect a given range
+     *        Boxes that only touch the range are included.
+     *
+     * @param minX
+     *     The minimum abscissa of the range
+     * @param minY
+     *     The minimum ordinate of the range
+     * @param maxX
+     *     The maximum abscissa of the range
+     * @param maxY
+     *     The maximum ordinate of the range
+     *
+     * @return The indices of the boxes that intersect the range, in ascending order
+     */
+    public int[] search (double minX, double minY, double maxX, double maxY) {
+        int[] found = new int[Math.min(numberOfBoxes_, NODE_CAPACITY)];
+        int numberOfFound = 0;
+
+        if (numberOfNodes_ == 0) {
+            return found;
+        }
+
+        int[] stack = new int[numberOfNodes_];
+        int top = 0;
+        stack[top++] = root_;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            for (int i = nodeStart_[node]; i < nodeEnd_[node]; i++) {
+                int entry = entries_[i];
+
+                if (nodeIsLeaf_[node]) {
+                    if (boxMinX_[entry] <= maxX && boxMaxX_[entry] >= minX &&
+                        boxMinY_[entry] <= maxY && boxMaxY_[entry] >= minY) {
+                        if (numberOfFound == found.length) {
+                            found = Arrays.copyOf(found, 2 * found.length);
+                        }
+                        found[numberOfFound++] = entry;
+                    }
+                }
+                else if (nodeMinX_[entry] <= maxX && nodeMaxX_[entry] >= minX &&
+                    nodeMinY_[entry] <= maxY && nodeMaxY_[entry] >= minY) {
+                    stack[top++] = entry;
+                }
+            }
+        }
+
+        found = Arrays.copyOf(found, numberOfFound);
+        Arrays.sort(found);
+
+        return found;
+    }
+
+    /**
+     * @brief Finds the box that is nearest to a given range
+     *        The distance to each box is given by the caller, so that it can be the distance to
+     *        whatever the box encloses. It must never be less than the distance between the range
+     *        and the box. Among boxes at the same distance, the one with the smallest index is
+     *        returned.
+     *
+     * @param minX
+     *     The minimum abscissa of the range
+     * @param minY
+     *     The minimum ordinate of the range
+     * @param maxX
+     *     The maximum abscissa of the range
+     * @param maxY
+     *     The maximum ordinate of the range
+     * @param distance
+     *     The distance to each box
+     *
+     * @return The index of the nearest box, or -1 if this RTree is empty
+     */
+    public int findNearest (double minX, double minY, double maxX, double maxY,
+                            Distance distance) {
+        if (numberOfNodes_ == 0) {
+            return - 1;
+        }
+
+        double[] bound = {Double.POSITIVE_INFINITY, - 1};
+        this.findNearest(root_, minX, minY, maxX, maxY, distance, bound);
+
+        return (int) bound[1];
+    }
+
+    /**
+     * @brief Recursive step of findNearest
+     *
+     * @param node
+     *     The node to search
+     * @param minX
+     *     The minimum abscissa of the range
+     * @param minY
+     *     The minimum ordinate of the range
+     * @param maxX
+     *     The maximum abscissa of the range
+     * @param maxY
+     *     The maximum ordinate of the range
+     * @param distance
+     *     The distance to each box
+     * @param bound
+     *     The distance and the index of the nearest box found so far, updated in place
+     */
+    private void findNearest (int node, double minX, double minY, double maxX, double maxY,
+                              Distance distance, double[] bound) {
+        if (nodeIsLeaf_[node]) {
+            for (int i = nodeStart_[node]; i < nodeEnd_[node]; i++) {
+                int box = entries_[i];
+                if (RTree.distance(boxMinX_[box], boxMinY_[box], boxMaxX_[box], boxMaxY_[box],
+                    minX, minY, maxX, maxY) > bound[0]) {
+                    continue;
+                }
+
+                double boxDistance = distance.distance(box);
+                if (boxDistance < bound[0] || (boxDistance == bound[0] && box < bound[1])) {
+                    bound[0] = boxDistance;
+                    bound[1] = box;
+                }
+            }
+
+            return;
+        }
+
+        // Visit the closer children first to shrink the bound early.
+        int numberOfChildren = nodeEnd_[node] - nodeStart_[node];
+        double[] childDistances = new double[numberOfChildren];
+        for (int i = 0; i < numberOfChildren; i++) {
+            int child = entries_[nodeStart_[node] + i];
+            childDistances[i] = RTree.distance(nodeMinX_[child], nodeMinY_[child],
+                nodeMaxX_[child], nodeMaxY_[child], minX, minY, maxX, maxY);
+        }
+
+        for (int index : Utilities.sortArray(childDistances)) {
+            if (childDistances[index] > bound[0]) {
+                return;
+            }
+
+            this.findNearest(entries_[nodeStart_[node] + index], minX, minY, maxX, maxY, distance,
+                bound);
+        }
+    }
+
+    /**
+     * @brief Returns the distance between two boxes
+     *
+     * @param minX1
+     *     The minimum abscissa of the first box
+     * @param minY1
+     *     The minimum ordinate of the first box
+     * @param maxX1
+     *     The maximum abscissa of the first box
+     * @param maxY1
+     *     The maximum ordinate of the first box
+     * @param minX2
+     *     The minimum abscissa of the second box
+     * @param minY2
+     *     The minimum ordinate of the second box
+     * @param maxX2
+     *     The maximum abscissa of the second box
+     * @param maxY2
+     *     The maximum ordinate of the second box
+     *
+     * @return The distance between the two boxes, zero if they intersect
+     */
+    private static double distance (double minX1, double minY1, double maxX1, double maxY1,
+                                    double minX2, double minY2, double maxX2, double maxY2) {
+        double dx = Math.max(0, Math.max(minX1 - maxX2, minX2 - maxX1));
+        double dy = Math.max(0, Math.max(minY1 - maxY2, minY2 - maxY1));
+
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @brief Getter method for the number of boxes on this RTree
+     *
+     * @return The number of boxes on this RTree
+     */
+    public int size () {
+        return numberOfBoxes_;
+    }
+
+    /**
+     * @interface Distance
+     * @brief The distance from the range of a nearest box query to a box
+     */
+    public interface Distance {
+        /**
+         * @brief Returns the distance to a box
+         *
+         * @param box
+         *     The index of the box
+         *
+         * @return The distance to the box
+         */
+        double distance (int box);
+
+    }
+
+    private static final int NODE_CAPACITY = 8; //!< The maximum number of entries on a node
+
+    private final int numberOfBoxes_; //!< The number of boxes on this RTree
+    private final double[] boxMinX_; //!< The minimum abscissa of each box
+    private final double[] boxMinY_; //!< The minimum ordinate of each box
+    private final double[] boxMaxX_; //!< The maximum abscissa of each box
+    private final double[] boxMaxY_; //!< The maximum ordinate of each box
+
+    private int numberOfNodes_ = 0; //!< The number of nodes on this RTree
+    private int root_ = - 1; //!< The index of the root node
+    private final double[] nodeMinX_; //!< The minimum abscissa of each node
+    private final double[] nodeMinY_; //!< The minimum ordinate of each node
+    private final double[] nodeMaxX_; //!< The maximum abscissa of each node
+    private final double[] nodeMaxY_; //!< The maximum ordinate of each node
+    private final boolean[] nodeIsLeaf_; //!< Flag indicating that a node holds boxes, not nodes
+    private final int[] nodeStart_; //!< The first position on entries_ of each node
+    private final int[] nodeEnd_; //!< The position after the last on entries_ of each node
+
+    private int numberOfEntries_ = 0; //!< The number of used positions on entries_
+    private final int[] entries_; //!< The boxes of every leaf and the children of every other node
+                                  //!< with the entries of each node on consecutive positions
+
+}
@@ -499,7 +499,12 @@ public class Trace implements Iterable<Point> {
 
     /**
      * @brief Returns true if the two given Traces are overlapped
-     *        Two Traces are overlapped if the corresponding ink traces are overlapped.
+     *        Two Traces are overlapped if the corresponding ink traces come closer than
+     *        OVERLAP_TOLERANCE to each other. Each Trace is taken as the polyline through its
+     *        Points, except for a Trace with a single Point, which is taken as a circle of radius
+     *        SINGLE_POINT_RADIUS around that Point. The test works on the coordinates of the Points
+     *        and allocates no memory; bounding boxes are compared first so that Traces far apart
+     *        are rejected without looking at their segments.
      *
      * @param trace1
      *     The first Trace
@@ -509,52 +514,67 @@ public class Trace implements Iterable<Point> {
      * @return True if these two Trace objects are overlapped, false otherwise
      */
     public static boolean areOverlapped (Trace trace1, Trace trace2) {
-        Trace trace1Copy = new Trace(trace1);
-        Trace trace2Copy = new Trace(trace2);
-
-        TraceGroup traceGroup = new TraceGroup();
-        traceGroup.add(trace1Copy);
-        traceGroup.add(trace2Copy);
-
-        traceGroup.subtract(new Point(traceGroup.getTopLeftCorner().x_,
-            traceGroup.getBottomRightCorner().y_));
-
-        int width = (int) traceGroup.getWidth();
-        int height = (int) traceGroup.getHeight();
-
-        Image image1;
-        if (trace1Copy.size() == 1) {
-            image1 = new Image(width, height);
-            Drawer.drawCircle(image1, (int) trace1Copy.get(0).x_,
-                (int) trace1Copy.get(0).y_, 10, Drawer.WHITE);
-        }
-        else {
-            image1 = trace1Copy.print(width, height);
-        }
-
-        Image image2;
-        if (trace2Copy.size() == 1) {
-            image2 = new Image(width, height);
-            Drawer.drawCircle(image2, (int) trace2Copy.get(0).x_,
-                (int) trace2Copy.get(0).y_, 10, Drawer.WHITE);
-        }
-        else {
-            image2 = trace2Copy.print(width, height);
-        }
-
-        int white = Drawer.WHITE;
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                if (image1.getPixel(x, y) == white &&
-                    ((x - 1 >= 0    && y - 1 >= 0     && image2.getPixel(x - 1, y - 1) == white) ||
-                     (x - 1 >= 0                      && image2.getPixel(x - 1, y)     == white) ||
-                     (x - 1 >= 0    && y + 1 < height && image2.getPixel(x - 1, y + 1) == white) ||
-                     (                 y - 1 >= 0     && image2.getPixel(x, y - 1)     == white) ||
-                     (                                   image2.getPixel(x, y)         == white) ||
-                     (                 y + 1 < height && image2.getPixel(x, y + 1)     == white) ||
-                     (x + 1 < width && y - 1 >= 0     && image2.getPixel(x + 1, y - 1) == white) ||
-                     (x + 1 < width                   && image2.getPixel(x + 1, y)     == white) ||
-                     (x + 1 < width && y + 1 < height && image2.getPixel(x + 1, y + 1) == white))) {
+        int size1 = trace1.size();
+        int size2 = trace2.size();
+        if (size1 == 0 || size2 == 0) {
+            return false;
+        }
+
+        trace1.calculateCorners();
+        trace2.calculateCorners();
+
+        double margin = OVERLAP_TOLERANCE;
+        if (size1 == 1) {
+            margin += SINGLE_POINT_RADIUS;
+        }
+        if (size2 == 1) {
+            margin += SINGLE_POINT_RADIUS;
+        }
+
+        if (trace1.topLeftCorner_.x_ - margin > trace2.bottomRightCorner_.x_ ||
+            trace2.topLeftCorner_.x_ - margin > trace1.bottomRightCorner_.x_ ||
+            trace1.bottomRightCorner_.y_ - margin > trace2.topLeftCorner_.y_ ||
+            trace2.bottomRightCorner_.y_ - margin > trace1.topLeftCorner_.y_) {
+            return false;
+        }
+
+        if (size1 == 1 && size2 == 1) {
+            // Two circles of the same radius cross each other unless their centers are further
+            // apart than twice the radius.
+            return (Point.distance(trace1.get(0), trace2.get(0)) <=
+                2 * SINGLE_POINT_RADIUS + OVERLAP_TOLERANCE);
+        }
+        if (size1 == 1) {
+            return trace2.isNearCircle(trace1.get(0));
+        }
+        if (size2 == 1) {
+            return trace1.isNearCircle(trace2.get(0));
+        }
+
+        double squaredTolerance = OVERLAP_TOLERANCE * OVERLAP_TOLERANCE;
+        for (int i = 0; i < size1 - 1; i++) {
+            Point start1 = trace1.points_.get(i);
+            Point end1 = trace1.points_.get(i + 1);
+
+            double minX1 = Math.min(start1.x_, end1.x_) - OVERLAP_TOLERANCE;
+            double maxX1 = Math.max(start1.x_, end1.x_) + OVERLAP_TOLERANCE;
+            double minY1 = Math.min(start1.y_, end1.y_) - OVERLAP_TOLERANCE;
+            double maxY1 = Math.max(start1.y_, end1.y_) + OVERLAP_TOLERANCE;
+            if (minX1 > trace2.bottomRightCorner_.x_ || maxX1 < trace2.topLeftCorner_.x_ ||
+                minY1 > trace2.topLeftCorner_.y_ || maxY1 < trace2.bottomRightCorner_.y_) {
+                continue;
+            }
+
+            for (int j = 0; j < size2 - 1; j++) {
+                Point start2 = trace2.points_.get(j);
+                Point end2 = trace2.points_.get(j + 1);
+
+                if (Math.max(start2.x_, end2.x_) < minX1 || Math.min(start2.x_, end2.x_) > maxX1 ||
+                    Math.max(start2.y_, end2.y_) < minY1 || Math.min(start2.y_, end2.y_) > maxY1) {
+                    continue;
+                }
+
+                if (Trace.squaredSegmentsDistance(start1, end1, start2, end2) <= squaredTolerance) {
                     return true;
                 }
             }
@@ -563,6 +583,143 @@ public class Trace implements Iterable<Point> {
         return false;
     }
 
+    /**
+     * @brief Returns true if the ink of this Trace comes closer than OVERLAP_TOLERANCE to the
+     *        circle of radius SINGLE_POINT_RADIUS around the given Point
+     *        This Trace should have at least two Points.
+     *
+     * @param center
+     *     The center of the circle
+     *
+     * @return True if the ink of this Trace comes close to the circle, false otherwise
+     */
+    private boolean isNearCircle (Point center) {
+        double innerRadius = SINGLE_POINT_RADIUS - OVERLAP_TOLERANCE;
+        double outerRadius = SINGLE_POINT_RADIUS + OVERLAP_TOLERANCE;
+
+        double squaredInnerRadius = innerRadius * innerRadius;
+        double squaredOuterRadius = outerRadius * outerRadius;
+
+        // The distance from the center to the points of a segment takes every value between its
+        // minimum on the segment and its maximum on the end points of the segment.
+        for (int i = 0, n = points_.size() - 1; i < n; i++) {
+            Point start = points_.get(i);
+            Point end = points_.get(i + 1);
+
+            double squaredMaximum = Math.max(Trace.squaredDistance(center, start),
+                Trace.squaredDistance(center, end));
+            if (squaredMaximum < squaredInnerRadius) {
+                continue;
+            }
+
+            if (Trace.squaredPointToSegmentDistance(center, start, end) <= squaredOuterRadius) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @brief Returns the squared distance between two Points
+     *
+     * @param point1
+     *     The first Point
+     * @param point2
+     *     The second Point
+     *
+     * @return The squared distance between the two Points
+     */
+    private static double squaredDistance (Point point1, Point point2) {
+        double dx = point1.x_ - point2.x_;
+        double dy = point1.y_ - point2.y_;
+
+        return (dx * dx + dy * dy);
+    }
+
+    /**
+     * @brief Returns the squared distance between a Point and a segment
+     *
+     * @param point
+     *     The Point
+     * @param start
+     *     The starting Point of the segment
+     * @param end
+     *     The ending Point of the segment
+     *
+     * @return The squared distance between the Point and the segment
+     */
+    private static double squaredPointToSegmentDistance (Point point, Point start, Point end) {
+        double dx = end.x_ - start.x_;
+        double dy = end.y_ - start.y_;
+
+        double squaredLength = dx * dx + dy * dy;
+        if (squaredLength == 0) {
+            return Trace.squaredDistance(point, start);
+        }
+
+        double t = ((point.x_ - start.x_) * dx + (point.y_ - start.y_) * dy) / squaredLength;
+        t = Math.max(0, Math.min(1, t));
+
+        double distanceX = point.x_ - (start.x_ + t * dx);
+        double distanceY = point.y_ - (start.y_ + t * dy);
+
+        return (distanceX * distanceX + distanceY * distanceY);
+    }
+
+    /**
+     * @brief Returns the squared distance between two segments
+     *
+     * @param start1
+     *     The starting Point of the first segment
+     * @param end1
+     *     The ending Point of the first segment
+     * @param start2
+     *     The starting Point of the second segment
+     * @param end2
+     *     The ending Point of the second segment
+     *
+     * @return The squared distance between the two segments
+     */
+    private static double squaredSegmentsDistance (Point start1, Point end1, Point start2,
+                                                   Point end2) {
+        double orientation1 = Trace.orientation(start1, end1, start2);
+        double orientation2 = Trace.orientation(start1, end1, end2);
+        double orientation3 = Trace.orientation(start2, end2, start1);
+        double orientation4 = Trace.orientation(start2, end2, end1);
+
+        if (((orientation1 > 0 && orientation2 < 0) || (orientation1 < 0 && orientation2 > 0)) &&
+            ((orientation3 > 0 && orientation4 < 0) || (orientation3 < 0 && orientation4 > 0))) {
+            return 0;
+        }
+
+        // Segments that do not cross are closest at one of the end points.
+        return Math.min(
+            Math.min(Trace.squaredPointToSegmentDistance(start1, start2, end2),
+                Trace.squaredPointToSegmentDistance(end1, start2, end2)),
+            Math.min(Trace.squaredPointToSegmentDistance(start2, start1, end1),
+                Trace.squaredPointToSegmentDistance(end2, start1, end1)));
+    }
+
+    /**
+     * @brief Returns the cross product of the vectors from a Point to two other Points
+     *        The sign of the result tells on which side of the line through the first two Points
+     *        the third Point lies.
+     *
+     * @param point1
+     *     The first Point
+     * @param point2
+     *     The second Point
+     * @param point3
+     *     The third Point
+     *
+     * @return The cross product of the vectors from point1 to point2 and from point1 to point3
+     */
+    private static double orientation (Point point1, Point point2, Point point3) {
+        return ((point2.x_ - point1.x_) * (point3.y_ - point1.y_) -
+            (point2.y_ - point1.y_) * (point3.x_ - point1.x_));
+    }
+
     /**
      * @brief Returns the minimum distance between two Traces
      *
@@ -612,10 +769,41 @@ public class Trace implements Iterable<Point> {
         return (new Point[] {new Point(point1), new Point(point2)});
     }
 
+    /**
+     * @brief Calculates every cached property of this Trace that is not up to date
+     *        Getters calculate these properties lazily, which writes on this Trace. After this
+     *        method returns, and until this Trace is modified, the getters only read, so the Trace
+     *        can be shared by many threads.
+     */
+    public void calculateProperties () {
+        if (points_.size() == 0) {
+            return;
+        }
+
+        this.calculateCorners();
+        this.calculateOuterLeftPoint();
+        this.calculateOuterRightPoint();
+        this.calculateCenterOfMass();
+    }
+
+    /**
+     * @brief Returns the version of this Trace
+     *        The version changes every time this Trace is modified through its methods, so that
+     *        results computed on this Trace can be checked for being stale. Modifications made
+     *        directly on the Points of this Trace are not tracked.
+     *
+     * @return The version of this Trace
+     */
+    public int getVersion () {
+        return version_;
+    }
+
     /**
      * @brief Sets all calculate* flags to true
      */
     private void calculateAll () {
+        version_++;
+
         calculateCorners_ = true;
 
         calculateOuterLeftPoint_ = true;
@@ -627,8 +815,15 @@ public class Trace implements Iterable<Point> {
         calculateInkML_ = true;
     }
 
+    public static final double OVERLAP_TOLERANCE = 2; //!< The distance under which the ink of
+                                                      //!< two Traces is considered overlapped
+    public static final double SINGLE_POINT_RADIUS = 10; //!< The radius of the circle that stands
+                                                         //!< for a Trace with a single Point
+
     private ArrayList<Point> points_; //!< The Points of this Trace
 
+    private int version_; //!< The number of times this Trace has been modified
+
     private Point topLeftCorner_; //!< The top left corner of this Trace
     private Point topRightCorner_; //!< The top right corner of this Trace
     private Point bottomLeftCorner_; //!< The bottom left corner of this Trace
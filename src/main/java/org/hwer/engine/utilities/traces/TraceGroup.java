@@ -1,6 +1,8 @@
 package org.hwer.engine.utilities.traces;
 
 
+import org.hwer.engine.utilities.math.RTree;
+
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -411,8 +413,8 @@ public class TraceGroup implements Iterable<Trace> {
      * @return True if this TraceGroup is overlapped by the given Trace
      */
     public boolean isOverlappedBy (Trace trace) {
-        for (Trace trace_ : traces_) {
-            if (Trace.areOverlapped(trace_, trace)) {
+        for (int index : this.findOverlapCandidates(trace)) {
+            if (Trace.areOverlapped(traces_.get(index), trace)) {
                 return true;
             }
         }
@@ -420,6 +422,137 @@ public class TraceGroup implements Iterable<Trace> {
         return false;
     }
 
+    /**
+     * @brief Builds the spatial index of this TraceGroup
+     *        The index is an RTree over the bounding boxes of the Traces. Like the corners, it is
+     *        rebuilt after Traces are added to or removed from this TraceGroup, but not after a
+     *        Trace of this TraceGroup is modified on its own.
+     */
+    private void buildIndex () {
+        if (! buildIndex_) {
+            return;
+        }
+
+        int numberOfTraces = traces_.size();
+        double[] minX = new double[numberOfTraces];
+        double[] minY = new double[numberOfTraces];
+        double[] maxX = new double[numberOfTraces];
+        double[] maxY = new double[numberOfTraces];
+        for (int i = 0; i < numberOfTraces; i++) {
+            Trace trace = traces_.get(i);
+
+            if (trace.size() == 0) {
+                // An empty box that no range intersects.
+                minX[i] = Double.POSITIVE_INFINITY;
+                minY[i] = Double.POSITIVE_INFINITY;
+                maxX[i] = Double.NEGATIVE_INFINITY;
+                maxY[i] = Double.NEGATIVE_INFINITY;
+                continue;
+            }
+
+            Point topLeftCorner = trace.getTopLeftCorner();
+            Point bottomRightCorner = trace.getBottomRightCorner();
+            minX[i] = topLeftCorner.x_;
+            minY[i] = bottomRightCorner.y_;
+            maxX[i] = bottomRightCorner.x_;
+            maxY[i] = topLeftCorner.y_;
+        }
+
+        index_ = new RTree(minX, minY, maxX, maxY);
+
+        buildIndex_ = false;
+    }
+
+    /**
+     * @brief Returns the Traces of this TraceGroup whose bounding boxes intersect a given range
+     *
+     * @param topLeftCorner
+     *     The top left corner of the range, that is, the minimum abscissa and maximum ordinate
+     * @param bottomRightCorner
+     *     The bottom right corner of the range, that is, the maximum abscissa and minimum ordinate
+     *
+     * @return The indices of the Traces in ascending order
+     */
+    public int[] findTraces (Point topLeftCorner, Point bottomRightCorner) {
+        if (buildIndex_) {
+            buildIndex();
+        }
+
+        return index_.search(topLeftCorner.x_, bottomRightCorner.y_, bottomRightCorner.x_,
+            topLeftCorner.y_);
+    }
+
+    /**
+     * @brief Returns the Traces of this TraceGroup that are close enough to a given Trace to be
+     *        overlapped by it
+     *        Every Trace that is overlapped by the given Trace is returned, but some of the
+     *        returned Traces may not be overlapped by it.
+     *
+     * @param trace
+     *     The given Trace
+     *
+     * @return The indices of the Traces in ascending order
+     */
+    public int[] findOverlapCandidates (Trace trace) {
+        if (trace.size() == 0) {
+            return new int[] {};
+        }
+
+        // The Traces of this TraceGroup may be single Points too.
+        double margin = Trace.OVERLAP_TOLERANCE + Trace.SINGLE_POINT_RADIUS;
+        if (trace.size() == 1) {
+            margin += Trace.SINGLE_POINT_RADIUS;
+        }
+
+        Point topLeftCorner = trace.getTopLeftCorner();
+        Point bottomRightCorner = trace.getBottomRightCorner();
+
+        return this.findTraces(new Point(topLeftCorner.x_ - margin, topLeftCorner.y_ + margin),
+            new Point(bottomRightCorner.x_ + margin, bottomRightCorner.y_ - margin));
+    }
+
+    /**
+     * @brief Returns the Trace of this TraceGroup that is closest to a given Point
+     *        The distance of a Trace from the Point is the distance of its closest Point. Among
+     *        Traces at the same distance, the first one is returned.
+     *
+     * @param point
+     *     The given Point
+     *
+     * @return The index of the closest Trace, or -1 if this TraceGroup has no Points
+     */
+    public int findClosestTrace (final Point point) {
+        if (buildIndex_) {
+            buildIndex();
+        }
+
+        return index_.findNearest(point.x_, point.y_, point.x_, point.y_, new RTree.Distance() {
+            public double distance (int box) {
+                Trace trace = traces_.get(box);
+                if (trace.size() == 0) {
+                    return Double.POSITIVE_INFINITY;
+                }
+
+                return Point.distance(trace.closestPoint(point), point);
+            }
+        });
+    }
+
+    /**
+     * @brief Calculates every cached property of this TraceGroup and its Traces that queries read
+     *        Getters and queries calculate these properties lazily, which writes on this
+     *        TraceGroup. After this method returns, and until this TraceGroup or its Traces are
+     *        modified, the Trace getters, findTraces, findOverlapCandidates and findClosestTrace
+     *        only read, so they can be called by many threads.
+     */
+    public void calculateProperties () {
+        for (Trace trace_ : traces_) {
+            trace_.calculateProperties();
+        }
+
+        this.buildIndex();
+    }
+
     /**
      * @brief Returns the two closest Traces of the two TraceGroups
      *        The Traces returned are not the actual Trace objects in the TraceGroups but copies of
@@ -480,6 +613,8 @@ public class TraceGroup implements Iterable<Trace> {
         calculateCorners_ = true;
 
         calculateCenterOfMass_ = true;
+
+        buildIndex_ = true;
     }
 
     private ArrayList<Trace> traces_; //!< The Traces of this TraceGroup
@@ -494,4 +629,7 @@ public class TraceGroup implements Iterable<Trace> {
     private boolean calculateCenterOfMass_; //!< Flag indicating that the center of mass should be
                                             //!< recalculated
 
+    private RTree index_; //!< The spatial index over the bounding boxes of the Traces
+    private boolean buildIndex_; //!< Flag indicating that the spatial index should be rebuilt
+
 }
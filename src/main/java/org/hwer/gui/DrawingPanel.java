@@ -183,7 +183,7 @@ class DrawingPanel extends JPanel implements MouseInputListener {
 
         if (isEraseTrace(currentTrace_)) {
             TraceGroup toBeRemoved = new TraceGroup();
-            for (int i = 0; i < traceGroup_.size(); i++) {
+            for (int i : traceGroup_.findOverlapCandidates(currentTrace_)) {
                 if (Trace.areOverlapped(traceGroup_.get(i), currentTrace_)) {
                     toBeRemoved.add(traceGroup_.get(i));
                 }
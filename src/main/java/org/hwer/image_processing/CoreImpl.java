@@ -98,4 +98,31 @@ public class CoreImpl implements Core {
         return (new ImageImpl(image));
     }
 
+    /**
+     * @brief Transforms a TraceGroup to an Image and writes the Image, as a vector, on the given
+     *        array
+     *
+     * @param traceGroup
+     *     The TraceGroup to be transformed
+     * @param width
+     *     The width of the Image
+     * @param height
+     *     The height of the Image
+     * @param thickness
+     *     The thickness of lines on the image
+     * @param min
+     *     The minimum value of the vector values
+     * @param max
+     *     The maximum value of the vector values
+     * @param vector
+     *     The array to write the vector on
+     */
+    public void printTraceGroup (TraceGroup traceGroup, int width, int height, int thickness,
+                                 double min, double max, double[] vector) {
+        double[] imageVector = printTraceGroup(traceGroup, width, height, thickness).toVector(min,
+            max);
+
+        System.arraycopy(imageVector, 0, vector, 0, imageVector.length);
+    }
+
 }
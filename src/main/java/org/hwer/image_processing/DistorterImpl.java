@@ -7,6 +7,7 @@ import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Image;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.util.Random;
 
 
@@ -24,10 +25,23 @@ public class DistorterImpl implements Distorter {
      * @return The distorted Image
      */
     public Image distort (Image image) {
-        Random random = new Random();
+        return this.distort(image, new Random());
+    }
+
+    /**
+     * @brief Distorts an Image so that in can be re evaluated by a neural network
+     *
+     * @param image
+     *     The Image to be distorted
+     * @param random
+     *     The random generator that chooses the distortion
+     *
+     * @return The distorted Image
+     */
+    public Image distort (Image image, Random random) {
         double distortionType = random.nextDouble();
 
-        BufferedImage bufferedImage = ((ImageImpl) image).getImplementation();
+        BufferedImage bufferedImage = DistorterImpl.toBufferedImage(image);
 
         BufferedImage transformedImage = new BufferedImage(bufferedImage.getWidth(),
             bufferedImage.getHeight(), bufferedImage.getType());
@@ -63,4 +77,29 @@ public class DistorterImpl implements Distorter {
         return (new ImageImpl(transformedImage));
     }
 
+    /**
+     * @brief Returns the java.awt.image.BufferedImage of an Image
+     *        Images that are not ImageImpls are copied to a new java.awt.image.BufferedImage.
+     *
+     * @param image
+     *     The Image
+     *
+     * @return The java.awt.image.BufferedImage of the Image
+     */
+    private static BufferedImage toBufferedImage (Image image) {
+        if (image instanceof ImageImpl) {
+            return ((ImageImpl) image).getImplementation();
+        }
+
+        RasterImageImpl rasterImage = (RasterImageImpl) image;
+
+        BufferedImage bufferedImage = new BufferedImage(rasterImage.getWidth(),
+            rasterImage.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+
+        byte[] pixels = ((DataBufferByte) bufferedImage.getRaster().getDataBuffer()).getData();
+        System.arraycopy(rasterImage.getPixels(), 0, pixels, 0, pixels.length);
+
+        return bufferedImage;
+    }
+
 }
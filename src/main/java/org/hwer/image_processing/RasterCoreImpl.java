@@ -0,0 +1,243 @@
+package org.hwer.image_processing;
+
+
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Core;
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Image;
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+
+import java.util.Arrays;
+
+
+/**
+ * @class RasterCoreImpl
+ * @brief Implementation of the Core API from NeuralNetworkImpl that rasterizes Traces directly
+ *        into an array of pixels
+ *        The TraceGroup is not copied; its Points are scaled, centered and flipped on the fly
+ *        with exactly the same arithmetic as in CoreImpl, and the lines are drawn with the same
+ *        pixel rules that java.awt uses for lines of one pixel width, so the Images created are
+ *        identical to the ones of CoreImpl when the thickness is one.
+ */
+public class RasterCoreImpl implements Core {
+    /**
+     * @brief Transforms a TraceGroup to an Image
+     *
+     * @param traceGroup
+     *     The TraceGroup to be transformed
+     * @param width
+     *     The width of the Image
+     * @param height
+     *     The height of the Image
+     * @param thickness
+     *     The thickness of lines on the image. Thicker lines are drawn with a square brush, which
+     *     is not guaranteed to match CoreImpl.
+     *
+     * @return The Image created by the given TraceGroup
+     */
+    public Image printTraceGroup (TraceGroup traceGroup, int width, int height, int thickness) {
+        byte[] pixels = new byte[width * height];
+
+        this.rasterize(traceGroup, width, height, thickness, pixels);
+
+        return (new RasterImageImpl(width, height, pixels));
+    }
+
+    /**
+     * @brief Transforms a TraceGroup to an Image and writes the Image, as a vector, on the given
+     *        array
+     *        The TraceGroup is rasterized on a buffer of the calling thread, which is reused by
+     *        the next calls, so no memory is allocated once the buffer is large enough.
+     *
+     * @param traceGroup
+     *     The TraceGroup to be transformed
+     * @param width
+     *     The width of the Image
+     * @param height
+     *     The height of the Image
+     * @param thickness
+     *     The thickness of lines on the image
+     * @param min
+     *     The minimum value of the vector values
+     * @param max
+     *     The maximum value of the vector values
+     * @param vector
+     *     The array to write the vector on
+     */
+    public void printTraceGroup (TraceGroup traceGroup, int width, int height, int thickness,
+                                 double min, double max, double[] vector) {
+        int numberOfPixels = width * height;
+
+        byte[] pixels = pixels_.get();
+        if (pixels.length < numberOfPixels) {
+            pixels = new byte[numberOfPixels];
+
+            pixels_.set(pixels);
+        }
+        else {
+            Arrays.fill(pixels, 0, numberOfPixels, (byte) 0);
+        }
+
+        this.rasterize(traceGroup, width, height, thickness, pixels);
+
+        RasterImageImpl.toVector(pixels, numberOfPixels, min, max, vector);
+    }
+
+    /**
+     * @brief Draws a TraceGroup on an array of pixels
+     *
+     * @param traceGroup
+     *     The TraceGroup to be drawn
+     * @param width
+     *     The width of the image
+     * @param height
+     *     The height of the image
+     * @param thickness
+     *     The thickness of the lines
+     * @param pixels
+     *     The pixels, stored row-major. They should all be black.
+     */
+    private void rasterize (TraceGroup traceGroup, int width, int height, int thickness,
+                            byte[] pixels) {
+        double minX = traceGroup.getTopLeftCorner().x_;
+        double minY = traceGroup.getBottomRightCorner().y_;
+
+        double divisionFactor = Math.max(traceGroup.getWidth(), traceGroup.getHeight());
+
+        double scaleX = 0.6 * width / divisionFactor;
+        double scaleY = 0.6 * height / divisionFactor;
+
+        // The corners of the scaled TraceGroup, computed the way CoreImpl computes them.
+        double left = (minX - minX) * scaleX;
+        double right = (traceGroup.getBottomRightCorner().x_ - minX) * scaleX;
+        double bottom = (minY - minY) * scaleY;
+        double top = (traceGroup.getTopLeftCorner().y_ - minY) * scaleY;
+
+        double offsetX = - (width / 2 - (left + (right - left) / 2));
+        double offsetY = - (height / 2 - (bottom + (top - bottom) / 2));
+
+        for (Trace trace : traceGroup) {
+            int numberOfLines = trace.size() - 1;
+
+            for (int i = 0; i < numberOfLines; i++) {
+                Point start = trace.get(i);
+                Point end = trace.get(i + 1);
+
+                this.drawLine(pixels, width, height, thickness,
+                    (int) ((start.x_ - minX) * scaleX - offsetX),
+                    (int) ((start.y_ - minY) * scaleY - offsetY),
+                    (int) ((end.x_ - minX) * scaleX - offsetX),
+                    (int) ((end.y_ - minY) * scaleY - offsetY));
+            }
+        }
+    }
+
+    /**
+     * @brief Draws a line on an array of pixels
+     *        The line steps one pixel at a time along its major axis and the minor coordinate is
+     *        rounded to the nearest pixel, with ties rounded towards the end of the line, which
+     *        are the rules of java.awt for lines of one pixel width. The y axis is flipped while
+     *        drawing.
+     *
+     * @param pixels
+     *     The pixels, stored row-major
+     * @param width
+     *     The width of the image
+     * @param height
+     *     The height of the image
+     * @param thickness
+     *     The thickness of the line
+     * @param x1
+     *     The abscissa of the start of the line
+     * @param y1
+     *     The ordinate of the start of the line
+     * @param x2
+     *     The abscissa of the end of the line
+     * @param y2
+     *     The ordinate of the end of the line
+     */
+    private void drawLine (byte[] pixels, int width, int height, int thickness, int x1, int y1,
+                           int x2, int y2) {
+        long dx = (long) x2 - x1;
+        long dy = (long) y2 - y1;
+
+        long majorDelta = Math.max(Math.abs(dx), Math.abs(dy));
+        if (majorDelta == 0) {
+            this.setPixel(pixels, width, height, thickness, x1, y1);
+
+            return;
+        }
+
+        boolean xMajor = Math.abs(dx) >= Math.abs(dy);
+
+        long majorStart = xMajor ? x1 : y1;
+        long majorStep = Long.signum(xMajor ? dx : dy);
+        long minorStart = xMajor ? y1 : x1;
+        long minorStep = Long.signum(xMajor ? dy : dx);
+        long minorDelta = Math.abs(xMajor ? dy : dx);
+        long majorSize = xMajor ? width : height;
+
+        // Only the steps that land inside the image along the major axis are drawn.
+        long firstStep = 0;
+        long lastStep = majorDelta;
+        if (majorStep > 0) {
+            firstStep = Math.max(firstStep, - majorStart);
+            lastStep = Math.min(lastStep, majorSize - 1 - majorStart);
+        }
+        else {
+            firstStep = Math.max(firstStep, majorStart - (majorSize - 1));
+            lastStep = Math.min(lastStep, majorStart);
+        }
+
+        for (long step = firstStep; step <= lastStep; step++) {
+            long major = majorStart + majorStep * step;
+            long minor = minorStart + minorStep *
+                ((2 * step * minorDelta + majorDelta) / (2 * majorDelta));
+
+            if (xMajor) {
+                this.setPixel(pixels, width, height, thickness, major, minor);
+            }
+            else {
+                this.setPixel(pixels, width, height, thickness, minor, major);
+            }
+        }
+    }
+
+    /**
+     * @brief Sets a pixel, or a square of pixels for thick lines, to white
+     *        The y axis is flipped, so that the origin of the Image is on the bottom left corner.
+     *
+     * @param pixels
+     *     The pixels, stored row-major
+     * @param width
+     *     The width of the image
+     * @param height
+     *     The height of the image
+     * @param thickness
+     *     The thickness of the line
+     * @param x
+     *     The abscissa of the pixel
+     * @param y
+     *     The ordinate of the pixel
+     */
+    private void setPixel (byte[] pixels, int width, int height, int thickness, long x, long y) {
+        long first = - ((thickness - 1) / 2);
+        long last = first + Math.max(thickness, 1) - 1;
+
+        for (long i = y + first; i <= y + last; i++) {
+            for (long j = x + first; j <= x + last; j++) {
+                if (j >= 0 && j < width && i >= 0 && i < height) {
+                    pixels[(int) ((height - 1 - i) * width + j)] = (byte) 0xFF;
+                }
+            }
+        }
+    }
+
+    private final ThreadLocal<byte[]> pixels_ = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue () {
+            return new byte[0];
+        }
+    }; //!< The pixels that each thread rasterizes the vectors on
+
+}
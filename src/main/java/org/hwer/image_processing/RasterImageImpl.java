@@ -0,0 +1,110 @@
+package org.hwer.image_processing;
+
+
+import org.hwer.engine.classifiers.neural_network.NeuralNetworkImpl.Image;
+
+
+/**
+ * @class RasterImageImpl
+ * @brief Implementation of the Image API from NeuralNetworkImpl on a plain array of gray pixels
+ *        The pixels are stored row-major, one byte for each pixel, in the same layout as a
+ *        java.awt.image.BufferedImage of type TYPE_BYTE_GRAY.
+ */
+public class RasterImageImpl implements Image {
+    /**
+     * @brief Constructor
+     *
+     * @param width
+     *     The width of the Image
+     * @param height
+     *     The height of the Image
+     * @param pixels
+     *     The pixels of the Image
+     */
+    public RasterImageImpl (int width, int height, byte[] pixels) {
+        width_ = width;
+        height_ = height;
+        pixels_ = pixels;
+    }
+
+    /**
+     * @brief Returns a clone of this Image
+     *
+     * @return A clone of this Image
+     */
+    public Image clone () {
+        return new RasterImageImpl(width_, height_, pixels_.clone());
+    }
+
+    /**
+     * @brief Transforms this Image to a vector
+     *
+     * @param min
+     *     The minimum value of the vector values
+     * @param max
+     *     The maximum value of the vector values
+     *
+     * @return The vector created by this Image
+     */
+    public double[] toVector (double min, double max) {
+        double[] vector = new double[pixels_.length];
+
+        RasterImageImpl.toVector(pixels_, pixels_.length, min, max, vector);
+
+        return vector;
+    }
+
+    /**
+     * @brief Transforms an array of gray pixels to a vector
+     *
+     * @param pixels
+     *     The pixels
+     * @param numberOfPixels
+     *     The number of pixels, from the start of the array, to transform
+     * @param min
+     *     The minimum value of the vector values
+     * @param max
+     *     The maximum value of the vector values
+     * @param vector
+     *     The array to write the vector on
+     */
+    static void toVector (byte[] pixels, int numberOfPixels, double min, double max,
+                          double[] vector) {
+        for (int i = 0; i < numberOfPixels; i++) {
+            vector[i] = (pixels[i] & 0xFF) * (max - min) / 255 + min;
+        }
+    }
+
+    /**
+     * @brief Getter method for the width of this Image
+     *
+     * @return The width of this Image
+     */
+    public int getWidth () {
+        return width_;
+    }
+
+    /**
+     * @brief Getter method for the height of this Image
+     *
+     * @return The height of this Image
+     */
+    public int getHeight () {
+        return height_;
+    }
+
+    /**
+     * @brief Getter method for the pixels of this Image
+     *
+     * @return The pixels of this Image, stored row-major
+     */
+    public byte[] getPixels () {
+        return pixels_;
+    }
+
+    private final int width_; //!< The width of this Image
+    private final int height_; //!< The height of this Image
+
+    private final byte[] pixels_; //!< The pixels of this Image, stored row-major
+
+}
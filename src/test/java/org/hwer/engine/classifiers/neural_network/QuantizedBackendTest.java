@@ -0,0 +1,260 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+import org.hwer.image_processing.DistorterImpl;
+import org.hwer.image_processing.RasterCoreImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class QuantizedBackendTest
+ * @brief Checks that QuantizedBackend gives the same top-1 labels with ScalarBackend on the
+ *        neural networks that are shipped with the recognizer
+ *        The corpus is made of random lines, arcs and scribbles, which are drawn far more
+ *        loosely than real symbols. Most of the disagreements are on samples where the two best
+ *        outputs of the reference neural network are almost tied, so the agreement is required
+ *        separately on the samples that the reference classifies with a clear margin.
+ */
+public class QuantizedBackendTest {
+    /**
+     * @brief Evaluates every bundled neural network with both Backends on the same corpus and
+     *        requires the top-1 labels to agree on at least MINIMUM_AGREEMENT of the corpus and
+     *        at least MINIMUM_CONFIDENT_AGREEMENT of its confidently classified samples
+     *
+     * @throws IOException
+     *     If a neural network can not be loaded
+     */
+    @Test
+    public void agreesWithScalarBackend () throws IOException {
+        TraceGroup[] corpus = this.createCorpus();
+
+        for (String name : NEURAL_NETWORKS) {
+            NeuralNetworkImpl reference = this.load(name, new ScalarBackend());
+            NeuralNetworkImpl quantized = this.load(name, new QuantizedBackend());
+
+            this.assertAgreement(name, reference, quantized, corpus);
+        }
+    }
+
+    /**
+     * @brief Quantizes a neural network that is loaded from a ModelFile and requires the same
+     *        agreement with the double precision neural network that it was converted from
+     *
+     * @throws IOException
+     *     If the neural network can not be loaded or converted
+     */
+    @Test
+    public void agreesWithScalarBackendWhenLoadedFromModelFile () throws IOException {
+        TraceGroup[] corpus = this.createCorpus();
+
+        File file = temporaryFolder_.newFile("operators_neural_network.model");
+        InputStream inputStream = this.open("operators");
+        try {
+            ModelFile.convert(inputStream, file);
+        }
+        finally {
+            inputStream.close();
+        }
+
+        NeuralNetworkImpl reference = this.load("operators", new ScalarBackend());
+        NeuralNetworkImpl quantized = new NeuralNetworkImpl(new RasterCoreImpl(),
+            new DistorterImpl(), new QuantizedBackend());
+        quantized.loadFromModelFile(file);
+
+        this.assertAgreement("operators", reference, quantized, corpus);
+    }
+
+    /**
+     * @brief Requires two neural networks to agree on the top-1 labels of a corpus
+     *
+     * @param name
+     *     The name of the neural networks
+     * @param reference
+     *     The double precision neural network
+     * @param quantized
+     *     The quantized neural network
+     * @param corpus
+     *     The corpus
+     */
+    private void assertAgreement (String name, NeuralNetworkImpl reference,
+                                  NeuralNetworkImpl quantized, TraceGroup[] corpus) {
+        double agreement = QuantizedBackend.agreement(reference, quantized, corpus);
+        assertTrue(name + ": " + agreement, agreement >= MINIMUM_AGREEMENT);
+
+        List<TraceGroup> confidentSamples = new ArrayList<>();
+        for (TraceGroup traceGroup : corpus) {
+            double[] output = reference.evaluate(reference.createInput(traceGroup));
+            Arrays.sort(output);
+
+            double best = output[output.length - 1];
+            if (best - output[output.length - 2] >= CONFIDENCE_MARGIN * best) {
+                confidentSamples.add(traceGroup);
+            }
+        }
+
+        double confidentAgreement = QuantizedBackend.agreement(reference, quantized,
+            confidentSamples.toArray(new TraceGroup[confidentSamples.size()]));
+        assertTrue(name + ": " + confidentAgreement,
+            confidentAgreement >= MINIMUM_CONFIDENT_AGREEMENT);
+    }
+
+    /**
+     * @brief Loads a bundled neural network with the given Backend
+     *
+     * @param name
+     *     The name of the neural network
+     * @param backend
+     *     The Backend
+     *
+     * @return The loaded neural network
+     *
+     * @throws IOException
+     *     If the neural network can not be loaded
+     */
+    private NeuralNetworkImpl load (String name, NeuralNetworkImpl.Backend backend)
+        throws IOException {
+        NeuralNetworkImpl neuralNetwork = new NeuralNetworkImpl(new RasterCoreImpl(),
+            new DistorterImpl(), backend);
+
+        InputStream inputStream = this.open(name);
+        try {
+            neuralNetwork.loadFromInputStream(inputStream);
+        }
+        finally {
+            inputStream.close();
+        }
+
+        return neuralNetwork;
+    }
+
+    /**
+     * @brief Opens the resource of a bundled neural network
+     *
+     * @param name
+     *     The name of the neural network
+     *
+     * @return The InputStream of the resource
+     */
+    private InputStream open (String name) {
+        InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(
+            "neural_networks/" + name + "_neural_network.bin");
+        assertNotNull(name, inputStream);
+
+        return inputStream;
+    }
+
+    /**
+     * @brief Creates a corpus of TraceGroups with one or two random strokes each
+     *
+     * @return The corpus
+     */
+    private TraceGroup[] createCorpus () {
+        Random random = new Random(3);
+
+        TraceGroup[] corpus = new TraceGroup[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            corpus[i] = new TraceGroup();
+
+            int numberOfStrokes = 1 + random.nextInt(2);
+            for (int j = 0; j < numberOfStrokes; j++) {
+                corpus[i].add(this.createStroke(random));
+            }
+        }
+
+        return corpus;
+    }
+
+    /**
+     * @brief Creates a random line, arc or scribble inside a square of side STROKE_SIZE
+     *
+     * @param random
+     *     The random generator
+     *
+     * @return The stroke created
+     */
+    private Trace createStroke (Random random) {
+        Trace trace = new Trace();
+
+        double noise = STROKE_SIZE * 0.02;
+        switch (random.nextInt(3)) {
+            case 0: {
+                double angle = random.nextDouble() * Math.PI;
+                int numberOfPoints = 8 + random.nextInt(10);
+                for (int i = 0; i < numberOfPoints; i++) {
+                    double u = (((double) i) / (numberOfPoints - 1) - 0.5) * STROKE_SIZE;
+                    trace.add(new Point(u * Math.cos(angle) + random.nextGaussian() * noise,
+                        u * Math.sin(angle) + random.nextGaussian() * noise));
+                }
+                break;
+            }
+            case 1: {
+                double startAngle = random.nextDouble() * 2 * Math.PI;
+                double sweep = (1 + random.nextDouble() * 1.2) * Math.PI;
+                int numberOfPoints = 15 + random.nextInt(15);
+                double radiusX = STROKE_SIZE * (0.3 + 0.2 * random.nextDouble());
+                double radiusY = STROKE_SIZE * (0.3 + 0.2 * random.nextDouble());
+                for (int i = 0; i < numberOfPoints; i++) {
+                    double angle = startAngle + sweep * i / (numberOfPoints - 1);
+                    trace.add(new Point(radiusX * Math.cos(angle) + random.nextGaussian() * noise,
+                        radiusY * Math.sin(angle) + random.nextGaussian() * noise));
+                }
+                break;
+            }
+            default: {
+                double x = (random.nextDouble() - 0.5) * STROKE_SIZE;
+                double y = (random.nextDouble() - 0.5) * STROKE_SIZE;
+                double angle = random.nextDouble() * 2 * Math.PI;
+                int numberOfPoints = 10 + random.nextInt(20);
+                for (int i = 0; i < numberOfPoints; i++) {
+                    angle += (random.nextDouble() - 0.5) * 0.8;
+                    x += STROKE_SIZE * 0.06 * Math.cos(angle);
+                    y += STROKE_SIZE * 0.06 * Math.sin(angle);
+                    trace.add(new Point(x, y));
+                }
+                break;
+            }
+        }
+
+        return trace;
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder_ = new TemporaryFolder(); //!< The folder of the
+                                                                     //!< converted ModelFiles
+
+    private static final String[] NEURAL_NETWORKS = {"cascade", "numbers", "operators",
+        "letters", "variables"}; //!< The names of the bundled neural networks
+
+    private static final int CORPUS_SIZE = 1000; //!< The number of TraceGroups in the corpus
+
+    private static final double STROKE_SIZE = 100; //!< The side of the square of each stroke
+
+    private static final double CONFIDENCE_MARGIN = 0.1; //!< The minimum margin of the best
+                                                         //!< output over the second best one,
+                                                         //!< relative to the best output, for a
+                                                         //!< sample to be confidently classified
+
+    private static final double MINIMUM_AGREEMENT = 0.93; //!< The minimum agreement on the
+                                                          //!< whole corpus
+
+    private static final double MINIMUM_CONFIDENT_AGREEMENT = 0.97; //!< The minimum agreement on
+                                                                    //!< the confidently
+                                                                    //!< classified samples
+
+}
@@ -0,0 +1,104 @@
+package org.hwer.engine.classifiers.neural_network;
+
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+
+/**
+ * @class VectorBackendTest
+ * @brief Checks that VectorBackend gives exactly the same results with ScalarBackend on the
+ *        neural networks that are shipped with the recognizer
+ */
+public class VectorBackendTest {
+    /**
+     * @brief Evaluates every bundled neural network with both Backends, one input at a time and
+     *        in batches, and requires bit-identical outputs
+     *
+     * @throws IOException
+     *     If a neural network can not be loaded
+     */
+    @Test
+    public void givesTheSameOutputsAsScalarBackend () throws IOException {
+        for (String name : NEURAL_NETWORKS) {
+            NeuralNetworkImpl scalar = this.load(name, new ScalarBackend());
+            NeuralNetworkImpl vector = this.load(name, new VectorBackend());
+
+            double[][] inputs = this.createInputs(scalar.getSizesOfLayers()[0]);
+
+            for (double[] input : inputs) {
+                assertArrayEquals(name, scalar.feedForward(input), vector.feedForward(input), 0);
+            }
+
+            double[][] scalarOutputs = scalar.feedForward(inputs);
+            double[][] vectorOutputs = vector.feedForward(inputs);
+            for (int i = 0; i < inputs.length; i++) {
+                assertArrayEquals(name, scalarOutputs[i], vectorOutputs[i], 0);
+            }
+        }
+    }
+
+    /**
+     * @brief Loads a bundled neural network with the given Backend
+     *
+     * @param name
+     *     The name of the neural network
+     * @param backend
+     *     The Backend
+     *
+     * @return The loaded neural network
+     *
+     * @throws IOException
+     *     If the neural network can not be loaded
+     */
+    private NeuralNetworkImpl load (String name, NeuralNetworkImpl.Backend backend)
+        throws IOException {
+        InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(
+            "neural_networks/" + name + "_neural_network.bin");
+        assertNotNull(name, inputStream);
+
+        NeuralNetworkImpl neuralNetwork = new NeuralNetworkImpl(null, null, backend);
+        try {
+            neuralNetwork.loadFromInputStream(inputStream);
+        }
+        finally {
+            inputStream.close();
+        }
+
+        return neuralNetwork;
+    }
+
+    /**
+     * @brief Creates inputs that look like the images of symbols: mostly background pixels with
+     *        a few foreground ones
+     *
+     * @param inputSize
+     *     The size of each input
+     *
+     * @return The inputs
+     */
+    private double[][] createInputs (int inputSize) {
+        Random random = new Random(7);
+
+        double[][] inputs = new double[NUMBER_OF_INPUTS][inputSize];
+        for (double[] input : inputs) {
+            for (int i = 0; i < inputSize; i++) {
+                input[i] = (random.nextDouble() < 0.1) ? 1 : - 1;
+            }
+        }
+
+        return inputs;
+    }
+
+    private static final String[] NEURAL_NETWORKS = {"cascade", "numbers", "operators",
+        "letters", "variables"}; //!< The names of the bundled neural networks
+
+    private static final int NUMBER_OF_INPUTS = 500; //!< The number of inputs to evaluate
+
+}
@@ -0,0 +1,494 @@
+package org.hwer.engine.parsers;
+
+
+import org.hwer.engine.parsers.GrammarParser.Grammar;
+import org.hwer.engine.parsers.grammars.GeometricalGrammar;
+import org.hwer.engine.symbols.Symbol;
+import org.hwer.engine.symbols.SymbolFactory;
+import org.hwer.engine.symbols.SymbolFactory.Classes;
+import org.hwer.engine.symbols.SymbolFactory.Labels;
+import org.hwer.engine.utilities.Utilities;
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * @class GrammarParserTest
+ * @brief Checks that GrammarParser, which parses the paths of a group of Symbols until their
+ *        relations stop changing, gives the same equations as parsing every path exactly twice
+ */
+public class GrammarParserTest {
+    /**
+     * @brief Parses random equations with fractions, square roots and exponents
+     *        Ambiguous Symbols decide what they are from the relations of the first pass, so on
+     *        some of these equations a single pass gives a different equation.
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    @Test
+    public void parsesNestedEquationsLikeTwoPasses () throws Exception {
+        this.assertParsesLikeTwoPasses(false);
+    }
+
+    /**
+     * @brief Parses random rows of numbers, variables, exponents, pluses and minuses
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    @Test
+    public void parsesFlatEquationsLikeTwoPasses () throws Exception {
+        this.assertParsesLikeTwoPasses(true);
+    }
+
+    /**
+     * @brief Parses the same random equations with GrammarParser and with the two-pass algorithm
+     *        and requires the same equations
+     *
+     * @param flat
+     *     Whether the equations are single rows of Symbols
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    private void assertParsesLikeTwoPasses (boolean flat) throws Exception {
+        GrammarParser grammarParser = new GrammarParser(new GeometricalGrammar());
+        grammarParser.logger_.setLevel(Level.OFF);
+
+        Grammar grammar = new GeometricalGrammar();
+
+        for (int i = 0; i < NUMBER_OF_EQUATIONS; i++) {
+            EquationGenerator equationGenerator = new EquationGenerator(new Random(i), flat);
+
+            grammarParser.parse(equationGenerator.createSymbols());
+
+            Symbol[] symbols = equationGenerator.createSymbols();
+            this.parseRecursively(grammar, symbols);
+            for (Symbol symbol : symbols) {
+                if (symbol.getClazz() == Classes.AMBIGUOUS) {
+                    symbol.reEvaluate(true);
+                }
+            }
+
+            assertEquals("equation " + i, this.buildEquation(symbols),
+                grammarParser.getEquation());
+        }
+    }
+
+    /**
+     * @brief Parses a group of Symbols and, recursively, the children of each Symbol at each
+     *        position, parsing every path twice
+     *        This is the algorithm that GrammarParser used before it parsed the paths until
+     *        their relations stopped changing.
+     *
+     * @param grammar
+     *     The Grammar
+     * @param symbols
+     *     The Symbols
+     */
+    private void parseRecursively (Grammar grammar, Symbol[] symbols) {
+        if (symbols.length == 0) {
+            return;
+        }
+        if (symbols.length == 1) {
+            symbols[0].reEvaluate(true);
+            return;
+        }
+
+        Arrays.sort(symbols, new Comparator<Symbol>() {
+            public int compare (Symbol symbol1, Symbol symbol2) {
+                return Double.compare(symbol1.getTraceGroup().getTopLeftCorner().x_,
+                    symbol2.getTraceGroup().getTopLeftCorner().x_);
+            }
+        });
+
+        Hashtable<BitSet, int[]> pathsTable = new Hashtable<BitSet, int[]>();
+        for (int i = 0; i < symbols.length - 1; i++) {
+            for (int[] path : this.processPath(symbols, i, i + 1)) {
+                pathsTable.put(Utilities.pathKey(path), path);
+            }
+        }
+
+        int[][] paths = pathsTable.values().toArray(new int[pathsTable.size()][]);
+        Arrays.sort(paths, new Comparator<int[]>() {
+            public int compare (int[] path1, int[] path2) {
+                if (path1[0] != path2[0]) {
+                    return Integer.compare(path1[0], path2[0]);
+                }
+
+                return Integer.compare(path1[1], path2[1]);
+            }
+        });
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int[] path : paths) {
+                grammar.parse(symbols[path[0]], symbols[path[1]]);
+            }
+        }
+
+        for (Symbol symbol : symbols) {
+            for (List<Symbol> samePositionChildren : symbol.getChildren()) {
+                Symbol[] children = samePositionChildren.toArray(
+                    new Symbol[samePositionChildren.size()]);
+
+                this.parseRecursively(grammar, children);
+
+                samePositionChildren.clear();
+                for (Symbol child : children) {
+                    if (child.getParent() == symbol) {
+                        samePositionChildren.add(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Finds the paths to parse between two consecutive Symbols
+     *        When the line that connects the two Symbols crosses a third Symbol, the paths go
+     *        through the third Symbol instead.
+     *
+     * @param symbols
+     *     The Symbols sorted by abscissa
+     * @param index1
+     *     The index of the first Symbol
+     * @param index2
+     *     The index of the second Symbol
+     *
+     * @return The paths, as pairs of indices into the given Symbols
+     */
+    private int[][] processPath (Symbol[] symbols, int index1, int index2) {
+        TraceGroup traceGroup1 = symbols[index1].getTraceGroup();
+        TraceGroup traceGroup2 = symbols[index2].getTraceGroup();
+
+        Trace connectionLine = new Trace();
+        Point[] closestPoints = TraceGroup.closestPoints(traceGroup1, traceGroup2);
+        connectionLine.add(closestPoints[0]);
+        connectionLine.add(closestPoints[1]);
+
+        for (int i = 0; i < symbols.length; i++) {
+            if (i == index1 || i == index2) {
+                continue;
+            }
+
+            for (Trace trace : symbols[i].getTraceGroup()) {
+                if (Trace.areOverlapped(connectionLine, trace)) {
+                    double x = symbols[i].getTraceGroup().getTopLeftCorner().x_;
+
+                    return new int[][] {
+                        x < traceGroup1.getTopLeftCorner().x_ ? new int[] {i, index1} :
+                            new int[] {index1, i},
+                        x < traceGroup2.getTopLeftCorner().x_ ? new int[] {i, index2} :
+                            new int[] {index2, i}
+                    };
+                }
+            }
+        }
+
+        return new int[][] {{index1, index2}};
+    }
+
+    /**
+     * @brief Builds the equation of a group of parsed Symbols
+     *
+     * @param symbols
+     *     The Symbols sorted by abscissa
+     *
+     * @return The equation
+     */
+    private String buildEquation (Symbol[] symbols) {
+        StringBuilder equation = new StringBuilder(symbols[0].buildExpression());
+
+        for (int i = 0; i < symbols.length - 1; i++) {
+            Symbol nextSymbol = symbols[i].getNextSymbol();
+
+            if (nextSymbol != null && nextSymbol.getParent() == null) {
+                equation.append(nextSymbol.buildExpression());
+            }
+        }
+
+        return equation.toString();
+    }
+
+    /**
+     * @class EquationGenerator
+     * @brief Draws a random equation as boxes and lines, each one labeled with the Symbol it
+     *        stands for
+     */
+    private static class EquationGenerator {
+        /**
+         * @brief Constructor
+         *
+         * @param random
+         *     The random generator
+         * @param flat
+         *     Whether the equation is a single row of Symbols
+         */
+        EquationGenerator (Random random, boolean flat) {
+            random_ = random;
+            flat_ = flat;
+
+            this.drawRow(0, 0, 100, 0);
+        }
+
+        /**
+         * @brief Creates a new Symbol for each of the drawn Symbols
+         *
+         * @return The Symbols created
+         *
+         * @throws Exception
+         *     If a Symbol can not be created
+         */
+        Symbol[] createSymbols () throws Exception {
+            Symbol[] symbols = new Symbol[labels_.size()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = SymbolFactory.getInstance().create(labels_.get(i),
+                    traceGroups_.get(i));
+            }
+
+            return symbols;
+        }
+
+        /**
+         * @brief Draws a row of Symbols
+         *
+         * @param x
+         *     The abscissa where the row starts
+         * @param y
+         *     The ordinate of the center of the row
+         * @param size
+         *     The height of the Symbols of the row
+         * @param depth
+         *     The number of rows that this row is nested in
+         *
+         * @return The width of the row
+         */
+        private double drawRow (double x, double y, double size, int depth) {
+            int numberOfSymbols = flat_ ? 3 + random_.nextInt(8) :
+                1 + random_.nextInt(depth > 1 ? 2 : 4);
+
+            double right = x;
+            for (int i = 0; i < numberOfSymbols; i++) {
+                right += this.drawSymbol(right, y, size, depth) + size * 0.3;
+            }
+
+            return right - x - size * 0.3;
+        }
+
+        /**
+         * @brief Draws a random Symbol
+         *
+         * @param x
+         *     The abscissa where the Symbol starts
+         * @param y
+         *     The ordinate of the center of the row of the Symbol
+         * @param size
+         *     The height of the Symbol
+         * @param depth
+         *     The number of rows that the row of the Symbol is nested in
+         *
+         * @return The width of the Symbol
+         */
+        private double drawSymbol (double x, double y, double size, int depth) {
+            int kind = flat_ ? FLAT_KINDS[random_.nextInt(FLAT_KINDS.length)] :
+                random_.nextInt(depth > 2 ? 2 : 7);
+            double jitter = size * 0.1 * (random_.nextDouble() - 0.5);
+
+            switch (kind) {
+                case 0:
+                case 1:
+                    this.add(this.randomAtom(), this.box(x, y - size / 2 + jitter,
+                        x + size * 0.8, y + size / 2 + jitter));
+                    return size * 0.8;
+                case 2: {
+                    double numeratorWidth = this.drawRow(x + size * 0.2, y + size * 0.9,
+                        size * 0.7, depth + 1);
+                    double denominatorWidth = this.drawRow(x + size * 0.2, y - size * 0.9,
+                        size * 0.7, depth + 1);
+                    double width = Math.max(numeratorWidth, denominatorWidth) + size * 0.4;
+
+                    this.add(this.randomLine(Labels.FRACTION_LINE),
+                        this.horizontalLine(x, x + width, y + jitter));
+                    return width;
+                }
+                case 3: {
+                    double width = this.drawRow(x + size * 0.6, y, size * 0.8, depth + 1);
+
+                    Trace trace = new Trace();
+                    trace.add(new Point(x, y));
+                    trace.add(new Point(x + size * 0.2, y - size * 0.6));
+                    trace.add(new Point(x + size * 0.4, y + size * 0.7));
+                    trace.add(new Point(x + size * 0.7 + width, y + size * 0.7));
+
+                    this.add(Labels.SQUARE_ROOT, trace);
+                    return width + size * 0.8;
+                }
+                case 4:
+                    this.add(this.randomAtom(), this.box(x, y - size / 2, x + size * 0.8,
+                        y + size / 2));
+                    this.add(this.randomAtom(), this.box(x + size * 0.85, y + size * 0.5,
+                        x + size * 1.2, y + size * 0.9));
+                    return size * 1.25;
+                case 5:
+                    this.add(Labels.PLUS, this.horizontalLine(x, x + size * 0.6, y),
+                        this.verticalLine(x + size * 0.3, y - size * 0.3, y + size * 0.3));
+                    return size * 0.6;
+                default:
+                    this.add(this.randomLine(Labels.MINUS),
+                        this.horizontalLine(x, x + size * 0.6, y + jitter));
+                    return size * 0.6;
+            }
+        }
+
+        /**
+         * @brief Returns a random label of a Symbol that is drawn as a box
+         *
+         * @return The label
+         */
+        private Labels randomAtom () {
+            return ATOMS[random_.nextInt(ATOMS.length)];
+        }
+
+        /**
+         * @brief Returns either the label of a horizontal line or the label of the Ambiguous
+         *        Symbol that could be any horizontal line
+         *
+         * @param label
+         *     The label of the horizontal line
+         *
+         * @return The label
+         */
+        private Labels randomLine (Labels label) {
+            return random_.nextBoolean() ? label : Labels.HORIZONTAL_LINE;
+        }
+
+        /**
+         * @brief Adds a drawn Symbol
+         *
+         * @param label
+         *     The label of the Symbol
+         * @param traces
+         *     The Traces of the Symbol
+         */
+        private void add (Labels label, Trace... traces) {
+            TraceGroup traceGroup = new TraceGroup();
+            for (Trace trace : traces) {
+                traceGroup.add(trace);
+            }
+
+            labels_.add(label);
+            traceGroups_.add(traceGroup);
+        }
+
+        /**
+         * @brief Draws the outline of a box
+         *
+         * @param x0
+         *     The abscissa of the left side
+         * @param y0
+         *     The ordinate of the bottom side
+         * @param x1
+         *     The abscissa of the right side
+         * @param y1
+         *     The ordinate of the top side
+         *
+         * @return The Trace drawn
+         */
+        private Trace box (double x0, double y0, double x1, double y1) {
+            Trace trace = new Trace();
+
+            for (int i = 0; i <= 8; i++) {
+                trace.add(new Point(x0 + (x1 - x0) * i / 8, y0));
+            }
+            for (int i = 1; i <= 8; i++) {
+                trace.add(new Point(x1, y0 + (y1 - y0) * i / 8));
+            }
+            for (int i = 1; i <= 8; i++) {
+                trace.add(new Point(x1 - (x1 - x0) * i / 8, y1));
+            }
+            for (int i = 1; i < 8; i++) {
+                trace.add(new Point(x0, y1 - (y1 - y0) * i / 8));
+            }
+
+            return trace;
+        }
+
+        /**
+         * @brief Draws a slightly jagged horizontal line
+         *
+         * @param x0
+         *     The abscissa of the start of the line
+         * @param x1
+         *     The abscissa of the end of the line
+         * @param y
+         *     The ordinate of the line
+         *
+         * @return The Trace drawn
+         */
+        private Trace horizontalLine (double x0, double x1, double y) {
+            Trace trace = new Trace();
+            for (int i = 0; i <= 10; i++) {
+                trace.add(new Point(x0 + (x1 - x0) * i / 10, y + (i % 2) * 0.5));
+            }
+
+            return trace;
+        }
+
+        /**
+         * @brief Draws a slightly jagged vertical line
+         *
+         * @param x
+         *     The abscissa of the line
+         * @param y0
+         *     The ordinate of the start of the line
+         * @param y1
+         *     The ordinate of the end of the line
+         *
+         * @return The Trace drawn
+         */
+        private Trace verticalLine (double x, double y0, double y1) {
+            Trace trace = new Trace();
+            for (int i = 0; i <= 10; i++) {
+                trace.add(new Point(x + (i % 2) * 0.5, y0 + (y1 - y0) * i / 10));
+            }
+
+            return trace;
+        }
+
+        private final Random random_; //!< The random generator
+        private final boolean flat_; //!< Whether the equation is a single row of Symbols
+
+        private final List<Labels> labels_ = new ArrayList<Labels>(); //!< The labels of the
+                                                                      //!< drawn Symbols
+        private final List<TraceGroup> traceGroups_ = new ArrayList<TraceGroup>(); //!< The Traces
+                                                                                   //!< of the drawn
+                                                                                   //!< Symbols
+
+        private static final Labels[] ATOMS = {Labels.ZERO, Labels.ONE, Labels.TWO, Labels.THREE,
+            Labels.LOWER_X, Labels.LOWER_Y, Labels.LOWER_A, Labels.SEVEN, Labels.CIRCLE,
+            Labels.VERTICAL_LINE, Labels.S_LIKE}; //!< The numbers, variables and Ambiguous
+                                                 //!< Symbols that are drawn as boxes
+
+        private static final int[] FLAT_KINDS = {0, 1, 4, 5, 6}; //!< The kinds of Symbols that
+                                                                  //!< are drawn on single rows
+
+    }
+
+    private static final int NUMBER_OF_EQUATIONS = 1000; //!< The number of random equations of
+                                                         //!< each kind
+
+}
@@ -0,0 +1,268 @@
+package org.hwer.engine.partitioners;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class CoverSearchTest
+ * @brief Checks the partitions of CoverSearch against an exhaustive search
+ */
+public class CoverSearchTest {
+    /**
+     * @brief Requires branch and bound, and a beam search that keeps all the partial partitions,
+     *        to find a partition of the best rate that the exhaustive search finds on random
+     *        instances, and to find none when there is none
+     */
+    @Test
+    public void findsTheBestPartition () {
+        Random random = new Random(29);
+
+        for (int i = 0; i < NUMBER_OF_INSTANCES; i++) {
+            Instance instance = new Instance(random);
+            Double bestRate = this.exhaustiveSearch(instance);
+
+            CoverSearch coverSearch = new CoverSearch(instance.paths_, instance.rates_,
+                instance.numberOfTraces_, instance.order_);
+
+            int[] partition = coverSearch.branchAndBound();
+            assertTrue(coverSearch.isOptimal());
+            this.assertPartition(instance, bestRate, partition, coverSearch);
+
+            partition = coverSearch.beam(0);
+            assertTrue(coverSearch.isOptimal());
+            this.assertPartition(instance, bestRate, partition, coverSearch);
+        }
+    }
+
+    /**
+     * @brief Requires a narrow beam search, and a branch and bound search whose deadline has
+     *        passed, to find a partition whenever there is one, without beating the best rate
+     */
+    @Test
+    public void findsAPartitionWithinLimits () {
+        Random random = new Random(31);
+
+        for (int i = 0; i < NUMBER_OF_INSTANCES; i++) {
+            Instance instance = new Instance(random);
+            Double bestRate = this.exhaustiveSearch(instance);
+
+            CoverSearch coverSearch = new CoverSearch(instance.paths_, instance.rates_,
+                instance.numberOfTraces_, instance.order_);
+
+            int[] partition = coverSearch.beam(2);
+            this.assertCover(instance, bestRate, partition, coverSearch);
+
+            partition = coverSearch.branchAndBound(System.nanoTime() - 1);
+            this.assertCover(instance, bestRate, partition, coverSearch);
+        }
+    }
+
+    /**
+     * @brief Requires a partition to be an exact cover of the best rate, or null when there is no
+     *        exact cover
+     *
+     * @param instance
+     *     The instance
+     * @param bestRate
+     *     The best rate of an exact cover, or null if there is none
+     * @param partition
+     *     The partition
+     * @param coverSearch
+     *     The CoverSearch that found the partition
+     */
+    private void assertPartition (Instance instance, Double bestRate, int[] partition,
+                                  CoverSearch coverSearch) {
+        this.assertCover(instance, bestRate, partition, coverSearch);
+
+        if (bestRate != null) {
+            assertEquals(bestRate, coverSearch.getRate(partition), TOLERANCE);
+        }
+    }
+
+    /**
+     * @brief Requires a partition to be an exact cover whose rate does not beat the best rate, or
+     *        null when there is no exact cover
+     *
+     * @param instance
+     *     The instance
+     * @param bestRate
+     *     The best rate of an exact cover, or null if there is none
+     * @param partition
+     *     The partition
+     * @param coverSearch
+     *     The CoverSearch that found the partition
+     */
+    private void assertCover (Instance instance, Double bestRate, int[] partition,
+                              CoverSearch coverSearch) {
+        if (bestRate == null) {
+            assertNull(partition);
+            return;
+        }
+        assertNotNull(partition);
+
+        int[] timesCovered = new int[instance.numberOfTraces_];
+        for (int path : partition) {
+            for (int trace : instance.paths_[path]) {
+                timesCovered[trace]++;
+            }
+        }
+        for (int times : timesCovered) {
+            assertEquals(1, times);
+        }
+
+        assertFalse(coverSearch.getRate(partition) > bestRate + TOLERANCE);
+    }
+
+    /**
+     * @brief Finds the best rate of an exact cover by deciding, for every path in turn, whether
+     *        it is on the partition or not
+     *
+     * @param instance
+     *     The instance
+     *
+     * @return The best rate of an exact cover, or null if there is none
+     */
+    private Double exhaustiveSearch (Instance instance) {
+        double bestRate = this.exhaustiveSearch(instance, 0, new boolean[instance.numberOfTraces_],
+            0);
+
+        return (bestRate == Double.NEGATIVE_INFINITY) ? null : bestRate;
+    }
+
+    /**
+     * @brief Finds the best rate of the exact covers that extend a partial partition with some of
+     *        the paths from a given one onwards
+     *
+     * @param instance
+     *     The instance
+     * @param path
+     *     The index of the first path that may still be added
+     * @param covered
+     *     The Traces covered by the partial partition
+     * @param rate
+     *     The rate of the partial partition
+     *
+     * @return The best rate, or negative infinity if there is no such exact cover
+     */
+    private double exhaustiveSearch (Instance instance, int path, boolean[] covered,
+                                     double rate) {
+        if (path == instance.paths_.length) {
+            for (boolean traceCovered : covered) {
+                if (! traceCovered) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+            }
+
+            return rate;
+        }
+
+        double bestRate = this.exhaustiveSearch(instance, path + 1, covered, rate);
+
+        for (int trace : instance.paths_[path]) {
+            if (covered[trace]) {
+                return bestRate;
+            }
+        }
+
+        for (int trace : instance.paths_[path]) {
+            covered[trace] = true;
+        }
+        bestRate = Math.max(bestRate, this.exhaustiveSearch(instance, path + 1, covered,
+            rate + instance.rates_[path]));
+        for (int trace : instance.paths_[path]) {
+            covered[trace] = false;
+        }
+
+        return bestRate;
+    }
+
+    /**
+     * @class Instance
+     * @brief A random set of candidate paths over a few Traces
+     *        Most instances hold every single Trace as a path, so that they can always be
+     *        covered. The rates are often equal, so that many partitions tie.
+     */
+    private static class Instance {
+        /**
+         * @brief Constructor
+         *
+         * @param random
+         *     The random generator
+         */
+        Instance (Random random) {
+            numberOfTraces_ = 1 + random.nextInt(MAXIMUM_NUMBER_OF_TRACES);
+
+            List<int[]> paths = new ArrayList<int[]>();
+            if (random.nextInt(5) != 0) {
+                for (int trace = 0; trace < numberOfTraces_; trace++) {
+                    paths.add(new int[] {trace});
+                }
+            }
+
+            int numberOfPaths = random.nextInt(3 * numberOfTraces_);
+            for (int i = 0; i < numberOfPaths; i++) {
+                int pathLength = 1 + random.nextInt(Math.min(4, numberOfTraces_));
+
+                List<Integer> traces = new ArrayList<Integer>();
+                while (traces.size() < pathLength) {
+                    int trace = random.nextInt(numberOfTraces_);
+                    if (! traces.contains(trace)) {
+                        traces.add(trace);
+                    }
+                }
+
+                int[] path = new int[pathLength];
+                for (int j = 0; j < pathLength; j++) {
+                    path[j] = traces.get(j);
+                }
+                paths.add(path);
+            }
+            paths_ = paths.toArray(new int[paths.size()][]);
+
+            boolean tiedRates = random.nextBoolean();
+            rates_ = new double[paths_.length];
+            for (int i = 0; i < rates_.length; i++) {
+                rates_[i] = tiedRates ? random.nextInt(3) : random.nextDouble() * paths_[i].length;
+            }
+
+            if (random.nextBoolean()) {
+                List<Integer> order = new ArrayList<Integer>();
+                for (int trace = 0; trace < numberOfTraces_; trace++) {
+                    order.add(random.nextInt(order.size() + 1), trace);
+                }
+
+                order_ = new int[numberOfTraces_];
+                for (int j = 0; j < numberOfTraces_; j++) {
+                    order_[j] = order.get(j);
+                }
+            }
+            else {
+                order_ = null;
+            }
+        }
+
+        private final int numberOfTraces_; //!< The number of Traces
+        private final int[][] paths_; //!< The candidate paths
+        private final double[] rates_; //!< The rate of each path
+        private final int[] order_; //!< The order in which the Traces are covered, or null
+
+    }
+
+    private static final int NUMBER_OF_INSTANCES = 1000; //!< The number of random instances
+    private static final int MAXIMUM_NUMBER_OF_TRACES = 10; //!< The maximum number of Traces of
+                                                            //!< an instance
+
+    private static final double TOLERANCE = 1e-9; //!< The tolerance of the comparison of rates
+
+}
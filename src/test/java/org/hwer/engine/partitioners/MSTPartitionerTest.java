@@ -0,0 +1,155 @@
+package org.hwer.engine.partitioners;
+
+
+import org.hwer.engine.classifiers.Classifier;
+import org.hwer.engine.symbols.Symbol;
+import org.hwer.engine.symbols.SymbolFactory;
+import org.hwer.engine.symbols.SymbolFactory.Labels;
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class MSTPartitionerTest
+ * @brief Checks that sessions of random strokes are always partitioned
+ */
+public class MSTPartitionerTest {
+    /**
+     * @brief Appends and removes random strokes one at a time and requires every call to return
+     *        Symbols that hold each Trace of the session exactly once
+     *        Many of the sessions hold overlapped Traces that are far apart on the minimum
+     *        spanning tree, which no partition can keep on the same Symbol.
+     */
+    @Test
+    public void appendAndRemoveAlwaysPartitionTheSession () {
+        MSTPartitioner partitioner = new MSTPartitioner(new ConstantClassifier());
+        partitioner.logger_.setLevel(Level.OFF);
+
+        Random random = new Random(1);
+
+        for (int session = 0; session < NUMBER_OF_SESSIONS; session++) {
+            List<Trace> traces = new ArrayList<Trace>();
+            Symbol[] symbols = null;
+
+            int numberOfStrokes = 3 + random.nextInt(8);
+            for (int i = 0; i < numberOfStrokes; i++) {
+                Trace trace = this.createStroke(random);
+                traces.add(trace);
+
+                symbols = partitioner.append(symbols, new TraceGroup().add(trace));
+                this.assertCovers(symbols, traces);
+            }
+
+            Trace removed = traces.remove(random.nextInt(traces.size()));
+            symbols = partitioner.remove(symbols, new TraceGroup().add(removed));
+            this.assertCovers(symbols, traces);
+        }
+    }
+
+    /**
+     * @brief Requires a group of Symbols to hold each of the given Traces exactly once
+     *
+     * @param symbols
+     *     The Symbols
+     * @param traces
+     *     The Traces
+     */
+    private void assertCovers (Symbol[] symbols, List<Trace> traces) {
+        Set<Trace> covered = Collections.newSetFromMap(new IdentityHashMap<Trace, Boolean>());
+
+        int numberOfTraces = 0;
+        for (Symbol symbol : symbols) {
+            for (Trace trace : symbol.getTraceGroup()) {
+                covered.add(trace);
+                numberOfTraces++;
+            }
+        }
+
+        assertEquals(traces.size(), numberOfTraces);
+        for (Trace trace : traces) {
+            assertTrue(covered.contains(trace));
+        }
+    }
+
+    /**
+     * @brief Creates a random stroke
+     *        One stroke in four is drawn with long steps, so that it crosses strokes that are far
+     *        from its center of mass.
+     *
+     * @param random
+     *     The random generator
+     *
+     * @return The stroke created
+     */
+    private Trace createStroke (Random random) {
+        Trace trace = new Trace();
+
+        double x = random.nextDouble() * 400;
+        double y = random.nextDouble() * 100;
+        trace.add(new Point(x, y));
+
+        int numberOfPoints = 2 + random.nextInt(15);
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double step = (random.nextInt(4) == 0) ? 20 + random.nextDouble() * 20 :
+            3 + random.nextDouble() * 6;
+        for (int i = 1; i < numberOfPoints; i++) {
+            angle += (random.nextDouble() - 0.5) * 0.6;
+
+            x += step * Math.cos(angle);
+            y += step * Math.sin(angle);
+            trace.add(new Point(x, y));
+        }
+
+        return trace;
+    }
+
+    /**
+     * @class ConstantClassifier
+     * @brief A Classifier that classifies every TraceGroup to the same label
+     */
+    private static class ConstantClassifier extends Classifier {
+        /**
+         * @brief Classifies a given TraceGroup to a ONE of unit confidence
+         *
+         * @param traceGroup
+         *     The TraceGroup to classify
+         * @param context
+         *     The context of the given TraceGroup
+         * @param subSymbolCheck
+         *     Check sub-groups of the given TraceGroup
+         * @param subContextCheck
+         *     Check sub-groups of the given context
+         *
+         * @return The Symbol that the given TraceGroup was classified
+         */
+        @Override
+        public Symbol classify (TraceGroup traceGroup, TraceGroup context,
+                                boolean subSymbolCheck, boolean subContextCheck) {
+            try {
+                Symbol symbol = SymbolFactory.getInstance().create(Labels.ONE, traceGroup);
+                symbol.setConfidence(1);
+
+                return symbol;
+            } catch (Exception exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+    }
+
+    private static final int NUMBER_OF_SESSIONS = 300; //!< The number of random sessions
+
+}
@@ -0,0 +1,289 @@
+package org.hwer.engine.symbols;
+
+
+import org.hwer.engine.parsers.grammars.GeometricalGrammar.ArgumentPosition;
+import org.hwer.engine.symbols.SymbolFactory.Labels;
+import org.hwer.engine.symbols.ambiguous.Ambiguous;
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * @class ExpressionTemplateTest
+ * @brief Checks that ExpressionTemplate writes the same expressions as substituting the children
+ *        into the string representation of a Symbol with String.replace and clearing the
+ *        positions without children with clearString
+ */
+public class ExpressionTemplateTest {
+    /**
+     * @brief Writes every Symbol, and every possible Symbol of every Ambiguous Symbol, with every
+     *        combination of positions with and without children
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    @Test
+    public void writesTheSameTextAsReplacingThePlaceholders () throws Exception {
+        for (Labels label : Labels.values()) {
+            this.assertAllCombinations(this.create(label));
+        }
+
+        for (int i = 0; i < AMBIGUOUS_LABELS.length; i++) {
+            for (Labels possibleLabel : POSSIBLE_LABELS[i]) {
+                this.assertAllCombinations(this.createAmbiguous(i, possibleLabel));
+            }
+        }
+    }
+
+    /**
+     * @brief Checks the expressions of the Symbols that clear their positions in their own way
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    @Test
+    public void writesTheEmptyPositionsOfSquareRootFractionLineAndVariable () throws Exception {
+        assertEquals("\\sqrt{}", this.write(this.create(Labels.SQUARE_ROOT), null, null));
+        assertEquals("\\sqrt{a}^{b}", this.write(this.create(Labels.SQUARE_ROOT), "a", "b"));
+
+        assertEquals("\\frac{}{}", this.write(this.create(Labels.FRACTION_LINE), null, null));
+        assertEquals("\\frac{a}{}", this.write(this.create(Labels.FRACTION_LINE), "a", null));
+        assertEquals("\\frac{}{b}", this.write(this.create(Labels.FRACTION_LINE), null, "b"));
+
+        assertEquals("x", this.write(this.create(Labels.LOWER_X), null, null));
+        assertEquals("x^{a}", this.write(this.create(Labels.LOWER_X), "a", null));
+        assertEquals("x_{b}", this.write(this.create(Labels.LOWER_X), null, "b"));
+        assertEquals("x^{a}_{b}", this.write(this.create(Labels.LOWER_X), "a", "b"));
+    }
+
+    /**
+     * @brief Builds random trees of Symbols and requires buildExpression to give the same
+     *        expression as the algorithm that replaced the placeholders recursively
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    @Test
+    public void buildsTheSameExpressionsAsReplacingThePlaceholders () throws Exception {
+        Random random = new Random(5);
+
+        for (int i = 0; i < NUMBER_OF_TREES; i++) {
+            Symbol root = this.createTree(random, 0);
+
+            assertEquals(this.replacePlaceholders(root), root.buildExpression());
+        }
+    }
+
+    /**
+     * @brief Requires the ExpressionTemplate of a Symbol to write the same text as the old
+     *        algorithm for every combination of positions with and without children
+     *
+     * @param symbol
+     *     The Symbol
+     */
+    private void assertAllCombinations (Symbol symbol) {
+        ArgumentPosition[] positions = symbol.getChildrenPositions();
+
+        for (int mask = 0; mask < (1 << positions.length); mask++) {
+            String[] arguments = new String[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    arguments[i] = "a" + i;
+                }
+            }
+
+            StringBuilder stringBuilder = new StringBuilder();
+            symbol.getExpressionTemplate().write(stringBuilder, arguments);
+
+            assertEquals(this.replacePlaceholders(symbol, arguments), stringBuilder.toString());
+        }
+    }
+
+    /**
+     * @brief Writes the expression of a Symbol with its ExpressionTemplate
+     *
+     * @param symbol
+     *     The Symbol
+     * @param arguments
+     *     The expression of the children at each position, or null for a position without
+     *     children
+     *
+     * @return The expression written
+     */
+    private String write (Symbol symbol, String... arguments) {
+        StringBuilder stringBuilder = new StringBuilder();
+        symbol.getExpressionTemplate().write(stringBuilder, arguments);
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @brief Substitutes the expressions of the children of a Symbol into its string
+     *        representation and clears the positions without children
+     *        This is the algorithm that Symbol.buildExpression used before the string
+     *        representations were compiled into ExpressionTemplates.
+     *
+     * @param symbol
+     *     The Symbol
+     * @param arguments
+     *     The expression of the children at each position, or null for a position without
+     *     children
+     *
+     * @return The expression of the Symbol
+     */
+    private String replacePlaceholders (Symbol symbol, String[] arguments) {
+        ArgumentPosition[] positions = symbol.getChildrenPositions();
+
+        String stringValue = symbol.toString();
+        for (int i = 0; i < positions.length; i++) {
+            if (arguments[i] != null) {
+                stringValue = stringValue.replace(positions[i].toString(), arguments[i]);
+            }
+        }
+
+        return symbol.clearString(stringValue);
+    }
+
+    /**
+     * @brief Builds the expression of a tree of Symbols with the algorithm that
+     *        Symbol.buildExpression used before the string representations were compiled into
+     *        ExpressionTemplates
+     *
+     * @param symbol
+     *     The root of the tree
+     *
+     * @return The expression of the tree
+     */
+    private String replacePlaceholders (Symbol symbol) {
+        List<List<Symbol>> children = symbol.getChildren();
+
+        String[] arguments = new String[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).size() == 0) {
+                continue;
+            }
+
+            arguments[i] = this.replacePlaceholders(children.get(i).get(0));
+            for (int j = 0; j < children.get(i).size() - 1; j++) {
+                if (children.get(i).get(j).getNextSymbol() != null) {
+                    arguments[i] += this.replacePlaceholders(
+                        children.get(i).get(j).getNextSymbol());
+                }
+                else {
+                    arguments[i] += this.replacePlaceholders(children.get(i).get(j + 1));
+                }
+            }
+        }
+
+        return this.replacePlaceholders(symbol, arguments);
+    }
+
+    /**
+     * @brief Creates a random tree of Symbols
+     *        One Symbol in four is an Ambiguous Symbol that has chosen one of its possible
+     *        Symbols, and some of the children are given a next Symbol.
+     *
+     * @param random
+     *     The random generator
+     * @param depth
+     *     The depth of the root of the tree
+     *
+     * @return The root of the tree
+     *
+     * @throws Exception
+     *     If a Symbol can not be created
+     */
+    private Symbol createTree (Random random, int depth) throws Exception {
+        Symbol symbol;
+        if (random.nextInt(4) == 0) {
+            int index = random.nextInt(AMBIGUOUS_LABELS.length);
+            symbol = this.createAmbiguous(index,
+                POSSIBLE_LABELS[index][random.nextInt(POSSIBLE_LABELS[index].length)]);
+        }
+        else {
+            symbol = this.create(Labels.values()[random.nextInt(Labels.values().length)]);
+        }
+
+        if (depth == MAXIMUM_DEPTH) {
+            return symbol;
+        }
+
+        for (List<Symbol> samePositionChildren : symbol.getChildren()) {
+            int numberOfChildren = random.nextInt(3);
+            for (int i = 0; i < numberOfChildren; i++) {
+                samePositionChildren.add(this.createTree(random, depth + 1));
+            }
+
+            if (numberOfChildren > 1 && random.nextBoolean()) {
+                samePositionChildren.get(0).setNextSymbol(this.createTree(random, depth + 1));
+            }
+        }
+
+        return symbol;
+    }
+
+    /**
+     * @brief Creates a Symbol
+     *
+     * @param label
+     *     The label of the Symbol
+     *
+     * @return The Symbol created
+     *
+     * @throws Exception
+     *     If the Symbol can not be created
+     */
+    private Symbol create (Labels label) throws Exception {
+        Trace trace = new Trace();
+        trace.add(new Point(0, 0));
+        trace.add(new Point(1, 1));
+
+        return SymbolFactory.getInstance().create(label, new TraceGroup().add(trace));
+    }
+
+    /**
+     * @brief Creates an Ambiguous Symbol that has chosen one of its possible Symbols
+     *
+     * @param index
+     *     The index of the label of the Ambiguous Symbol into AMBIGUOUS_LABELS
+     * @param possibleLabel
+     *     The label of the chosen possible Symbol
+     *
+     * @return The Symbol created
+     *
+     * @throws Exception
+     *     If the Symbol can not be created
+     */
+    private Symbol createAmbiguous (int index, Labels possibleLabel) throws Exception {
+        Ambiguous ambiguous = (Ambiguous) this.create(AMBIGUOUS_LABELS[index]);
+        ambiguous.choose(this.create(possibleLabel));
+
+        return ambiguous;
+    }
+
+    private static final Labels[] AMBIGUOUS_LABELS = {Labels.S_LIKE, Labels.G_LIKE,
+        Labels.C_LIKE, Labels.CIRCLE, Labels.HORIZONTAL_LINE,
+        Labels.VERTICAL_LINE}; //!< The labels of the Ambiguous Symbols
+
+    private static final Labels[][] POSSIBLE_LABELS = {
+        {Labels.LOWER_S, Labels.FIVE},
+        {Labels.LOWER_G, Labels.NINE},
+        {Labels.LOWER_C, Labels.LEFT_PARENTHESIS},
+        {Labels.LOWER_O, Labels.ZERO},
+        {Labels.MINUS, Labels.FRACTION_LINE},
+        {Labels.LOWER_I, Labels.LOWER_L, Labels.ONE}
+    }; //!< The labels of the possible Symbols of each of the Ambiguous Symbols
+
+    private static final int NUMBER_OF_TREES = 2000; //!< The number of random trees to build
+
+    private static final int MAXIMUM_DEPTH = 3; //!< The maximum depth of the random trees
+
+}
@@ -0,0 +1,287 @@
+package org.hwer.engine.utilities;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class UtilitiesTest
+ * @brief Checks the array and graph methods of Utilities against simpler implementations
+ */
+public class UtilitiesTest {
+    /**
+     * @brief Requires Utilities.sortArray to order the indices of random arrays, with many equal
+     *        values, exactly like the bubble sort that it replaced
+     */
+    @Test
+    public void sortArrayKeepsTheOrderOfTheBubbleSort () {
+        Random random = new Random(13);
+
+        for (int i = 0; i < NUMBER_OF_ARRAYS; i++) {
+            double[] array = new double[random.nextInt(MAXIMUM_ARRAY_LENGTH + 1)];
+            int numberOfValues = 1 + random.nextInt(array.length + 1);
+            for (int j = 0; j < array.length; j++) {
+                array[j] = random.nextInt(numberOfValues);
+            }
+
+            assertArrayEquals(this.bubbleSort(array), Utilities.sortArray(array));
+        }
+    }
+
+    /**
+     * @brief Requires the context of random groups of vertices on the adjacency lists of random
+     *        graphs to be the context on their connections
+     */
+    @Test
+    public void getContextOnAdjacencyListsMatchesTheConnections () {
+        Random random = new Random(17);
+
+        for (int i = 0; i < NUMBER_OF_GRAPHS; i++) {
+            boolean[][] connections = this.createGraph(random, 1 + random.nextInt(20));
+            int[][] adjacency = Utilities.toAdjacencyLists(connections);
+
+            int[] vertices = new int[1 + random.nextInt(connections.length)];
+            for (int j = 0; j < vertices.length; j++) {
+                vertices[j] = random.nextInt(connections.length);
+            }
+
+            int[] expected = Utilities.getContext(vertices, connections);
+            int[] actual = Utilities.getContext(vertices, adjacency);
+            Arrays.sort(expected);
+            Arrays.sort(actual);
+
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    /**
+     * @brief Requires Utilities.findUniquePaths to return every connected group of at most the
+     *        maximum number of vertices of random graphs exactly once, by ascending length
+     */
+    @Test
+    public void findUniquePathsFindsEveryConnectedGroupOnce () {
+        Random random = new Random(19);
+
+        for (int i = 0; i < NUMBER_OF_GRAPHS; i++) {
+            boolean[][] connections = this.createGraph(random, 1 + random.nextInt(12));
+            int maxPathLength = 1 + random.nextInt(5);
+
+            this.assertPaths(connections, maxPathLength, - 1,
+                Utilities.findUniquePaths(connections, maxPathLength));
+        }
+    }
+
+    /**
+     * @brief Requires Utilities.findUniquePaths to skip the groups of vertices that fail a check
+     *        A group of more than one vertex that contains an excluded vertex fails the check.
+     *        Every connected group without it can grow one vertex at a time without ever
+     *        containing it, so these, and every single vertex, are exactly the paths that should
+     *        be returned.
+     */
+    @Test
+    public void findUniquePathsAppliesTheChecks () {
+        Random random = new Random(23);
+
+        for (int i = 0; i < NUMBER_OF_GRAPHS; i++) {
+            boolean[][] connections = this.createGraph(random, 1 + random.nextInt(12));
+            int maxPathLength = 1 + random.nextInt(5);
+            final int excludedVertex = random.nextInt(connections.length);
+
+            int[][] paths = Utilities.findUniquePaths(connections, maxPathLength,
+                new Utilities.PathExtensionCheck() {
+                    @Override
+                    public boolean check (int[] path) {
+                        return ! Utilities.arrayContains(path, excludedVertex);
+                    }
+                });
+
+            this.assertPaths(connections, maxPathLength, excludedVertex, paths);
+        }
+    }
+
+    /**
+     * @brief Requires Utilities.findUniquePaths to find all the paths of chains that are too long
+     *        for the vertices to fit on an int or on a long
+     */
+    @Test
+    public void findUniquePathsFindsAllThePathsOfLongChains () {
+        for (int numberOfVertices : new int[] {40, 64, 65, 150}) {
+            int[][] adjacency = new int[numberOfVertices][];
+            for (int i = 0; i < numberOfVertices; i++) {
+                if (i == 0) {
+                    adjacency[i] = new int[] {1};
+                }
+                else if (i == numberOfVertices - 1) {
+                    adjacency[i] = new int[] {i - 1};
+                }
+                else {
+                    adjacency[i] = new int[] {i - 1, i + 1};
+                }
+            }
+
+            int[][] paths = Utilities.findUniquePaths(adjacency, 3);
+            assertEquals(3 * numberOfVertices - 3, paths.length);
+
+            Set<BitSet> keys = new HashSet<BitSet>();
+            for (int[] path : paths) {
+                int[] sortedPath = path.clone();
+                Arrays.sort(sortedPath);
+                assertEquals(path.length - 1, sortedPath[path.length - 1] - sortedPath[0]);
+
+                assertTrue(keys.add(Utilities.pathKey(path)));
+            }
+        }
+    }
+
+    /**
+     * @brief Requires a list of paths to hold every connected group of at most a given number of
+     *        vertices of a graph exactly once, by ascending length
+     *
+     * @param connections
+     *     The connections of the graph
+     * @param maxPathLength
+     *     The maximum number of vertices of a group
+     * @param excludedVertex
+     *     A vertex that no group of more than one vertex may contain, or - 1
+     * @param paths
+     *     The paths
+     */
+    private void assertPaths (boolean[][] connections, int maxPathLength, int excludedVertex,
+                              int[][] paths) {
+        int numberOfVertices = connections.length;
+
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int group = 1; group < (1 << numberOfVertices); group++) {
+            boolean excluded = excludedVertex >= 0 && Integer.bitCount(group) > 1 &&
+                (group & (1 << excludedVertex)) != 0;
+
+            if (! excluded && Integer.bitCount(group) <= maxPathLength &&
+                this.isConnected(connections, group)) {
+                expected.add(group);
+            }
+        }
+
+        Set<Integer> actual = new HashSet<Integer>();
+        int previousLength = 0;
+        for (int[] path : paths) {
+            assertTrue(path.length >= previousLength);
+            previousLength = path.length;
+
+            int group = 0;
+            for (int vertex : path) {
+                group |= 1 << vertex;
+            }
+            assertEquals(path.length, Integer.bitCount(group));
+
+            assertTrue(actual.add(group));
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * @brief Returns true if a group of vertices is connected on a graph without going through
+     *        vertices outside the group
+     *
+     * @param connections
+     *     The connections of the graph
+     * @param group
+     *     The bit mask of the vertices of the group
+     *
+     * @return True if the group is connected
+     */
+    private boolean isConnected (boolean[][] connections, int group) {
+        int reached = Integer.lowestOneBit(group);
+
+        int previousReached = 0;
+        while (reached != previousReached) {
+            previousReached = reached;
+
+            for (int i = 0; i < connections.length; i++) {
+                if ((reached & (1 << i)) == 0) {
+                    continue;
+                }
+
+                for (int j = 0; j < connections.length; j++) {
+                    if (connections[i][j] && (group & (1 << j)) != 0) {
+                        reached |= 1 << j;
+                    }
+                }
+            }
+        }
+
+        return reached == group;
+    }
+
+    /**
+     * @brief Sorts the indices of an array by the values of the array with a bubble sort
+     *
+     * @param array
+     *     The array
+     *
+     * @return The indices of the array in ascending order of their values
+     */
+    private int[] bubbleSort (double[] array) {
+        double[] values = array.clone();
+
+        int[] indices = new int[values.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 1; j < values.length - i; j++) {
+                if (values[j - 1] > values[j]) {
+                    double value = values[j - 1];
+                    values[j - 1] = values[j];
+                    values[j] = value;
+
+                    int index = indices[j - 1];
+                    indices[j - 1] = indices[j];
+                    indices[j] = index;
+                }
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * @brief Creates the connections of a random graph
+     *
+     * @param random
+     *     The random generator
+     * @param numberOfVertices
+     *     The number of vertices of the graph
+     *
+     * @return The connections between the vertices of the graph
+     */
+    private boolean[][] createGraph (Random random, int numberOfVertices) {
+        double density = random.nextDouble() * 0.5;
+
+        boolean[][] connections = new boolean[numberOfVertices][numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            for (int j = i + 1; j < numberOfVertices; j++) {
+                connections[i][j] = connections[j][i] = random.nextDouble() < density;
+            }
+        }
+
+        return connections;
+    }
+
+    private static final int NUMBER_OF_ARRAYS = 2000; //!< The number of random arrays to sort
+    private static final int MAXIMUM_ARRAY_LENGTH = 200; //!< The maximum length of a random array
+
+    private static final int NUMBER_OF_GRAPHS = 2000; //!< The number of random graphs
+
+}
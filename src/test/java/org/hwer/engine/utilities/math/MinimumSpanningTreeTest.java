@@ -0,0 +1,209 @@
+package org.hwer.engine.utilities.math;
+
+
+import org.hwer.engine.utilities.traces.Point;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * @class MinimumSpanningTreeTest
+ * @brief Checks the ways a MinimumSpanningTree is built against each other
+ */
+public class MinimumSpanningTreeTest {
+    /**
+     * @brief Requires MinimumSpanningTree.kruskal to give the same tree as the implementation of
+     *        Kruskal's algorithm that it replaced, which tracked the connected components on a
+     *        dense matrix, on random graphs with many edges of equal weight
+     */
+    @Test
+    public void kruskalGivesTheSameTreeAsTheComponentMatrix () {
+        Random random = new Random(7);
+
+        for (int i = 0; i < NUMBER_OF_GRAPHS; i++) {
+            int numberOfVertices = random.nextInt(MAXIMUM_NUMBER_OF_VERTICES + 1);
+            int numberOfWeights = 1 + random.nextInt(10);
+
+            double[] edgeWeights = new double[numberOfVertices * (numberOfVertices - 1) / 2];
+            for (int j = 0; j < edgeWeights.length; j++) {
+                edgeWeights[j] = random.nextInt(numberOfWeights);
+            }
+
+            MinimumSpanningTree minimumSpanningTree = MinimumSpanningTree.kruskal(edgeWeights,
+                numberOfVertices);
+            boolean[][] connections = this.kruskalOnComponentMatrix(edgeWeights,
+                numberOfVertices);
+
+            for (int j = 0; j < numberOfVertices; j++) {
+                for (int k = 0; k < numberOfVertices; k++) {
+                    assertEquals(connections[j][k], minimumSpanningTree.areConnected(j, k));
+                }
+            }
+        }
+    }
+
+    /**
+     * @brief Requires MinimumSpanningTree.euclidean to give the same tree as
+     *        MinimumSpanningTree.kruskal on all the distances between the points
+     *        Integer coordinates on a small grid give many duplicate points and many edges of
+     *        equal length, where the two methods only agree if they break ties the same way.
+     */
+    @Test
+    public void euclideanGivesTheSameTreeAsKruskal () {
+        Random random = new Random(11);
+
+        for (int i = 0; i < NUMBER_OF_POINT_SETS; i++) {
+            int numberOfPoints = 1 + random.nextInt(MAXIMUM_NUMBER_OF_POINTS);
+            int gridSide = 2 + random.nextInt(10);
+            boolean onGrid = random.nextBoolean();
+
+            double[] x = new double[numberOfPoints];
+            double[] y = new double[numberOfPoints];
+            for (int j = 0; j < numberOfPoints; j++) {
+                x[j] = onGrid ? random.nextInt(gridSide) : random.nextDouble() * 1000;
+                y[j] = onGrid ? random.nextInt(gridSide) : random.nextDouble() * 1000;
+            }
+
+            this.assertSameTree(this.kruskal(x, y), MinimumSpanningTree.euclidean(x, y));
+        }
+    }
+
+    /**
+     * @brief Requires MinimumSpanningTree.euclidean to give the same tree as
+     *        MinimumSpanningTree.kruskal when all the points coincide
+     */
+    @Test
+    public void euclideanGivesTheSameTreeAsKruskalOnCoincidentPoints () {
+        for (int numberOfPoints = 1; numberOfPoints <= 40; numberOfPoints++) {
+            double[] x = new double[numberOfPoints];
+            double[] y = new double[numberOfPoints];
+
+            this.assertSameTree(this.kruskal(x, y), MinimumSpanningTree.euclidean(x, y));
+        }
+    }
+
+    /**
+     * @brief Builds a minimum spanning tree with Kruskal's algorithm, visiting the edges in a
+     *        stable ascending order of weight and keeping which vertices are already connected on
+     *        a dense matrix
+     *
+     * @param edgeWeights
+     *     The weights of the edges of the graph, in row-major order of the upper triangular part
+     *     of the connections matrix, excluding the main diagonal
+     * @param numberOfVertices
+     *     The number of vertices of the graph
+     *
+     * @return The connections of the tree. Every vertex is connected to itself.
+     */
+    private boolean[][] kruskalOnComponentMatrix (final double[] edgeWeights,
+                                                  int numberOfVertices) {
+        Integer[] sortedIndices = new Integer[edgeWeights.length];
+        for (int i = 0; i < sortedIndices.length; i++) {
+            sortedIndices[i] = i;
+        }
+        Arrays.sort(sortedIndices, new Comparator<Integer>() {
+            public int compare (Integer index1, Integer index2) {
+                return Double.compare(edgeWeights[index1], edgeWeights[index2]);
+            }
+        });
+
+        int[] edgeRows = new int[edgeWeights.length];
+        int[] edgeColumns = new int[edgeWeights.length];
+        int edge = 0;
+        for (int row = 0; row < numberOfVertices; row++) {
+            for (int column = row + 1; column < numberOfVertices; column++) {
+                edgeRows[edge] = row;
+                edgeColumns[edge] = column;
+                edge++;
+            }
+        }
+
+        boolean[][] connections = new boolean[numberOfVertices][numberOfVertices];
+        boolean[][] scope = new boolean[numberOfVertices][numberOfVertices];
+        for (int i = 0; i < numberOfVertices; i++) {
+            connections[i][i] = true;
+            scope[i][i] = true;
+        }
+
+        for (int index : sortedIndices) {
+            int row = edgeRows[index];
+            int column = edgeColumns[index];
+            if (scope[row][column]) {
+                continue;
+            }
+
+            connections[row][column] = connections[column][row] = true;
+
+            // Every vertex connected to the row is now connected to every vertex connected to the
+            // column.
+            boolean[] rowScope = scope[row].clone();
+            boolean[] columnScope = scope[column].clone();
+            for (int i = 0; i < numberOfVertices; i++) {
+                for (int j = 0; j < numberOfVertices; j++) {
+                    if (rowScope[i] && columnScope[j]) {
+                        scope[i][j] = scope[j][i] = true;
+                    }
+                }
+            }
+        }
+
+        return connections;
+    }
+
+    /**
+     * @brief Builds the Euclidean minimum spanning tree of a set of points with
+     *        MinimumSpanningTree.kruskal, on the distances between the points in row-major order
+     *
+     * @param x
+     *     The abscissas of the points
+     * @param y
+     *     The ordinates of the points
+     *
+     * @return The created MinimumSpanningTree
+     */
+    private MinimumSpanningTree kruskal (double[] x, double[] y) {
+        int numberOfPoints = x.length;
+
+        double[] distances = new double[numberOfPoints * (numberOfPoints - 1) / 2];
+        int index = 0;
+        for (int i = 0; i < numberOfPoints; i++) {
+            for (int j = i + 1; j < numberOfPoints; j++) {
+                distances[index] = Point.distance(new Point(x[i], y[i]), new Point(x[j], y[j]));
+                index++;
+            }
+        }
+
+        return MinimumSpanningTree.kruskal(distances, numberOfPoints);
+    }
+
+    /**
+     * @brief Requires two MinimumSpanningTrees to have the same edges
+     *
+     * @param expected
+     *     The expected MinimumSpanningTree
+     * @param actual
+     *     The actual MinimumSpanningTree
+     */
+    private void assertSameTree (MinimumSpanningTree expected, MinimumSpanningTree actual) {
+        assertEquals(expected.getNumberOfVertices(), actual.getNumberOfVertices());
+
+        for (int i = 0; i < expected.getNumberOfVertices(); i++) {
+            assertArrayEquals("vertex " + i, expected.getNeighbors(i), actual.getNeighbors(i));
+        }
+    }
+
+    private static final int NUMBER_OF_GRAPHS = 1000; //!< The number of random graphs
+    private static final int MAXIMUM_NUMBER_OF_VERTICES = 40; //!< The maximum number of vertices
+                                                              //!< on a random graph
+
+    private static final int NUMBER_OF_POINT_SETS = 1000; //!< The number of random point sets
+    private static final int MAXIMUM_NUMBER_OF_POINTS = 200; //!< The maximum number of points on
+                                                             //!< a random point set
+
+}
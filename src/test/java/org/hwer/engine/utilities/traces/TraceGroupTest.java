@@ -0,0 +1,306 @@
+package org.hwer.engine.utilities.traces;
+
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class TraceGroupTest
+ * @brief Checks the spatial queries of TraceGroup against scans over all of its Traces
+ */
+public class TraceGroupTest {
+    /**
+     * @brief Requires TraceGroup.findTraces to return the Traces whose bounding boxes intersect
+     *        random ranges, before and after Traces are added and removed
+     *        Half of the TraceGroups lie on a small integer grid, so that many boxes only touch
+     *        the ranges.
+     */
+    @Test
+    public void findTracesMatchesTheBoundingBoxes () {
+        Random random = new Random(37);
+
+        for (int i = 0; i < NUMBER_OF_TRACE_GROUPS; i++) {
+            boolean onGrid = random.nextBoolean();
+            TraceGroup traceGroup = this.createTraceGroup(random, onGrid);
+
+            for (int j = 0; j < NUMBER_OF_QUERIES; j++) {
+                if (j == NUMBER_OF_QUERIES / 2) {
+                    this.modify(random, traceGroup, onGrid);
+                }
+
+                double x1 = this.createCoordinate(random, onGrid);
+                double x2 = this.createCoordinate(random, onGrid);
+                double y1 = this.createCoordinate(random, onGrid);
+                double y2 = this.createCoordinate(random, onGrid);
+                Point topLeftCorner = new Point(Math.min(x1, x2), Math.max(y1, y2));
+                Point bottomRightCorner = new Point(Math.max(x1, x2), Math.min(y1, y2));
+
+                assertArrayEquals(this.scanTraces(traceGroup, topLeftCorner, bottomRightCorner),
+                    traceGroup.findTraces(topLeftCorner, bottomRightCorner));
+            }
+        }
+    }
+
+    /**
+     * @brief Requires TraceGroup.findClosestTrace to return the first of the Traces whose closest
+     *        Point is nearest to random Points, before and after Traces are added and removed
+     */
+    @Test
+    public void findClosestTraceMatchesTheScan () {
+        Random random = new Random(41);
+
+        for (int i = 0; i < NUMBER_OF_TRACE_GROUPS; i++) {
+            boolean onGrid = random.nextBoolean();
+            TraceGroup traceGroup = this.createTraceGroup(random, onGrid);
+
+            for (int j = 0; j < NUMBER_OF_QUERIES; j++) {
+                if (j == NUMBER_OF_QUERIES / 2) {
+                    this.modify(random, traceGroup, onGrid);
+                }
+
+                Point point = new Point(this.createCoordinate(random, onGrid),
+                    this.createCoordinate(random, onGrid));
+
+                assertEquals(this.scanClosestTrace(traceGroup, point),
+                    traceGroup.findClosestTrace(point));
+            }
+        }
+    }
+
+    /**
+     * @brief Requires TraceGroup.findOverlapCandidates to hold every Trace that a random Trace
+     *        overlaps, and TraceGroup.isOverlappedBy to agree with testing every Trace
+     */
+    @Test
+    public void findOverlapCandidatesHoldsEveryOverlappedTrace () {
+        Random random = new Random(43);
+
+        for (int i = 0; i < NUMBER_OF_TRACE_GROUPS; i++) {
+            boolean onGrid = random.nextBoolean();
+            TraceGroup traceGroup = this.createTraceGroup(random, onGrid);
+
+            for (int j = 0; j < NUMBER_OF_QUERIES; j++) {
+                if (j == NUMBER_OF_QUERIES / 2) {
+                    this.modify(random, traceGroup, onGrid);
+                }
+
+                Trace trace = this.createTrace(random, onGrid);
+                int[] candidates = traceGroup.findOverlapCandidates(trace);
+
+                boolean overlapped = false;
+                for (int k = 0; k < traceGroup.size(); k++) {
+                    if (Trace.areOverlapped(traceGroup.get(k), trace)) {
+                        overlapped = true;
+
+                        assertTrue(this.contains(candidates, k));
+                    }
+                }
+
+                assertEquals(overlapped, traceGroup.isOverlappedBy(trace));
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the Traces of a TraceGroup whose bounding boxes intersect a range by testing
+     *        every Trace
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     * @param topLeftCorner
+     *     The top left corner of the range
+     * @param bottomRightCorner
+     *     The bottom right corner of the range
+     *
+     * @return The indices of the Traces in ascending order
+     */
+    private int[] scanTraces (TraceGroup traceGroup, Point topLeftCorner,
+                              Point bottomRightCorner) {
+        List<Integer> found = new ArrayList<Integer>();
+        for (int i = 0; i < traceGroup.size(); i++) {
+            Trace trace = traceGroup.get(i);
+            if (trace.size() == 0) {
+                continue;
+            }
+
+            if (trace.getTopLeftCorner().x_ <= bottomRightCorner.x_ &&
+                trace.getBottomRightCorner().x_ >= topLeftCorner.x_ &&
+                trace.getBottomRightCorner().y_ <= topLeftCorner.y_ &&
+                trace.getTopLeftCorner().y_ >= bottomRightCorner.y_) {
+                found.add(i);
+            }
+        }
+
+        int[] indices = new int[found.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = found.get(i);
+        }
+
+        return indices;
+    }
+
+    /**
+     * @brief Returns the first of the Traces of a TraceGroup whose closest Point is nearest to a
+     *        given Point by testing every Trace
+     *
+     * @param traceGroup
+     *     The TraceGroup
+     * @param point
+     *     The given Point
+     *
+     * @return The index of the Trace, or - 1 if the TraceGroup has no Points
+     */
+    private int scanClosestTrace (TraceGroup traceGroup, Point point) {
+        int closestTrace = - 1;
+        double minimumDistance = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < traceGroup.size(); i++) {
+            Trace trace = traceGroup.get(i);
+            if (trace.size() == 0) {
+                continue;
+            }
+
+            double distance = Point.distance(trace.closestPoint(point), point);
+            if (distance < minimumDistance) {
+                minimumDistance = distance;
+                closestTrace = i;
+            }
+        }
+
+        return closestTrace;
+    }
+
+    /**
+     * @brief Returns true if an array holds a value
+     *
+     * @param array
+     *     The array
+     * @param value
+     *     The value
+     *
+     * @return True if the array holds the value
+     */
+    private boolean contains (int[] array, int value) {
+        for (int element : array) {
+            if (element == value) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @brief Removes a random Trace from a TraceGroup and adds a few new ones
+     *
+     * @param random
+     *     The random generator
+     * @param traceGroup
+     *     The TraceGroup
+     * @param onGrid
+     *     Whether the Points of the new Traces should lie on the grid
+     */
+    private void modify (Random random, TraceGroup traceGroup, boolean onGrid) {
+        if (traceGroup.size() > 0) {
+            traceGroup.remove(traceGroup.get(random.nextInt(traceGroup.size())));
+        }
+
+        int numberOfTraces = random.nextInt(5);
+        for (int i = 0; i < numberOfTraces; i++) {
+            traceGroup.add(this.createTrace(random, onGrid));
+        }
+    }
+
+    /**
+     * @brief Creates a random TraceGroup
+     *        Some of its Traces are empty and some are single Points.
+     *
+     * @param random
+     *     The random generator
+     * @param onGrid
+     *     Whether the Points should lie on the grid
+     *
+     * @return The TraceGroup created
+     */
+    private TraceGroup createTraceGroup (Random random, boolean onGrid) {
+        TraceGroup traceGroup = new TraceGroup();
+
+        int numberOfTraces = random.nextInt(MAXIMUM_NUMBER_OF_TRACES + 1);
+        for (int i = 0; i < numberOfTraces; i++) {
+            traceGroup.add(this.createTrace(random, onGrid));
+        }
+
+        return traceGroup;
+    }
+
+    /**
+     * @brief Creates a random Trace
+     *
+     * @param random
+     *     The random generator
+     * @param onGrid
+     *     Whether the Points should lie on the grid
+     *
+     * @return The Trace created
+     */
+    private Trace createTrace (Random random, boolean onGrid) {
+        Trace trace = new Trace();
+
+        int numberOfPoints;
+        if (random.nextInt(20) == 0) {
+            numberOfPoints = 0;
+        }
+        else if (random.nextInt(10) == 0) {
+            numberOfPoints = 1;
+        }
+        else {
+            numberOfPoints = 2 + random.nextInt(10);
+        }
+
+        double x = this.createCoordinate(random, onGrid);
+        double y = this.createCoordinate(random, onGrid);
+        for (int i = 0; i < numberOfPoints; i++) {
+            trace.add(new Point(x, y));
+
+            x += onGrid ? random.nextInt(5) - 2 : random.nextGaussian() * 5;
+            y += onGrid ? random.nextInt(5) - 2 : random.nextGaussian() * 5;
+        }
+
+        return trace;
+    }
+
+    /**
+     * @brief Creates a random coordinate on the page
+     *
+     * @param random
+     *     The random generator
+     * @param onGrid
+     *     Whether the coordinate should be an integer on the grid
+     *
+     * @return The coordinate created
+     */
+    private double createCoordinate (Random random, boolean onGrid) {
+        if (onGrid) {
+            return random.nextInt(GRID_SIDE);
+        }
+
+        return random.nextDouble() * PAGE_SIDE;
+    }
+
+    private static final int NUMBER_OF_TRACE_GROUPS = 300; //!< The number of random TraceGroups
+    private static final int MAXIMUM_NUMBER_OF_TRACES = 200; //!< The maximum number of Traces of
+                                                             //!< a random TraceGroup
+    private static final int NUMBER_OF_QUERIES = 40; //!< The number of queries on each TraceGroup
+
+    private static final int GRID_SIDE = 30; //!< The side of the grid of integer coordinates
+    private static final double PAGE_SIDE = 500; //!< The side of the page of the other coordinates
+
+}
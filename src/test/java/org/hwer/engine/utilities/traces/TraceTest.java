@@ -0,0 +1,176 @@
+package org.hwer.engine.utilities.traces;
+
+
+import org.hwer.engine.utilities.image_processing.drawing.Drawer;
+import org.hwer.engine.utilities.image_processing.image.Image;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * @class TraceTest
+ * @brief Checks Trace.areOverlapped against the raster test that it replaced
+ */
+public class TraceTest {
+    /**
+     * @brief Requires Trace.areOverlapped to agree with the raster test on a corpus of random
+     *        stroke pairs, some of which are single Points
+     */
+    @Test
+    public void areOverlappedAgreesWithTheRasterTest () {
+        Random random = new Random(42);
+
+        int numberOfAgreements = 0;
+        for (int i = 0; i < NUMBER_OF_PAIRS; i++) {
+            Trace trace1 = this.createStroke(random, random.nextInt(10) == 0);
+            Trace trace2 = this.createStroke(random, random.nextInt(10) == 0);
+
+            if (Trace.areOverlapped(trace1, trace2) == this.areOverlappedOnImages(trace1,
+                trace2)) {
+                numberOfAgreements++;
+            }
+        }
+
+        double agreement = (double) numberOfAgreements / NUMBER_OF_PAIRS;
+        assertTrue("Agreement with the raster test: " + agreement,
+            agreement >= MINIMUM_AGREEMENT);
+    }
+
+    /**
+     * @brief Checks the obvious cases of Trace.areOverlapped
+     */
+    @Test
+    public void areOverlappedDetectsCrossingsAndGaps () {
+        Trace horizontal = new Trace().add(new Point(0, 50)).add(new Point(100, 50));
+        Trace vertical = new Trace().add(new Point(50, 0)).add(new Point(50, 100));
+        Trace farAway = new Trace().add(new Point(0, 60)).add(new Point(100, 60));
+        Trace touching = new Trace().add(new Point(100, 51)).add(new Point(150, 51));
+        Trace dot = new Trace().add(new Point(50, 58));
+        Trace farDot = new Trace().add(new Point(50, 80));
+
+        assertTrue(Trace.areOverlapped(horizontal, vertical));
+        assertFalse(Trace.areOverlapped(horizontal, farAway));
+        assertTrue(Trace.areOverlapped(horizontal, touching));
+        assertTrue(Trace.areOverlapped(horizontal, dot));
+        assertTrue(Trace.areOverlapped(dot, horizontal));
+        assertFalse(Trace.areOverlapped(horizontal, farDot));
+    }
+
+    /**
+     * @brief Creates a random stroke
+     *        The stroke turns smoothly, with steps like those of a pen sampled on a tablet.
+     *
+     * @param random
+     *     The random generator
+     * @param singlePoint
+     *     Whether the stroke should be a single Point
+     *
+     * @return The stroke created
+     */
+    private Trace createStroke (Random random, boolean singlePoint) {
+        Trace trace = new Trace();
+
+        double x = random.nextDouble() * 150;
+        double y = random.nextDouble() * 150;
+        trace.add(new Point(x, y));
+
+        if (singlePoint) {
+            return trace;
+        }
+
+        int numberOfPoints = 2 + random.nextInt(20);
+        double angle = random.nextDouble() * 2 * Math.PI;
+        for (int i = 1; i < numberOfPoints; i++) {
+            angle += (random.nextDouble() - 0.5) * 0.8;
+            double step = 2 + random.nextDouble() * 8;
+
+            x += step * Math.cos(angle);
+            y += step * Math.sin(angle);
+            trace.add(new Point(x, y));
+        }
+
+        return trace;
+    }
+
+    /**
+     * @brief The raster test that Trace.areOverlapped replaced
+     *        Both Traces are drawn on Images of the size of their common bounding box, a single
+     *        Point as a circle of radius 10, and they are overlapped if a white pixel of the first
+     *        Image has a white pixel of the second one in its 3x3 neighbourhood.
+     *
+     * @param trace1
+     *     The first Trace
+     * @param trace2
+     *     The second Trace
+     *
+     * @return True if the Traces are overlapped on the Images
+     */
+    private boolean areOverlappedOnImages (Trace trace1, Trace trace2) {
+        Trace trace1Copy = new Trace(trace1);
+        Trace trace2Copy = new Trace(trace2);
+
+        TraceGroup traceGroup = new TraceGroup();
+        traceGroup.add(trace1Copy);
+        traceGroup.add(trace2Copy);
+
+        traceGroup.subtract(new Point(traceGroup.getTopLeftCorner().x_,
+            traceGroup.getBottomRightCorner().y_));
+
+        int width = (int) traceGroup.getWidth();
+        int height = (int) traceGroup.getHeight();
+
+        Image image1 = this.print(trace1Copy, width, height);
+        Image image2 = this.print(trace2Copy, width, height);
+
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (image1.getPixel(x, y) != Drawer.WHITE) {
+                    continue;
+                }
+
+                for (int i = Math.max(x - 1, 0); i <= Math.min(x + 1, width - 1); i++) {
+                    for (int j = Math.max(y - 1, 0); j <= Math.min(y + 1, height - 1); j++) {
+                        if (image2.getPixel(i, j) == Drawer.WHITE) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @brief Draws a Trace on an Image the way the raster test did
+     *
+     * @param trace
+     *     The Trace
+     * @param width
+     *     The width of the Image
+     * @param height
+     *     The height of the Image
+     *
+     * @return The Image
+     */
+    private Image print (Trace trace, int width, int height) {
+        if (trace.size() > 1) {
+            return trace.print(width, height);
+        }
+
+        Image image = new Image(width, height);
+        Drawer.drawCircle(image, (int) trace.get(0).x_, (int) trace.get(0).y_, 10, Drawer.WHITE);
+
+        return image;
+    }
+
+    private static final int NUMBER_OF_PAIRS = 5000; //!< The number of random stroke pairs
+
+    private static final double MINIMUM_AGREEMENT = 0.995; //!< The minimum fraction of the pairs
+                                                           //!< on which the two tests must agree
+
+}
@@ -0,0 +1,113 @@
+package org.hwer.image_processing;
+
+
+import org.hwer.engine.utilities.traces.Point;
+import org.hwer.engine.utilities.traces.Trace;
+import org.hwer.engine.utilities.traces.TraceGroup;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+
+/**
+ * @class RasterCoreImplTest
+ * @brief Checks that RasterCoreImpl creates the same pixels with CoreImpl for lines of one pixel
+ *        width
+ */
+public class RasterCoreImplTest {
+    /**
+     * @brief Compares the Images of both Cores on random TraceGroups of strokes of every scale,
+     *        on a few image sizes
+     */
+    @Test
+    public void createsTheSameImagesAsCoreImpl () {
+        Random random = new Random(11);
+
+        for (int i = 0; i < NUMBER_OF_TRACE_GROUPS; i++) {
+            this.assertSameImages(this.createTraceGroup(random),
+                IMAGE_SIDES[i % IMAGE_SIDES.length]);
+        }
+    }
+
+    /**
+     * @brief Compares the Images of both Cores on TraceGroups that collapse to a single pixel
+     */
+    @Test
+    public void createsTheSameImagesAsCoreImplForDots () {
+        TraceGroup dot = new TraceGroup().add(new Trace().add(new Point(3, 3)));
+        TraceGroup repeatedPoint = new TraceGroup().add(new Trace().add(new Point(3, 3)).
+            add(new Point(3, 3)));
+
+        for (int imageSide : IMAGE_SIDES) {
+            this.assertSameImages(dot, imageSide);
+            this.assertSameImages(repeatedPoint, imageSide);
+        }
+    }
+
+    /**
+     * @brief Requires the Images of CoreImpl and RasterCoreImpl, and the vector that
+     *        RasterCoreImpl writes on a reused array, to be identical
+     *
+     * @param traceGroup
+     *     The TraceGroup to print
+     * @param imageSide
+     *     The width and the height of the Images
+     */
+    private void assertSameImages (TraceGroup traceGroup, int imageSide) {
+        double[] expected = core_.printTraceGroup(traceGroup, imageSide, imageSide, 1).
+            toVector(- 1, 1);
+
+        assertArrayEquals(expected, rasterCore_.printTraceGroup(traceGroup, imageSide, imageSide,
+            1).toVector(- 1, 1), 0);
+
+        double[] vector = new double[imageSide * imageSide];
+        rasterCore_.printTraceGroup(traceGroup, imageSide, imageSide, 1, - 1, 1, vector);
+        assertArrayEquals(expected, vector, 0);
+    }
+
+    /**
+     * @brief Creates a TraceGroup of a few random strokes
+     *        Some strokes are tiny, some have repeated Points and some are single Points.
+     *
+     * @param random
+     *     The random generator
+     *
+     * @return The TraceGroup created
+     */
+    private TraceGroup createTraceGroup (Random random) {
+        TraceGroup traceGroup = new TraceGroup();
+
+        int numberOfTraces = 1 + random.nextInt(4);
+        for (int i = 0; i < numberOfTraces; i++) {
+            Trace trace = new Trace();
+
+            int numberOfPoints = (random.nextInt(10) == 0) ? 1 : 2 + random.nextInt(40);
+            double scale = (random.nextInt(5) == 0) ? 0.01 : 1 + random.nextDouble() * 30;
+
+            double x = random.nextDouble() * 500;
+            double y = random.nextDouble() * 500;
+            for (int j = 0; j < numberOfPoints; j++) {
+                trace.add(new Point(x, y));
+
+                if (random.nextInt(8) != 0) {
+                    x += (random.nextDouble() - 0.5) * scale;
+                    y += (random.nextDouble() - 0.5) * scale;
+                }
+            }
+
+            traceGroup.add(trace);
+        }
+
+        return traceGroup;
+    }
+
+    private final CoreImpl core_ = new CoreImpl(); //!< The reference Core
+    private final RasterCoreImpl rasterCore_ = new RasterCoreImpl(); //!< The Core under test
+
+    private static final int NUMBER_OF_TRACE_GROUPS = 5000; //!< The number of random TraceGroups
+
+    private static final int[] IMAGE_SIDES = {20, 28, 19}; //!< The sides of the Images compared
+
+}